@@ -0,0 +1,37 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.api.collection;
+
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
+
+import java.util.Collection;
+
+/**
+ * A collection view over a segmented store which can be walked one segment at a time, so that
+ * a scan of a large store can be split up or spread across threads.
+ */
+public interface SegmentedCollection<E> extends Collection<E> {
+    default int segments() {
+        return 1;
+    }
+
+    default void forEachInSegment(int segment, SubscriptionConsumer<E> consumer) throws InvalidSubscriberException {
+        for (E e : this)
+            consumer.accept(e);
+    }
+}
@@ -16,10 +16,8 @@
 
 package net.openhft.chronicle.engine.api.collection;
 
-import java.util.Collection;
-
 /**
  * Created by peter on 28/05/15.
  */
-public interface ValuesCollection<V> extends Collection<V> {
+public interface ValuesCollection<V> extends SegmentedCollection<V> {
 }
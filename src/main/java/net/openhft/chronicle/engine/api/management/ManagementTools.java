@@ -18,10 +18,15 @@ package net.openhft.chronicle.engine.api.management;
 
 import net.openhft.chronicle.engine.api.management.mbean.AssetTreeDynamicMBean;
 import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.FieldIndex;
+import net.openhft.chronicle.engine.api.map.ValueIndex;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.AssetTree;
+import net.openhft.chronicle.engine.api.tree.Assetted;
+import net.openhft.chronicle.engine.map.ExpiringKeyValueStore;
 import net.openhft.chronicle.engine.map.ObjectKVSSubscription;
 import net.openhft.chronicle.engine.map.ObjectKeyValueStore;
+import net.openhft.chronicle.engine.map.SnapshotSchedule;
 import net.openhft.chronicle.engine.tree.HostIdentifier;
 import net.openhft.chronicle.engine.tree.TopologicalEvent;
 import net.openhft.chronicle.threads.Threads;
@@ -38,10 +43,8 @@ import javax.management.remote.JMXServiceURL;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.rmi.registry.LocateRegistry;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -176,6 +179,7 @@ public enum ManagementTools {
                     m.put("entrySubscriberCount",""+objectKVSSubscription.entrySubscriberCount());
                     m.put("keyStoreValue",objectKVSSubscription.getClass().getName());
                     m.put("path",e.assetName() + "-" + e.name());
+                    addMetrics(m, view);
 
                     Iterator<Map.Entry> it =  view.entrySetIterator();
                     for (int i = 0; i<view.longSize(); i++) {
@@ -186,7 +190,7 @@ public enum ManagementTools {
                         else
                             m.put("~" + entry.getKey().toString(), entry.getValue().toString());
                     }
-                    dynamicMBean = new AssetTreeDynamicMBean(m);
+                    dynamicMBean = new AssetTreeDynamicMBean(m, operationsFor(view.asset()));
                     ObjectName atName = new ObjectName(createObjectNameUri(hostId, e.assetName(), e.name(), treeName));
                     registerTreeWithMBean(dynamicMBean, atName);
                     //end Dynamic MBeans Code
@@ -232,6 +236,7 @@ public enum ManagementTools {
                 m.put("entrySubscriberCount",""+objectKVSSubscription.entrySubscriberCount());
                 m.put("keyStoreValue",objectKVSSubscription.getClass().getName());
                 m.put("path",path);
+                addMetrics(m, view);
 
                 Iterator<Map.Entry> it =  view.entrySetIterator();
                 for (int i = 0; i<view.longSize(); i++) {
@@ -241,7 +246,7 @@ public enum ManagementTools {
                     else
                         m.put("~" + entry.getKey().toString(), entry.getValue().toString());
                 }
-                dynamicMBean = new AssetTreeDynamicMBean(m);
+                dynamicMBean = new AssetTreeDynamicMBean(m, operationsFor(view.asset()));
                 unregisterTreeWithMBean(atName);
                 registerTreeWithMBean(dynamicMBean, atName);
                 //end Dynamic MBeans Code
@@ -251,6 +256,39 @@ public enum ManagementTools {
         }
     }
 
+    /**
+     * adds the statistics of the store, the stores it wraps and the asset's value and field indexes.
+     */
+    private static void addMetrics(@NotNull Map m, @NotNull ObjectKeyValueStore view) {
+        for (Object o = view; o != null; o = o instanceof Assetted ? ((Assetted) o).underlying() : null)
+            if (o instanceof MetricsSource)
+                ((MetricsSource) o).addMetrics(m);
+        Object valueIndex = view.asset().getView(ValueIndex.class);
+        if (valueIndex instanceof MetricsSource)
+            ((MetricsSource) valueIndex).addMetrics(m);
+        Object fieldIndex = view.asset().getView(FieldIndex.class);
+        if (fieldIndex instanceof MetricsSource)
+            ((MetricsSource) fieldIndex).addMetrics(m);
+        // wraps the map view's store, so it is not under the view.
+        Object expiring = view.asset().getView(ExpiringKeyValueStore.class);
+        if (expiring instanceof MetricsSource)
+            ((MetricsSource) expiring).addMetrics(m);
+    }
+
+    /**
+     * operations to snapshot the map or reload it from its snapshot, if its mount has snapshots.
+     */
+    @NotNull
+    private static Map<String, Callable<String>> operationsFor(@NotNull Asset asset) {
+        SnapshotSchedule snapshots = asset.findView(SnapshotSchedule.class);
+        if (snapshots == null)
+            return Collections.emptyMap();
+        Map<String, Callable<String>> operations = new LinkedHashMap<>();
+        operations.put("snapshot", () -> "Wrote " + snapshots.snapshot(asset) + " records");
+        operations.put("restoreSnapshot", () -> "Loaded " + snapshots.restore(asset) + " records");
+        return operations;
+    }
+
     private static String createObjectNameUri(int hostId, @NotNull String assetName, String eventName, @NotNull String treeName) {
         System.out.println(treeName);
         StringBuilder sb = new StringBuilder(256);
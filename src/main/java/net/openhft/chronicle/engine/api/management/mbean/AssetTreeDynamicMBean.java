@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -26,10 +27,17 @@ public class AssetTreeDynamicMBean implements DynamicMBean {
 
     private final Properties properties;
     private final Map attributelist;
+    // operations which take no arguments, by name
+    private final Map<String, Callable<String>> operations;
 
     public AssetTreeDynamicMBean(Map attributelist) throws IOException {
+        this(attributelist, Collections.emptyMap());
+    }
+
+    public AssetTreeDynamicMBean(Map attributelist, Map<String, Callable<String>> operations) throws IOException {
         this.properties = new Properties();
         this.attributelist = attributelist;
+        this.operations = operations;
         load();
     }
 
@@ -101,6 +109,14 @@ public class AssetTreeDynamicMBean implements DynamicMBean {
                 throw new MBeanException(e);
             }
         }
+        Callable<String> operation = operations.get(name);
+        if (operation != null && ((args == null) || (args.length == 0))) {
+            try {
+                return operation.call();
+            } catch (Exception e) {
+                throw new MBeanException(e);
+            }
+        }
         throw new ReflectionException(new NoSuchMethodException(name));
     }
 
@@ -120,7 +136,11 @@ public class AssetTreeDynamicMBean implements DynamicMBean {
             attrs[i] = new MBeanAttributeInfo(name, "java.lang.String","Property " + name, true, true, false);
         }
 
-        MBeanOperationInfo[] opers = { new MBeanOperationInfo("reload","Reload properties from file", null, "void", 1) };
+        MBeanOperationInfo[] opers = new MBeanOperationInfo[1 + operations.size()];
+        opers[0] = new MBeanOperationInfo("reload","Reload properties from file", null, "void", 1);
+        int i = 1;
+        for (String name : operations.keySet())
+            opers[i++] = new MBeanOperationInfo(name, name, null, "java.lang.String", MBeanOperationInfo.ACTION);
         return new MBeanInfo(getClass().getName(), "Property Manager MBean",attrs, null, opers, null);
     }
 
@@ -0,0 +1,29 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.api.map;
+
+import java.io.Serializable;
+import java.util.function.BiPredicate;
+
+/**
+ * A filter on the entries of a map which can be sent to a server and run there, so only the
+ * entries which match are sent back.  The class must also be on the server's class path.
+ */
+@FunctionalInterface
+public interface EntryPredicate<K, V> extends BiPredicate<K, V>, Serializable {
+}
@@ -0,0 +1,45 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.api.map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Secondary indexes on fields of the values, declared with the hashIndexes and sortedIndexes of
+ * the map's request, e.g. "orders?hashIndexes=status&amp;sortedIndexes=price".
+ * <p>
+ * Field values are compared as Strings for enums and CharSequences, and numbers by value, so a
+ * field can be looked up with an enum or its name, or with a number of any type.
+ */
+public interface FieldIndex<K, V> {
+    /**
+     * @return the entries whose field equals the value, using a hash or sorted index on the field.
+     */
+    @NotNull
+    Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value);
+
+    /**
+     * @return the entries whose field is from fromValue inclusive to toValue exclusive, in the
+     * order of the field, using a sorted index on the field.  A null bound is open.
+     */
+    @NotNull
+    Map<K, V> entriesWhereBetween(@NotNull String field, @Nullable Object fromValue, @Nullable Object toValue);
+}
@@ -0,0 +1,66 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.api.map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * A lazy iterator over a store with only one segment, where a {@link SegmentCursor} would read the
+ * whole store at once.  It walks the store's keys and looks each one up as it is reached, so only
+ * one element is held at a time.  Keys which are removed before they are reached are skipped.
+ *
+ * @param <K> the type of key
+ * @param <T> the type of element produced
+ */
+public class KeyCursor<K, T> implements Iterator<T> {
+    @NotNull
+    private final Iterator<K> keys;
+    @NotNull
+    private final Function<K, T> lookup;
+    @Nullable
+    private T next;
+
+    /**
+     * @param keys   a lazy iterator over the keys
+     * @param lookup the element for a key, or null if it has been removed
+     */
+    public KeyCursor(@NotNull Iterator<K> keys, @NotNull Function<K, T> lookup) {
+        this.keys = keys;
+        this.lookup = lookup;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && keys.hasNext())
+            next = lookup.apply(keys.next());
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T t = next;
+        next = null;
+        return t;
+    }
+}
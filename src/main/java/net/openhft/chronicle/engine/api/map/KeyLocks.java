@@ -0,0 +1,40 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.api.map;
+
+/**
+ * Striped locks chosen by a key's hash, shared by every store, so the read-modify-write of
+ * {@link KeyValueStore#applyTo} is atomic for a key whichever layer of a map it runs on.
+ */
+final class KeyLocks {
+    static final int LOCKS = 256;
+    private static final Object[] locks = new Object[LOCKS];
+
+    static {
+        for (int i = 0; i < LOCKS; i++)
+            locks[i] = new Object();
+    }
+
+    private KeyLocks() {
+    }
+
+    static Object lockFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return locks[h & (LOCKS - 1)];
+    }
+}
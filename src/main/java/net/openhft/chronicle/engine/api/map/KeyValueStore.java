@@ -17,6 +17,9 @@
 package net.openhft.chronicle.engine.api.map;
 
 import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.util.SerializableBiFunction;
+import net.openhft.chronicle.core.util.SerializableFunction;
+import net.openhft.chronicle.core.util.SerializableUpdaterWithArg;
 import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
 import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
 import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
@@ -25,8 +28,16 @@ import net.openhft.chronicle.engine.api.tree.View;
 import net.openhft.lang.model.constraints.Nullable;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.*;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -52,6 +63,191 @@ public interface KeyValueStore<K, MV, V> extends Assetted<KeyValueStore<K, MV, V
     @org.jetbrains.annotations.Nullable
     V getAndPut(K key, V value);
 
+    /**
+     * put an entry which is removed once it has been in the store for timeToLive.  Only maps
+     * requested with a ttlMillis support this.
+     *
+     * @param key        to set
+     * @param value      to set
+     * @param timeToLive how long the entry lives, 0 for ever
+     * @param unit       of timeToLive
+     * @return true if it was replaced, false if it was added.
+     */
+    default boolean put(K key, V value, long timeToLive, @NotNull TimeUnit unit) {
+        throw new UnsupportedOperationException("Expiry is not enabled, request the map with a ttlMillis");
+    }
+
+    /**
+     * @param key to look up
+     * @return the value with its version, or null if absent.  Only maps requested with versioned=true
+     * support this.
+     */
+    @Nullable
+    default VersionedValue<V> getVersioned(K key) {
+        throw new UnsupportedOperationException("Versions are not enabled, request the map with versioned=true");
+    }
+
+    /**
+     * put a value only if the key's version is still the one given.
+     *
+     * @param key     to set
+     * @param value   to set
+     * @param version the key has now, or 0 if it should be absent
+     * @return the new version, or 0 if the key's version was different.
+     */
+    default long putIfVersion(K key, V value, long version) {
+        throw new UnsupportedOperationException("Versions are not enabled, request the map with versioned=true");
+    }
+
+    /**
+     * remove a key only if its version is still the one given.
+     *
+     * @return true if it was removed.
+     */
+    default boolean removeIfVersion(K key, long version) {
+        throw new UnsupportedOperationException("Versions are not enabled, request the map with versioned=true");
+    }
+
+    /**
+     * read a page of entries in key order.  Only maps requested with sorted=true support this.
+     *
+     * @param fromKey       the lowest key, or null to start with the first key.
+     * @param fromInclusive whether fromKey itself is included
+     * @param toKey         the highest key, or null to read to the end.
+     * @param toInclusive   whether toKey itself is included
+     * @param limit         the most entries to return
+     * @return the entries in key order.
+     */
+    default Map<K, V> entriesBetween(@org.jetbrains.annotations.Nullable K fromKey, boolean fromInclusive,
+                                     @org.jetbrains.annotations.Nullable K toKey, boolean toInclusive, int limit) {
+        throw new UnsupportedOperationException("Sorting is not enabled, request the map with sorted=true");
+    }
+
+    /**
+     * read a page of entries, in key order, whose keys start with a prefix.  Only maps with
+     * String keys requested with sorted=true support this.
+     *
+     * @param prefix   the keys must start with
+     * @param afterKey the last key of the previous page, or null for the first page.
+     * @param limit    the most entries to return
+     * @return the entries in key order.
+     */
+    default Map<K, V> entriesWithPrefix(@NotNull String prefix, @org.jetbrains.annotations.Nullable K afterKey, int limit) {
+        throw new UnsupportedOperationException("Sorting is not enabled, request the map with sorted=true");
+    }
+
+    /**
+     * look up entries by a field of the value.  A local map uses its {@link FieldIndex}, a remote
+     * store asks the server's.
+     *
+     * @return the entries whose field equals the value.
+     */
+    default Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value) {
+        throw new UnsupportedOperationException("No index on " + field + ", request the map with hashIndexes or sortedIndexes");
+    }
+
+    /**
+     * @return the entries whose field is from fromValue inclusive to toValue exclusive.
+     */
+    default Map<K, V> entriesWhereBetween(@NotNull String field, @org.jetbrains.annotations.Nullable Object fromValue,
+                                          @org.jetbrains.annotations.Nullable Object toValue) {
+        throw new UnsupportedOperationException("No index on " + field + ", request the map with sortedIndexes");
+    }
+
+    /**
+     * scan the store for the entries which match the filter, segments in parallel where possible.
+     * A remote store runs the scan on the server, so only the matches are sent.
+     *
+     * @param filter     which entries to return
+     * @param projection of the values to return
+     * @param limit      the most entries to return
+     * @return the key and projected value of each match.
+     */
+    default <R> Map<K, R> query(@NotNull EntryPredicate<K, V> filter,
+                                @NotNull SerializableFunction<V, R> projection, int limit) {
+        return SegmentQuery.query(this, filter, projection, limit);
+    }
+
+    /**
+     * @return the keys which currently map to the value, found with a scan of the store.
+     */
+    @NotNull
+    default Set<K> keysForValue(@NotNull V value) {
+        return new LinkedHashSet<>(query((k, v) -> Objects.equals(value, v), v -> null, Integer.MAX_VALUE).keySet());
+    }
+
+    /**
+     * atomically update the value of a key and apply a function to the result, where the store
+     * is.  A remote store sends the functions to the server, and only the result comes back.
+     * <p>
+     * Updates of a key are made one at a time under a lock chosen by its hash, so an update
+     * function may modify the value it is given and return it.  Updates still retry if the value
+     * is changed by a plain put, so the update function should not have other side effects, nor
+     * update other keys.
+     *
+     * @param updateFunction the new value from the old one, either may be null, a null new value
+     *                       removing the key.  If the updateFunction is null the value is only
+     *                       read.
+     * @param returnFunction applied to the new value, or null to return null.
+     * @return the result of the returnFunction
+     * @throws IllegalStateException if the value kept changing concurrently.
+     */
+    @org.jetbrains.annotations.Nullable
+    default <UA, RA, R> R applyTo(K key,
+                                  @org.jetbrains.annotations.Nullable SerializableBiFunction<V, UA, V> updateFunction, UA updateArgument,
+                                  @org.jetbrains.annotations.Nullable SerializableBiFunction<V, RA, R> returnFunction, RA returnArgument) {
+        if (updateFunction == null) {
+            V value = get(key);
+            return returnFunction == null ? null : returnFunction.apply(value, returnArgument);
+        }
+        // bounds the retries in case the old value never compares equal, e.g. an update function
+        // which changed a copy of it held elsewhere.
+        final int maxAttempts = 1_000;
+        synchronized (KeyLocks.lockFor(key)) {
+            for (int i = 0; i < maxAttempts; i++) {
+                V oldValue = get(key);
+                V value = updateFunction.apply(oldValue, updateArgument);
+                boolean updated;
+                if (value == oldValue) {
+                    // modified in place, no other update of this key can have happened meanwhile.
+                    if (value != null)
+                        put(key, value);
+                    updated = true;
+                } else {
+                    updated = oldValue == null
+                            ? value == null || putIfAbsent(key, value) == null
+                            : value == null ? removeIfEqual(key, oldValue) : replaceIfEqual(key, oldValue, value);
+                }
+                if (updated)
+                    return returnFunction == null ? null : returnFunction.apply(value, returnArgument);
+            }
+        }
+        throw new IllegalStateException("Unable to update " + key + " after " + maxAttempts + " attempts");
+    }
+
+    /**
+     * atomically update the value of a key where the store is, without waiting for a remote
+     * store to reply.
+     */
+    default <UA> void update(K key, @NotNull SerializableBiFunction<V, UA, V> updateFunction, UA updateArgument) {
+        applyTo(key, updateFunction, updateArgument, null, null);
+    }
+
+    /**
+     * apply a function to the whole map where the store is.  A remote store sends the function to
+     * the server, and only the result comes back.
+     */
+    default <A, R> R applyToMap(@NotNull SerializableBiFunction<ConcurrentMap<K, V>, A, R> function, A argument) {
+        return function.apply(asset().getView(MapView.class), argument);
+    }
+
+    /**
+     * update the whole map where the store is, without waiting for a remote store to reply.
+     */
+    default <A> void updateMap(@NotNull SerializableUpdaterWithArg<ConcurrentMap<K, V>, A> updater, A argument) {
+        updater.accept(asset().getView(MapView.class), argument);
+    }
+
     /**
      * remove a key
      *
@@ -65,6 +261,43 @@ public interface KeyValueStore<K, MV, V> extends Assetted<KeyValueStore<K, MV, V
     @org.jetbrains.annotations.Nullable
     V getAndRemove(K key);
 
+    /**
+     * look up many keys in one call, which a remote store sends as a single request.
+     *
+     * @param keys to look up
+     * @return the entries found, in the order of the keys.
+     */
+    @NotNull
+    default Map<K, V> getAll(@NotNull Collection<? extends K> keys) {
+        Map<K, V> entries = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null)
+                entries.put(key, value);
+        }
+        return entries;
+    }
+
+    /**
+     * put many entries in one call, which a remote store sends as a single request.
+     *
+     * @param entries to put
+     */
+    default void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * remove many keys in one call, which a remote store sends as a single request.
+     *
+     * @param keys to remove
+     */
+    default void removeAll(@NotNull Collection<? extends K> keys) {
+        for (K key : keys)
+            remove(key);
+    }
+
     @org.jetbrains.annotations.Nullable
     @Nullable
     default V get(K key) {
@@ -98,27 +331,17 @@ public interface KeyValueStore<K, MV, V> extends Assetted<KeyValueStore<K, MV, V
     void entriesFor(int segment, SubscriptionConsumer<MapEvent<K, V>> kvConsumer) throws InvalidSubscriberException;
 
     default Iterator<Map.Entry<K, V>> entrySetIterator() {
-        // todo optimise
-        List<Map.Entry<K, V>> entries = new ArrayList<>();
-        try {
-            for (int i = 0, seg = segments(); i < seg; i++)
-                entriesFor(i, e -> entries.add(new SimpleEntry<>(e.key(), e.value())));
-        } catch (InvalidSubscriberException e) {
-            throw new AssertionError(e);
-        }
-        return entries.iterator();
+        if (segments() == 1)
+            return new KeyCursor<>(keySetIterator(), k -> {
+                V v = get(k);
+                return v == null ? null : new SimpleEntry<>(k, v);
+            });
+        return new SegmentCursor<>(segments(), (segment, consumer) ->
+                entriesFor(segment, e -> consumer.accept(new SimpleEntry<>(e.key(), e.value()))));
     }
 
     default Iterator<K> keySetIterator() {
-        // todo optimise
-        List<K> keys = new ArrayList<>();
-        try {
-            for (int i = 0, seg = segments(); i < seg; i++)
-                keysFor(i, keys::add);
-        } catch (InvalidSubscriberException e) {
-            throw new AssertionError(e);
-        }
-        return keys.iterator();
+        return new SegmentCursor<>(segments(), this::keysFor);
     }
 
     void clear();
@@ -167,19 +390,22 @@ public interface KeyValueStore<K, MV, V> extends Assetted<KeyValueStore<K, MV, V
 
     @NotNull
     default Iterator<V> valuesIterator() {
-        // todo optimise
-        List<V> entries = new ArrayList<>();
-        try {
-            for (int i = 0, seg = segments(); i < seg; i++)
-                entriesFor(i, e -> entries.add(e.value()));
-        } catch (InvalidSubscriberException e) {
-            throw new AssertionError(e);
-        }
-        return entries.iterator();
+        if (segments() == 1)
+            return new KeyCursor<>(keySetIterator(), this::get);
+        return new SegmentCursor<>(segments(), (segment, consumer) ->
+                entriesFor(segment, e -> consumer.accept(e.value())));
     }
 
     boolean containsValue(V value);
 
+    /**
+     * @return true if the values passed to entriesFor consumers are reused, so they are only valid
+     * until the consumer returns.
+     */
+    default boolean reusesValues() {
+        return false;
+    }
+
     interface Entry<K, V> {
         K key();
 
@@ -34,12 +34,19 @@ public interface MapEvent<K, V> extends Entry<K, V>, ChangeEvent {
 
     void apply(MapEventListener<K, V> listener);
 
+    /**
+     * @return the version the change gave the entry, or 0 if the map doesn't keep versions.
+     */
+    default long version() {
+        return 0;
+    }
+
     @NotNull
     <K2, V2> MapEvent<K2, V2> translate(Function<K, K2> keyFunction, Function<V, V2> valueFunction);
 
     <K2, V2> MapEvent<K2, V2> translate(BiFunction<K, K2, K2> keyFunction, BiFunction<V, V2, V2> valueFunction);
 
     enum MapEventFields implements WireKey {
-        assetName, key, oldValue, value
+        assetName, key, oldValue, value, version
     }
 }
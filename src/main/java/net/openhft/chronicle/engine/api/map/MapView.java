@@ -16,14 +16,24 @@
 
 package net.openhft.chronicle.engine.api.map;
 
+import net.openhft.chronicle.core.util.SerializableFunction;
 import net.openhft.chronicle.engine.api.KeyedVisitable;
 import net.openhft.chronicle.engine.api.Updatable;
 import net.openhft.chronicle.engine.api.pubsub.Subscriber;
 import net.openhft.chronicle.engine.api.pubsub.TopicSubscriber;
 import net.openhft.chronicle.engine.api.tree.Assetted;
 import net.openhft.chronicle.engine.api.tree.View;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by peter on 22/05/15.
@@ -43,4 +53,116 @@ public interface MapView<K, MV, V> extends ConcurrentMap<K, V>,
 
     void registerSubscriber(Subscriber<MapEvent<K, V>> subscriber);
 
+    /**
+     * @param keys to look up
+     * @return the entries found, fetched from the store in one call.
+     */
+    Map<K, V> getAll(Collection<? extends K> keys);
+
+    /**
+     * put an entry which is removed, notifying subscribers, once it has been in the map for
+     * timeToLive.  Only maps requested with a ttlMillis support this.
+     */
+    void put(K key, V value, long timeToLive, TimeUnit unit);
+
+    /**
+     * @return the value with the version it was given, or null if absent.  Only maps requested
+     * with versioned=true support the version methods.
+     */
+    VersionedValue<V> getVersioned(K key);
+
+    /**
+     * put a value if the key's version is unchanged, 0 meaning the key is absent.
+     *
+     * @return the new version, or 0 if the version had changed.
+     */
+    long putIfVersion(K key, V value, long version);
+
+    /**
+     * @return true if the key was removed as its version was unchanged.
+     */
+    boolean removeIfVersion(K key, long version);
+
+    /**
+     * @return a page of entries in key order.  Only maps requested with sorted=true support
+     * range and prefix scans.
+     */
+    Map<K, V> entriesBetween(@Nullable K fromKey, boolean fromInclusive,
+                             @Nullable K toKey, boolean toInclusive, int limit);
+
+    /**
+     * @return a page of entries, in key order, whose String keys start with the prefix, after the
+     * afterKey if not null.
+     */
+    Map<K, V> entriesWithPrefix(@NotNull String prefix, @Nullable K afterKey, int limit);
+
+    /**
+     * iterate over the keys from fromKey inclusive to toKey exclusive, fetching pageSize entries
+     * from the store at a time.
+     */
+    @NotNull
+    default Iterator<Map.Entry<K, V>> rangeIterator(@Nullable K fromKey, @Nullable K toKey, int pageSize) {
+        return new PagingIterator<>(pageSize, lastKey -> lastKey == null
+                ? entriesBetween(fromKey, true, toKey, false, pageSize)
+                : entriesBetween(lastKey, false, toKey, false, pageSize));
+    }
+
+    /**
+     * iterate over the keys starting with prefix, fetching pageSize entries from the store at a
+     * time.
+     */
+    @NotNull
+    default Iterator<Map.Entry<K, V>> prefixIterator(@NotNull String prefix, int pageSize) {
+        return new PagingIterator<>(pageSize, lastKey -> entriesWithPrefix(prefix, lastKey, pageSize));
+    }
+
+    /**
+     * @return the entries whose field equals the value, found with the map's hash or sorted index
+     * on the field.
+     */
+    Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value);
+
+    /**
+     * @return the entries whose field is from fromValue inclusive to toValue exclusive, found with
+     * the map's sorted index on the field.
+     */
+    Map<K, V> entriesWhereBetween(@NotNull String field, @Nullable Object fromValue, @Nullable Object toValue);
+
+    /**
+     * @return the key and projected value of up to limit entries which match the filter, found by
+     * a scan where the store is, so a remote map only sends the matches.
+     */
+    <R> Map<K, R> query(@NotNull EntryPredicate<K, V> filter, @NotNull SerializableFunction<V, R> projection, int limit);
+
+    /**
+     * @return up to limit entries which match the filter.
+     */
+    default Map<K, V> query(@NotNull EntryPredicate<K, V> filter, int limit) {
+        return query(filter, v -> v, limit);
+    }
+
+    /**
+     * @return up to limit keys whose entries match the filter, without sending their values.
+     */
+    default Set<K> keysMatching(@NotNull EntryPredicate<K, V> filter, int limit) {
+        return query(filter, v -> null, limit).keySet();
+    }
+
+    /**
+     * @param keys to remove in one call to the store.
+     */
+    void removeAll(Collection<? extends K> keys);
+
+    /**
+     * @param value to look for
+     * @return the keys which currently map to this value.
+     */
+    default Set<K> keysForValue(V value) {
+        Set<K> keys = new LinkedHashSet<>();
+        for (Map.Entry<K, V> entry : entrySet())
+            if (Objects.equals(value, entry.getValue()))
+                keys.add(entry.getKey());
+        return keys;
+    }
+
 }
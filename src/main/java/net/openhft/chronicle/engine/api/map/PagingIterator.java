@@ -0,0 +1,69 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.api.map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterates over entries a page at a time, asking for the page after the last key seen until a
+ * page comes back with fewer than pageSize entries.
+ */
+class PagingIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private final int pageSize;
+    @NotNull
+    private final Function<K, Map<K, V>> nextPage;
+    @Nullable
+    private Iterator<Map.Entry<K, V>> page = null;
+    @Nullable
+    private K lastKey = null;
+    private boolean lastPage = false;
+
+    PagingIterator(int pageSize, @NotNull Function<K, Map<K, V>> nextPage) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive, was " + pageSize);
+        this.pageSize = pageSize;
+        this.nextPage = nextPage;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (page == null || !page.hasNext()) {
+            if (lastPage)
+                return false;
+            Map<K, V> entries = nextPage.apply(lastKey);
+            lastPage = entries.size() < pageSize;
+            page = entries.entrySet().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Map.Entry<K, V> entry = page.next();
+        lastKey = entry.getKey();
+        return entry;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.api.map;
+
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy iterator over a segmented store.  Only one segment is read at a time, into a buffer
+ * which is reused for each segment, so the memory needed for a full scan is bounded by the size
+ * of the largest segment rather than the size of the store.  A store with only one segment is
+ * better read with a {@link KeyCursor}.
+ *
+ * @param <T> the type of element produced
+ */
+public class SegmentCursor<T> implements Iterator<T> {
+    private final int segments;
+    @NotNull
+    private final SegmentReader<T> reader;
+    private final List<T> buffer = new ArrayList<>();
+    private int nextSegment = 0;
+    private int index = 0;
+
+    public SegmentCursor(int segments, @NotNull SegmentReader<T> reader) {
+        this.segments = segments;
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (index >= buffer.size()) {
+            buffer.clear();
+            index = 0;
+            if (nextSegment >= segments)
+                return false;
+            try {
+                reader.readSegment(nextSegment++, buffer::add);
+            } catch (InvalidSubscriberException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T t = buffer.get(index);
+        // let the element be collected as soon as the caller has finished with it.
+        buffer.set(index++, null);
+        return t;
+    }
+
+    @FunctionalInterface
+    public interface SegmentReader<T> {
+        void readSegment(int segment, SubscriptionConsumer<T> consumer) throws InvalidSubscriberException;
+    }
+}
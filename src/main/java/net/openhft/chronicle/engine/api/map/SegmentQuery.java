@@ -0,0 +1,104 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.api.map;
+
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a filter and projection over every segment of a store, in parallel in the common fork-join
+ * pool when the store has more than one segment and doesn't reuse its values.  Each segment is
+ * scanned into its own map and the results are combined in segment order, so the scans stop
+ * early once the limit has been reached.
+ * <p>
+ * A store which reuses its values passes the same instance for every entry, so where the
+ * projection returns that instance the value is read again once the scan is done, to give each
+ * entry its own copy.  An entry removed in the meantime is left out.
+ */
+final class SegmentQuery {
+    private SegmentQuery() {
+    }
+
+    @NotNull
+    static <K, V, R> Map<K, R> query(@NotNull KeyValueStore<K, ?, V> store,
+                                     @NotNull EntryPredicate<K, V> filter,
+                                     @NotNull Function<V, R> projection,
+                                     int limit) {
+        int segments = store.segments();
+        AtomicInteger matched = new AtomicInteger();
+        IntStream range = IntStream.range(0, segments);
+        if (segments > 1 && !store.reusesValues())
+            range = range.parallel();
+        List<Map<K, R>> results = range
+                .mapToObj(segment -> scan(store, segment, filter, projection, limit, matched))
+                .collect(Collectors.toList());
+
+        Map<K, R> combined = new LinkedHashMap<>();
+        for (Map<K, R> result : results) {
+            for (Map.Entry<K, R> entry : result.entrySet()) {
+                if (combined.size() >= limit)
+                    return combined;
+                combined.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return combined;
+    }
+
+    @NotNull
+    private static <K, V, R> Map<K, R> scan(@NotNull KeyValueStore<K, ?, V> store, int segment,
+                                            @NotNull EntryPredicate<K, V> filter,
+                                            @NotNull Function<V, R> projection,
+                                            int limit, @NotNull AtomicInteger matched) {
+        Map<K, R> result = new LinkedHashMap<>();
+        boolean reusesValues = store.reusesValues();
+        List<K> reused = new ArrayList<>();
+        try {
+            store.entriesFor(segment, e -> {
+                if (matched.get() >= limit)
+                    throw new InvalidSubscriberException();
+                if (filter.test(e.key(), e.value())) {
+                    R r = projection.apply(e.value());
+                    if (reusesValues && r == e.value())
+                        reused.add(e.key());
+                    result.put(e.key(), r);
+                    matched.incrementAndGet();
+                }
+            });
+        } catch (InvalidSubscriberException limitReached) {
+            // enough entries have been found.
+        }
+        // read outside the scan, as a store can hold a lock on the segment while scanning it.
+        for (K key : reused) {
+            V value = store.get(key);
+            if (value == null)
+                result.remove(key);
+            else
+                result.put(key, (R) value);
+        }
+        return result;
+    }
+}
@@ -18,9 +18,21 @@ package net.openhft.chronicle.engine.api.map;
 
 import net.openhft.chronicle.engine.api.tree.View;
 import net.openhft.chronicle.engine.map.ObjectKeyValueStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Created by peter on 25/05/15.
  */
 public interface StringStringKeyValueStore extends ObjectKeyValueStore<String, StringBuilder, String>, View {
+
+    /**
+     * Read a value into the StringBuilder provided without creating a String.
+     *
+     * @param key   to look up
+     * @param using to overwrite with the value
+     * @return using, or null if there is no entry for this key.
+     */
+    @Nullable
+    StringBuilder readValue(String key, @NotNull StringBuilder using);
 }
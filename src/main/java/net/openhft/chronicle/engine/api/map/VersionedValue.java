@@ -0,0 +1,68 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.api.map;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * A value with the version it was given when it was put, for use with
+ * {@link MapView#putIfVersion} and {@link MapView#removeIfVersion}.
+ */
+public final class VersionedValue<V> {
+    @NotNull
+    private final V value;
+    private final long version;
+
+    public VersionedValue(@NotNull V value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    @NotNull
+    public V value() {
+        return value;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VersionedValue)) return false;
+        VersionedValue<?> that = (VersionedValue<?>) o;
+        return version == that.version && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, version);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "VersionedValue{" +
+                "value=" + value +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -16,6 +16,7 @@
 
 package net.openhft.chronicle.engine.api.set;
 
+import net.openhft.chronicle.engine.api.collection.SegmentedCollection;
 import net.openhft.chronicle.engine.api.map.MapView;
 import net.openhft.chronicle.engine.api.tree.Assetted;
 import net.openhft.chronicle.engine.api.tree.View;
@@ -26,5 +27,5 @@ import java.util.Set;
 /**
  * Created by peter on 22/05/15.
  */
-public interface EntrySetView<K, MV, V> extends Set<Entry<K, V>>, Assetted<MapView<K, MV, V>>, View {
+public interface EntrySetView<K, MV, V> extends Set<Entry<K, V>>, SegmentedCollection<Entry<K, V>>, Assetted<MapView<K, MV, V>>, View {
 }
@@ -16,6 +16,7 @@
 
 package net.openhft.chronicle.engine.api.set;
 
+import net.openhft.chronicle.engine.api.collection.SegmentedCollection;
 import net.openhft.chronicle.engine.api.tree.View;
 
 import java.util.Set;
@@ -23,5 +24,5 @@ import java.util.Set;
 /**
  * Created by peter on 28/05/15.
  */
-public interface KeySetView<K> extends Set<K>, View {
+public interface KeySetView<K> extends Set<K>, SegmentedCollection<K>, View {
 }
@@ -27,6 +27,7 @@ import net.openhft.chronicle.engine.api.pubsub.TopicPublisher;
 import net.openhft.chronicle.engine.api.session.Heartbeat;
 import net.openhft.chronicle.engine.api.set.EntrySetView;
 import net.openhft.chronicle.engine.api.set.KeySetView;
+import net.openhft.chronicle.engine.map.EvictionPolicy;
 import net.openhft.chronicle.engine.map.ObjectKVSSubscription;
 import net.openhft.chronicle.engine.server.WireType;
 import net.openhft.chronicle.engine.tree.TopologySubscription;
@@ -67,6 +68,19 @@ public class RequestContext implements Cloneable {
     private Boolean putReturnsNull = null,
             removeReturnsNull = null,
             bootstrap = null;
+    @Nullable
+    private Boolean parallelBootstrap = null, valueIndex = null, flyweightValues = null, nearCache = null, journal = null, versioned = null, sorted = null;
+    private long nearCacheEntries;
+    @Nullable
+    private Long ttlMillis = null;
+    private long maxEntries, maxBytes;
+    private long journalSyncMillis;
+    private long maxOutstanding;
+    private long largeReadBytes, contentCacheBytes;
+    @Nullable
+    private EvictionPolicy eviction = null;
+    @Nullable
+    private String hashIndexes = null, sortedIndexes = null;
     private double averageValueSize;
     private long entries;
     private Boolean recurse;
@@ -117,6 +131,24 @@ public class RequestContext implements Cloneable {
         WireParser parser = new VanillaWireParser();
         parser.register(() -> "view", v -> v.text((Consumer<String>) this::view));
         parser.register(() -> "bootstrap", v -> v.bool(b -> this.bootstrap = b));
+        parser.register(() -> "parallelBootstrap", v -> v.bool(b -> this.parallelBootstrap = b));
+        parser.register(() -> "valueIndex", v -> v.bool(b -> this.valueIndex = b));
+        parser.register(() -> "hashIndexes", v -> v.text((Consumer<String>) x -> this.hashIndexes = x));
+        parser.register(() -> "sortedIndexes", v -> v.text((Consumer<String>) x -> this.sortedIndexes = x));
+        parser.register(() -> "flyweightValues", v -> v.bool(b -> this.flyweightValues = b));
+        parser.register(() -> "nearCache", v -> v.bool(b -> this.nearCache = b));
+        parser.register(() -> "nearCacheEntries", v -> v.int64(x -> this.nearCacheEntries = x));
+        parser.register(() -> "ttlMillis", v -> v.int64(x -> this.ttlMillis = x));
+        parser.register(() -> "maxEntries", v -> v.int64(x -> this.maxEntries = x));
+        parser.register(() -> "maxBytes", v -> v.int64(x -> this.maxBytes = x));
+        parser.register(() -> "versioned", v -> v.bool(b -> this.versioned = b));
+        parser.register(() -> "sorted", v -> v.bool(b -> this.sorted = b));
+        parser.register(() -> "journal", v -> v.bool(b -> this.journal = b));
+        parser.register(() -> "journalSyncMillis", v -> v.int64(x -> this.journalSyncMillis = x));
+        parser.register(() -> "maxOutstanding", v -> v.int64(x -> this.maxOutstanding = x));
+        parser.register(() -> "largeReadBytes", v -> v.int64(x -> this.largeReadBytes = x));
+        parser.register(() -> "contentCacheBytes", v -> v.int64(x -> this.contentCacheBytes = x));
+        parser.register(() -> "eviction", v -> v.text((Consumer<String>) x -> this.eviction = EvictionPolicy.valueOf(x)));
         parser.register(() -> "putReturnsNull", v -> v.bool(b -> this.putReturnsNull = b));
         parser.register(() -> "removeReturnsNull", v -> v.bool(b -> this.removeReturnsNull = b));
         parser.register(() -> "basePath", v -> v.text((Consumer<String>) x -> this.basePath = x));
@@ -315,6 +347,260 @@ public class RequestContext implements Cloneable {
         return this;
     }
 
+    /**
+     * @return whether the segments of a store should be scanned concurrently when bootstrapping a
+     * subscriber, the subscriber still receives the entries in order.
+     */
+    @Nullable
+    public Boolean parallelBootstrap() {
+        return parallelBootstrap;
+    }
+
+    @NotNull
+    public RequestContext parallelBootstrap(boolean parallelBootstrap) {
+        this.parallelBootstrap = parallelBootstrap;
+        return this;
+    }
+
+    /**
+     * @return whether a map should keep an index of values to keys, for containsValue.
+     */
+    @Nullable
+    public Boolean valueIndex() {
+        return valueIndex;
+    }
+
+    @NotNull
+    public RequestContext valueIndex(boolean valueIndex) {
+        this.valueIndex = valueIndex;
+        return this;
+    }
+
+    /**
+     * @return whether a map should decode values for bootstraps and events into reused instances,
+     * which are only valid until the consumer returns.  A string map hands out reused
+     * CharSequence views of the stored chars instead of Strings.
+     */
+    @Nullable
+    public Boolean flyweightValues() {
+        return flyweightValues;
+    }
+
+    @NotNull
+    public RequestContext flyweightValues(boolean flyweightValues) {
+        this.flyweightValues = flyweightValues;
+        return this;
+    }
+
+    /**
+     * @return whether a remote map should keep recently read entries locally, kept up to date by
+     * the map's events.
+     */
+    @Nullable
+    public Boolean nearCache() {
+        return nearCache;
+    }
+
+    @NotNull
+    public RequestContext nearCache(boolean nearCache) {
+        this.nearCache = nearCache;
+        return this;
+    }
+
+    /**
+     * @return the most entries a near cache should hold, or 0 for the default.
+     */
+    public long nearCacheEntries() {
+        return nearCacheEntries;
+    }
+
+    @NotNull
+    public RequestContext nearCacheEntries(long nearCacheEntries) {
+        this.nearCacheEntries = nearCacheEntries;
+        return this;
+    }
+
+    /**
+     * @return how long entries of a map live unless put with their own time to live, 0 for ever,
+     * or null if the map doesn't expire entries.
+     */
+    @Nullable
+    public Long ttlMillis() {
+        return ttlMillis;
+    }
+
+    @NotNull
+    public RequestContext ttlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        return this;
+    }
+
+    /**
+     * @return the most entries an on heap map holds before evicting, or 0 for no limit.
+     */
+    public long maxEntries() {
+        return maxEntries;
+    }
+
+    @NotNull
+    public RequestContext maxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * @return the estimated bytes an on heap map holds before evicting, or 0 for no limit.
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    @NotNull
+    public RequestContext maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    @Nullable
+    public EvictionPolicy eviction() {
+        return eviction;
+    }
+
+    @NotNull
+    public RequestContext eviction(EvictionPolicy eviction) {
+        this.eviction = eviction;
+        return this;
+    }
+
+    /**
+     * @return true if each entry of an in memory map has a version which conditional changes can
+     * be made against.
+     */
+    @Nullable
+    public Boolean versioned() {
+        return versioned;
+    }
+
+    @NotNull
+    public RequestContext versioned(boolean versioned) {
+        this.versioned = versioned;
+        return this;
+    }
+
+    /**
+     * @return true if an in memory map keeps its keys in order so ranges and prefixes of the keys
+     * can be scanned.
+     */
+    @Nullable
+    public Boolean sorted() {
+        return sorted;
+    }
+
+    @NotNull
+    public RequestContext sorted(boolean sorted) {
+        this.sorted = sorted;
+        return this;
+    }
+
+    /**
+     * @return true if every change to an in memory map is appended to a journal under the basePath
+     * and replayed on restart.
+     */
+    @Nullable
+    public Boolean journal() {
+        return journal;
+    }
+
+    @NotNull
+    public RequestContext journal(boolean journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * @return how often a journal is forced to disk, or 0 to force it after every change.
+     */
+    public long journalSyncMillis() {
+        return journalSyncMillis;
+    }
+
+    @NotNull
+    public RequestContext journalSyncMillis(long journalSyncMillis) {
+        this.journalSyncMillis = journalSyncMillis;
+        return this;
+    }
+
+    /**
+     * @return the most asynchronous requests a remote map can have waiting for a reply, or 0 for
+     * only the limit of its connection.
+     */
+    public long maxOutstanding() {
+        return maxOutstanding;
+    }
+
+    @NotNull
+    public RequestContext maxOutstanding(long maxOutstanding) {
+        this.maxOutstanding = maxOutstanding;
+        return this;
+    }
+
+    /**
+     * @return the size from which a file per key store reads a value into a buffer of its own,
+     * rather than one it reuses, or 0 to always reuse one.
+     */
+    public long largeReadBytes() {
+        return largeReadBytes;
+    }
+
+    @NotNull
+    public RequestContext largeReadBytes(long largeReadBytes) {
+        this.largeReadBytes = largeReadBytes;
+        return this;
+    }
+
+    /**
+     * @return the most bytes of file contents a file per key store caches, or 0 to only keep the
+     * contents of the files it has seen change, without a bound.
+     */
+    public long contentCacheBytes() {
+        return contentCacheBytes;
+    }
+
+    @NotNull
+    public RequestContext contentCacheBytes(long contentCacheBytes) {
+        this.contentCacheBytes = contentCacheBytes;
+        return this;
+    }
+
+    /**
+     * @return a comma separated list of value fields to index for lookups by equality.
+     */
+    @Nullable
+    public String hashIndexes() {
+        return hashIndexes;
+    }
+
+    @NotNull
+    public RequestContext hashIndexes(String hashIndexes) {
+        this.hashIndexes = hashIndexes;
+        return this;
+    }
+
+    /**
+     * @return a comma separated list of value fields to index in order, for lookups by equality or
+     * range.
+     */
+    @Nullable
+    public String sortedIndexes() {
+        return sortedIndexes;
+    }
+
+    @NotNull
+    public RequestContext sortedIndexes(String sortedIndexes) {
+        this.sortedIndexes = sortedIndexes;
+        return this;
+    }
+
     @NotNull
     @Override
     public String toString() {
@@ -329,6 +615,24 @@ public class RequestContext implements Cloneable {
                 ", putReturnsNull=" + putReturnsNull +
                 ", removeReturnsNull=" + removeReturnsNull +
                 ", bootstrap=" + bootstrap +
+                ", parallelBootstrap=" + parallelBootstrap +
+                ", valueIndex=" + valueIndex +
+                ", flyweightValues=" + flyweightValues +
+                ", nearCache=" + nearCache +
+                ", nearCacheEntries=" + nearCacheEntries +
+                ", ttlMillis=" + ttlMillis +
+                ", maxEntries=" + maxEntries +
+                ", maxBytes=" + maxBytes +
+                ", eviction=" + eviction +
+                ", versioned=" + versioned +
+                ", sorted=" + sorted +
+                ", journal=" + journal +
+                ", journalSyncMillis=" + journalSyncMillis +
+                ", maxOutstanding=" + maxOutstanding +
+                ", largeReadBytes=" + largeReadBytes +
+                ", contentCacheBytes=" + contentCacheBytes +
+                ", hashIndexes=" + hashIndexes +
+                ", sortedIndexes=" + sortedIndexes +
                 ", averageValueSize=" + averageValueSize +
                 ", entries=" + entries +
                 ", recurse=" + recurse +
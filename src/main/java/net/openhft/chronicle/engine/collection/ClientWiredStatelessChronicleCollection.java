@@ -22,7 +22,9 @@ import net.openhft.chronicle.wire.ValueIn;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -65,11 +67,8 @@ public class ClientWiredStatelessChronicleCollection<U, E extends Collection<U>>
     @Override
     @NotNull
     public Iterator<U> iterator() {
-        // todo improve numberOfSegments
         final int numberOfSegments = proxyReturnUint16(EventId.numberOfSegments);
-
-        // todo iterate the segments for the moment we just assume one segment
-        return segmentSet(1).iterator();
+        return new SegmentIterator(numberOfSegments);
     }
 
     /**
@@ -92,6 +91,38 @@ public class ClientWiredStatelessChronicleCollection<U, E extends Collection<U>>
                 });
     }
 
+    /**
+     * fetches one segment at a time from the server, only holding the current segment on the
+     * client
+     */
+    private class SegmentIterator implements Iterator<U> {
+        private final int numberOfSegments;
+        private int nextSegment = 0;
+        @NotNull
+        private Iterator<U> current = Collections.emptyIterator();
+
+        SegmentIterator(int numberOfSegments) {
+            this.numberOfSegments = numberOfSegments;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (nextSegment >= numberOfSegments)
+                    return false;
+                current = segmentSet(nextSegment++).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public U next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+
     @Override
     @NotNull
     public Object[] toArray() {
@@ -21,6 +21,8 @@ package net.openhft.chronicle.engine.collection;
  */
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.engine.api.collection.SegmentedCollection;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
 import net.openhft.chronicle.network.connection.CoreFields;
 import net.openhft.chronicle.wire.*;
 import org.jetbrains.annotations.NotNull;
@@ -80,13 +82,14 @@ public class CollectionWireHandler<U, C extends Collection<U>> {
                     // note :  remove on the key-set returns a boolean and on the map returns the
                     // old value
                     if (EventId.iterator.contentEquals(eventName)) {
+                        final int segment = valueIn.uint16();
                         final ValueOut valueOut = outWire.writeEventName(CoreFields.reply);
-                        valueOut.sequence(v -> underlyingCollection.forEach(e -> toWire.accept(v, e)));
+                        valueOut.sequence(v -> forEachInSegment(segment, e -> toWire.accept(v, e)));
                         return;
                     }
 
                     if (EventId.numberOfSegments.contentEquals(eventName)) {
-                        outWire.write(CoreFields.reply).int32(1);
+                        outWire.write(CoreFields.reply).uint16(segments());
                         return;
                     }
 
@@ -171,6 +174,24 @@ public class CollectionWireHandler<U, C extends Collection<U>> {
         }
     };
 
+    private int segments() {
+        return underlyingCollection instanceof SegmentedCollection
+                ? ((SegmentedCollection) underlyingCollection).segments()
+                : 1;
+    }
+
+    private void forEachInSegment(int segment, @NotNull Consumer<U> consumer) {
+        if (!(underlyingCollection instanceof SegmentedCollection)) {
+            underlyingCollection.forEach(consumer);
+            return;
+        }
+        try {
+            ((SegmentedCollection<U>) underlyingCollection).forEachInSegment(segment, consumer::accept);
+        } catch (InvalidSubscriberException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     private C collectionFromWire() {
         C c = factory.get();
         final ValueIn valueIn = ((Wire) outWire).getValueIn();
@@ -18,6 +18,8 @@ package net.openhft.chronicle.engine.collection;
 
 import net.openhft.chronicle.engine.api.collection.ValuesCollection;
 import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
 import net.openhft.chronicle.engine.api.tree.View;
@@ -49,6 +51,16 @@ public class VanillaValuesCollection<K, V> extends AbstractCollection<V> impleme
         return mapView.underlying().valuesIterator();
     }
 
+    @Override
+    public int segments() {
+        return mapView.underlying().segments();
+    }
+
+    @Override
+    public void forEachInSegment(int segment, @NotNull SubscriptionConsumer<V> consumer) throws InvalidSubscriberException {
+        mapView.underlying().entriesFor(segment, e -> consumer.accept(e.value()));
+    }
+
     @Override
     public int size() {
         return mapView.size();
@@ -19,6 +19,8 @@ package net.openhft.chronicle.engine.fs;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.tree.*;
 import net.openhft.chronicle.engine.map.ChronicleMapKeyValueStore;
+import net.openhft.chronicle.engine.map.SnapshotSchedule;
+import net.openhft.chronicle.engine.server.WireType;
 import net.openhft.chronicle.engine.tree.VanillaAsset;
 import net.openhft.chronicle.wire.Marshallable;
 import net.openhft.chronicle.wire.WireIn;
@@ -33,6 +35,14 @@ public class ChronicleMapGroupFS implements Marshallable, MountPoint, LeafViewFa
     int averageValueSize;
     Boolean putReturnsNull, removeReturnsNull;
     private long maxEntries;
+    // how Marshallable values are stored, TEXT, BINARY or COMPACT
+    WireType codec;
+    // values of at least this many bytes are compressed, 0 for none
+    int compressAbove;
+    // where snapshots of the maps are kept, none if not set
+    String snapshotDir;
+    // how often the maps are snapshot, 0 to only do so when asked
+    long snapshotSeconds;
 
     @Override
     public String spec() {
@@ -52,7 +62,11 @@ public class ChronicleMapGroupFS implements Marshallable, MountPoint, LeafViewFa
                 .read(() -> "maxEntries").int64(e -> maxEntries = e)
                 .read(() -> "averageValueSize").int32(e -> averageValueSize = e)
                 .read(() -> "putReturnsNull").bool(e -> putReturnsNull = e)
-                .read(() -> "removeReturnsNull").bool(e -> removeReturnsNull = e);
+                .read(() -> "removeReturnsNull").bool(e -> removeReturnsNull = e)
+                .read(() -> "codec").text(s -> codec = s == null || s.isEmpty() ? null : WireType.valueOf(s))
+                .read(() -> "compressAbove").int32(e -> compressAbove = e)
+                .read(() -> "snapshotDir").text(s -> snapshotDir = s)
+                .read(() -> "snapshotSeconds").int64(e -> snapshotSeconds = e);
     }
 
     @Override
@@ -63,7 +77,11 @@ public class ChronicleMapGroupFS implements Marshallable, MountPoint, LeafViewFa
                 .write(() -> "maxEntries").int64(maxEntries)
                 .write(() -> "averageValueSize").int32(averageValueSize)
                 .write(() -> "putReturnsNull").bool(putReturnsNull)
-                .write(() -> "removeReturnsNull").bool(removeReturnsNull);
+                .write(() -> "removeReturnsNull").bool(removeReturnsNull)
+                .write(() -> "codec").text(codec == null ? null : codec.name())
+                .write(() -> "compressAbove").int32(compressAbove)
+                .write(() -> "snapshotDir").text(snapshotDir)
+                .write(() -> "snapshotSeconds").int64(snapshotSeconds);
     }
 
     @Override
@@ -71,8 +89,12 @@ public class ChronicleMapGroupFS implements Marshallable, MountPoint, LeafViewFa
         final String baseDir1 = baseDir;
         RequestContext context = RequestContext.requestContext(name).basePath(baseDir + "/" + spec);
         Asset asset = assetTree.acquireAsset(context);
-        ((VanillaAsset) asset).enableTranslatingValuesToBytesStore();
+        ((VanillaAsset) asset).enableTranslatingValuesToBytesStore(compressAbove);
+        if (codec != null)
+            asset.registerView(WireType.class, codec);
         asset.addLeafRule(KeyValueStore.class, "use Chronicle Map", this);
+        if (snapshotDir != null && !snapshotDir.isEmpty())
+            SnapshotSchedule.install(baseDir, assetTree, asset, snapshotDir, snapshotSeconds);
     }
 
     // todo check this
@@ -21,6 +21,8 @@ import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.AssetTree;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
 import net.openhft.chronicle.engine.map.FilePerKeyValueStore;
+import net.openhft.chronicle.engine.map.SnapshotSchedule;
+import net.openhft.chronicle.engine.server.WireType;
 import net.openhft.chronicle.engine.tree.VanillaAsset;
 import net.openhft.chronicle.wire.Marshallable;
 import net.openhft.chronicle.wire.WireIn;
@@ -36,6 +38,22 @@ public class FilePerKeyGroupFS implements Marshallable, MountPoint {
     String spec, name;
     Class valueType;
     boolean recurse;
+    // how Marshallable values are stored, TEXT, BINARY or COMPACT
+    WireType codec;
+    // values of at least this many bytes are compressed, 0 for none
+    int compressAbove;
+    // how long writes are held before being written to disk, 0 to write each one as it happens
+    long writeBehindMillis;
+    // the most keys held before they are written, 0 for the default
+    int writeBehindEntries;
+    // where snapshots of the maps are kept, none if not set
+    String snapshotDir;
+    // how often the maps are snapshot, 0 to only do so when asked
+    long snapshotSeconds;
+    // files of at least this many bytes are read into a buffer of their own, 0 for never
+    long largeReadBytes;
+    // the most bytes of file contents cached in memory, 0 for none
+    long contentCacheBytes;
 
     @Override
     public String spec() {
@@ -52,7 +70,15 @@ public class FilePerKeyGroupFS implements Marshallable, MountPoint {
         wire.read(() -> "spec").text(s -> spec = s)
                 .read(() -> "name").text(s -> name = s)
                 .read(() -> "valueType").typeLiteral(CLASS_ALIASES::forName, c -> valueType = c)
-                .read(() -> "recurse").bool(b -> recurse = b);
+                .read(() -> "recurse").bool(b -> recurse = b)
+                .read(() -> "codec").text(s -> codec = s == null || s.isEmpty() ? null : WireType.valueOf(s))
+                .read(() -> "compressAbove").int32(e -> compressAbove = e)
+                .read(() -> "writeBehindMillis").int64(e -> writeBehindMillis = e)
+                .read(() -> "writeBehindEntries").int32(e -> writeBehindEntries = e)
+                .read(() -> "snapshotDir").text(s -> snapshotDir = s)
+                .read(() -> "snapshotSeconds").int64(e -> snapshotSeconds = e)
+                .read(() -> "largeReadBytes").int64(e -> largeReadBytes = e)
+                .read(() -> "contentCacheBytes").int64(e -> contentCacheBytes = e);
     }
 
     @Override
@@ -60,14 +86,30 @@ public class FilePerKeyGroupFS implements Marshallable, MountPoint {
         wire.write(() -> "spec").text(spec)
                 .write(() -> "name").text(name)
                 .write(() -> "valueType").typeLiteral(CLASS_ALIASES.nameFor(valueType))
-                .write(() -> "recurse").bool(recurse);
+                .write(() -> "recurse").bool(recurse)
+                .write(() -> "codec").text(codec == null ? null : codec.name())
+                .write(() -> "compressAbove").int32(compressAbove)
+                .write(() -> "writeBehindMillis").int64(writeBehindMillis)
+                .write(() -> "writeBehindEntries").int32(writeBehindEntries)
+                .write(() -> "snapshotDir").text(snapshotDir)
+                .write(() -> "snapshotSeconds").int64(snapshotSeconds)
+                .write(() -> "largeReadBytes").int64(largeReadBytes)
+                .write(() -> "contentCacheBytes").int64(contentCacheBytes);
     }
 
     @Override
     public void install(String baseDir, @NotNull AssetTree assetTree) {
-        RequestContext context = RequestContext.requestContext(name).basePath(baseDir + "/" + spec).recurse(this.recurse).keyType(String.class);
+        RequestContext context = RequestContext.requestContext(name).basePath(baseDir + "/" + spec).recurse(this.recurse).keyType(String.class)
+                .largeReadBytes(largeReadBytes).contentCacheBytes(contentCacheBytes);
         Asset asset = assetTree.acquireAsset(context);
-        ((VanillaAsset) asset).enableTranslatingValuesToBytesStore();
-        asset.registerView(KeyValueStore.class, new FilePerKeyValueStore(context, asset));
+        ((VanillaAsset) asset).enableTranslatingValuesToBytesStore(compressAbove);
+        if (codec != null)
+            asset.registerView(WireType.class, codec);
+        FilePerKeyValueStore kvStore = new FilePerKeyValueStore(context, asset);
+        if (writeBehindMillis > 0)
+            kvStore.writeBehind(writeBehindMillis, writeBehindEntries);
+        asset.registerView(KeyValueStore.class, kvStore);
+        if (snapshotDir != null && !snapshotDir.isEmpty())
+            SnapshotSchedule.install(baseDir, assetTree, asset, snapshotDir, snapshotSeconds);
     }
 }
@@ -16,9 +16,12 @@
 
 package net.openhft.chronicle.engine.map;
 
+import net.openhft.chronicle.core.util.SerializableFunction;
 import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
+import net.openhft.chronicle.engine.api.map.EntryPredicate;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.VersionedValue;
 import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
 import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.tree.Asset;
@@ -26,8 +29,11 @@ import net.openhft.chronicle.engine.api.tree.RequestContext;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by peter on 22/05/15.
@@ -119,11 +125,65 @@ public class AbstractKeyValueStore<K, MV, V> implements KeyValueStore<K, MV, V>
         return kvStore.put(key, value);
     }
 
+    @Override
+    public boolean put(K key, V value, long timeToLive, @NotNull TimeUnit unit) {
+        return kvStore.put(key, value, timeToLive, unit);
+    }
+
     @Override
     public boolean remove(K key) {
         return kvStore.remove(key);
     }
 
+    @Nullable
+    @Override
+    public VersionedValue<V> getVersioned(K key) {
+        return kvStore.getVersioned(key);
+    }
+
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        return kvStore.putIfVersion(key, value, version);
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        return kvStore.removeIfVersion(key, version);
+    }
+
+    @Override
+    public Map<K, V> entriesBetween(@Nullable K fromKey, boolean fromInclusive,
+                                    @Nullable K toKey, boolean toInclusive, int limit) {
+        return kvStore.entriesBetween(fromKey, fromInclusive, toKey, toInclusive, limit);
+    }
+
+    @Override
+    public Map<K, V> entriesWithPrefix(@NotNull String prefix, @Nullable K afterKey, int limit) {
+        return kvStore.entriesWithPrefix(prefix, afterKey, limit);
+    }
+
+    @NotNull
+    @Override
+    public Set<K> keysForValue(@NotNull V value) {
+        return kvStore.keysForValue(value);
+    }
+
+    @Override
+    public <R> Map<K, R> query(@NotNull EntryPredicate<K, V> filter,
+                               @NotNull SerializableFunction<V, R> projection, int limit) {
+        return kvStore.query(filter, projection, limit);
+    }
+
+    @Override
+    public Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value) {
+        return kvStore.entriesWhere(field, value);
+    }
+
+    @Override
+    public Map<K, V> entriesWhereBetween(@NotNull String field, @Nullable Object fromValue, @Nullable Object toValue) {
+        return kvStore.entriesWhereBetween(field, fromValue, toValue);
+    }
+
     @Nullable
     @Override
     public V get(K key) {
@@ -176,9 +236,25 @@ public class AbstractKeyValueStore<K, MV, V> implements KeyValueStore<K, MV, V>
         return kvStore.keyedView();
     }
 
+    @NotNull
+    @Override
+    public Map<K, V> getAll(@NotNull Collection<? extends K> keys) {
+        return kvStore.getAll(keys);
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        kvStore.putAll(entries);
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        kvStore.removeAll(keys);
+    }
+
     @Override
     public boolean containsValue(final V value) {
-        throw new UnsupportedOperationException("todo");
+        return kvStore.containsValue(value);
     }
 
     @Override
@@ -186,6 +262,12 @@ public class AbstractKeyValueStore<K, MV, V> implements KeyValueStore<K, MV, V>
         return kvStore.keySetIterator();
     }
 
+    @NotNull
+    @Override
+    public Iterator<V> valuesIterator() {
+        return kvStore.valuesIterator();
+    }
+
     public Class<K> keyType() {
         return keyType;
     }
@@ -0,0 +1,627 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.AssetNotFoundException;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * An on heap store with a limit on the number of entries and/or an estimate of the bytes they
+ * use.  When either is exceeded, entries are evicted as chosen by the {@link EvictionPolicy} and
+ * subscribers are sent a RemovedEvent for each.
+ * <p>
+ * Sizes are estimates, Strings and other CharSequences count two bytes a character, BytesStores
+ * their readRemaining(), plus a fixed overhead for each object and entry.  As every read updates
+ * the eviction order, access is serialized on one lock.
+ * <p>
+ * A value which could never fit in maxBytes is rejected, and the entry just written is never
+ * the one evicted, so a subscriber never sees an entry removed before it was inserted.
+ */
+public class BoundedKeyValueStore<K, MV, V> implements AuthenticatedKeyValueStore<K, MV, V>, MetricsSource {
+    static final int ENTRY_OVERHEAD = 64;
+    static final int OBJECT_OVERHEAD = 16;
+
+    private final Map<K, Node<K, V>> map = new HashMap<>();
+    @NotNull
+    private final Asset asset;
+    private final long maxEntries;
+    private final long maxBytes;
+    @NotNull
+    private final EvictionPolicy evictionPolicy;
+    @NotNull
+    private final Policy policy;
+    @NotNull
+    private final KVSSubscription<K, MV, V> subscriptions;
+    private long bytes = 0;
+    private long evictions = 0;
+    @Nullable
+    private volatile Consumer<K> evictionListener;
+
+    public BoundedKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset) {
+        this(asset, subscriptionFor(context, asset), context.maxEntries(), context.maxBytes(),
+                context.eviction() == null ? EvictionPolicy.LRU : context.eviction());
+    }
+
+    BoundedKeyValueStore(@NotNull Asset asset, @NotNull KVSSubscription<K, MV, V> subscriptions,
+                         long maxEntries, long maxBytes, @NotNull EvictionPolicy evictionPolicy) {
+        if (maxEntries <= 0 && maxBytes <= 0)
+            throw new IllegalArgumentException("Either maxEntries or maxBytes must be set");
+        this.asset = asset;
+        this.subscriptions = subscriptions;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.evictionPolicy = evictionPolicy;
+        switch (evictionPolicy) {
+            case LRU:
+                policy = new LruPolicy();
+                break;
+            case LFU:
+                policy = new LfuPolicy();
+                break;
+            case TINY_LFU:
+                policy = new TinyLfuPolicy();
+                break;
+            default:
+                throw new AssertionError(evictionPolicy);
+        }
+    }
+
+    /**
+     * When values are translated to bytes the translating store listens to a raw subscription,
+     * otherwise evictions go straight to the map's subscription.
+     */
+    @NotNull
+    private static <K, MV, V> KVSSubscription<K, MV, V> subscriptionFor(@NotNull RequestContext context, @NotNull Asset asset) {
+        try {
+            return asset.acquireView(RawKVSSubscription.class, context);
+        } catch (AssetNotFoundException notTranslated) {
+            return asset.acquireView(ObjectKVSSubscription.class, context);
+        }
+    }
+
+    /**
+     * Tells a wrapping store, such as a journal, of each key evicted.  It is called without the
+     * lock held.
+     */
+    void onEviction(@Nullable Consumer<K> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    static long sizeOf(@Nullable Object o) {
+        if (o == null)
+            return 0;
+        if (o instanceof BytesStore)
+            return OBJECT_OVERHEAD * 2 + ((BytesStore) o).readRemaining();
+        if (o instanceof CharSequence)
+            return OBJECT_OVERHEAD * 2 + 2L * ((CharSequence) o).length();
+        if (o instanceof byte[])
+            return OBJECT_OVERHEAD + ((byte[]) o).length;
+        if (o instanceof Number || o instanceof Boolean || o instanceof Character)
+            return OBJECT_OVERHEAD;
+        // anything else is counted at a nominal size.
+        return OBJECT_OVERHEAD * 4;
+    }
+
+    @Nullable
+    @Override
+    public V getAndPut(K key, V value) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        V oldValue;
+        synchronized (map) {
+            checkSize(key, value);
+            Node<K, V> node = map.get(key);
+            if (node == null) {
+                oldValue = null;
+                node = insert(key, value);
+            } else {
+                oldValue = node.value;
+                update(node, value);
+            }
+            evictIfNeeded(evicted, node);
+        }
+        notifyEvicted(evicted);
+        return oldValue;
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        synchronized (map) {
+            Node<K, V> node = map.get(key);
+            if (node != null) {
+                policy.onAccess(node);
+                return node.value;
+            }
+            checkSize(key, value);
+            evictIfNeeded(evicted, insert(key, value));
+        }
+        notifyEvicted(evicted);
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        V oldValue;
+        synchronized (map) {
+            Node<K, V> node = map.get(key);
+            if (node == null)
+                return null;
+            checkSize(key, value);
+            oldValue = node.value;
+            update(node, value);
+            // the new value may be bigger.
+            evictIfNeeded(evicted, node);
+        }
+        notifyEvicted(evicted);
+        return oldValue;
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        synchronized (map) {
+            Node<K, V> node = map.get(key);
+            if (node == null || !Objects.equals(node.value, oldValue))
+                return false;
+            checkSize(key, newValue);
+            update(node, newValue);
+            evictIfNeeded(evicted, node);
+        }
+        notifyEvicted(evicted);
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public V getAndRemove(K key) {
+        synchronized (map) {
+            Node<K, V> node = map.remove(key);
+            if (node == null)
+                return null;
+            removed(node);
+            return node.value;
+        }
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        synchronized (map) {
+            Node<K, V> node = map.get(key);
+            if (node == null || !Objects.equals(node.value, value))
+                return false;
+            map.remove(key);
+            removed(node);
+            return true;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V getUsing(K key, MV value) {
+        synchronized (map) {
+            Node<K, V> node = map.get(key);
+            if (node == null)
+                return null;
+            policy.onAccess(node);
+            return node.value;
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        synchronized (map) {
+            return map.containsKey(key);
+        }
+    }
+
+    @Override
+    public long longSize() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    @NotNull
+    private List<Node<K, V>> snapshot() {
+        synchronized (map) {
+            return new ArrayList<>(map.values());
+        }
+    }
+
+    @Override
+    public void keysFor(int segment, @NotNull SubscriptionConsumer<K> kConsumer) throws InvalidSubscriberException {
+        SubscriptionConsumer.notifyEachEvent(snapshot(), n -> kConsumer.accept(n.key));
+    }
+
+    @Override
+    public void entriesFor(int segment, @NotNull SubscriptionConsumer<MapEvent<K, V>> kvConsumer) throws InvalidSubscriberException {
+        SubscriptionConsumer.notifyEachEvent(snapshot(), n -> kvConsumer.accept(InsertedEvent.of(asset.fullName(), n.key, n.value)));
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Map.Entry<K, V>> entrySetIterator() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+        for (Node<K, V> node : snapshot())
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(node.key, node.value));
+        return entries.iterator();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<K> keySetIterator() {
+        List<K> keys = new ArrayList<>();
+        for (Node<K, V> node : snapshot())
+            keys.add(node.key);
+        return keys.iterator();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+            policy.clear();
+            bytes = 0;
+        }
+    }
+
+    @Override
+    public boolean containsValue(final V value) {
+        for (Node<K, V> node : snapshot())
+            if (Objects.equals(node.value, value))
+                return true;
+        return false;
+    }
+
+    private void checkSize(K key, V value) {
+        long size = ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+        if (maxBytes > 0 && size > maxBytes)
+            throw new IllegalArgumentException("An entry of an estimated " + size + " bytes cannot fit in maxBytes=" + maxBytes);
+    }
+
+    @NotNull
+    private Node<K, V> insert(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value));
+        map.put(key, node);
+        bytes += node.size;
+        policy.onInsert(node);
+        return node;
+    }
+
+    private void update(@NotNull Node<K, V> node, V value) {
+        long size = ENTRY_OVERHEAD + sizeOf(node.key) + sizeOf(value);
+        bytes += size - node.size;
+        node.size = size;
+        node.value = value;
+        policy.onAccess(node);
+    }
+
+    private void removed(@NotNull Node<K, V> node) {
+        bytes -= node.size;
+        policy.onRemove(node);
+    }
+
+    private boolean overLimit() {
+        return (maxEntries > 0 && map.size() > maxEntries) || (maxBytes > 0 && bytes > maxBytes);
+    }
+
+    private void evictIfNeeded(@NotNull List<Node<K, V>> evicted, @NotNull Node<K, V> written) {
+        while (overLimit()) {
+            Node<K, V> victim = policy.victim(written);
+            if (victim == null)
+                break;
+            map.remove(victim.key);
+            removed(victim);
+            evictions++;
+            evicted.add(victim);
+        }
+    }
+
+    private void notifyEvicted(@NotNull List<Node<K, V>> evicted) {
+        if (evicted.isEmpty())
+            return;
+        Consumer<K> listener = evictionListener;
+        if (listener != null)
+            for (Node<K, V> node : evicted)
+                listener.accept(node.key);
+        if (!subscriptions.hasSubscribers())
+            return;
+        for (Node<K, V> node : evicted)
+            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), node.key, node.value));
+    }
+
+    @Override
+    public void addMetrics(@NotNull Map<String, String> metrics) {
+        synchronized (map) {
+            metrics.put("eviction", evictionPolicy.name());
+            metrics.put("maxEntries", Long.toString(maxEntries));
+            metrics.put("maxBytes", Long.toString(maxBytes));
+            metrics.put("entries", Integer.toString(map.size()));
+            metrics.put("estimatedBytes", Long.toString(bytes));
+            metrics.put("evictions", Long.toString(evictions));
+        }
+    }
+
+    @NotNull
+    @Override
+    public Asset asset() {
+        return asset;
+    }
+
+    @Nullable
+    @Override
+    public KeyValueStore underlying() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    @NotNull
+    @Override
+    public KVSSubscription<K, MV, V> subscription(boolean createIfAbsent) {
+        return subscriptions;
+    }
+
+    @Override
+    public void accept(final ReplicationEntry replicationEntry) {
+        throw new UnsupportedOperationException("todo");
+    }
+
+    static final class Node<K, V> {
+        final K key;
+        V value;
+        long size;
+        Node<K, V> prev, next;
+        NodeList<K, V> list;
+        int frequency;
+
+        Node(K key, V value, long size) {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A doubly linked list of nodes, the head is the next to evict.
+     */
+    static final class NodeList<K, V> {
+        Node<K, V> head, tail;
+        int size;
+
+        void addLast(@NotNull Node<K, V> node) {
+            node.list = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null)
+                head = node;
+            else
+                tail.next = node;
+            tail = node;
+            size++;
+        }
+
+        void remove(@NotNull Node<K, V> node) {
+            if (node.prev == null)
+                head = node.next;
+            else
+                node.prev.next = node.next;
+            if (node.next == null)
+                tail = node.prev;
+            else
+                node.next.prev = node.prev;
+            node.prev = node.next = null;
+            node.list = null;
+            size--;
+        }
+
+        // the head, unless that is the node to keep.
+        @Nullable
+        Node<K, V> first(@NotNull Node<K, V> keep) {
+            return head == keep ? keep.next : head;
+        }
+
+        // the tail, unless that is the node to keep.
+        @Nullable
+        Node<K, V> last(@NotNull Node<K, V> keep) {
+            return tail == keep ? keep.prev : tail;
+        }
+
+        void moveToLast(@NotNull Node<K, V> node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = tail = null;
+            size = 0;
+        }
+    }
+
+    // all calls are made holding the lock on map.
+    abstract class Policy {
+        abstract void onInsert(@NotNull Node<K, V> node);
+
+        abstract void onAccess(@NotNull Node<K, V> node);
+
+        void onRemove(@NotNull Node<K, V> node) {
+            node.list.remove(node);
+        }
+
+        // the next to evict, other than the node just written.
+        @Nullable
+        abstract Node<K, V> victim(@NotNull Node<K, V> keep);
+
+        abstract void clear();
+    }
+
+    class LruPolicy extends Policy {
+        final NodeList<K, V> lru = new NodeList<>();
+
+        @Override
+        void onInsert(@NotNull Node<K, V> node) {
+            lru.addLast(node);
+        }
+
+        @Override
+        void onAccess(@NotNull Node<K, V> node) {
+            lru.moveToLast(node);
+        }
+
+        @Override
+        Node<K, V> victim(@NotNull Node<K, V> keep) {
+            return lru.first(keep);
+        }
+
+        @Override
+        void clear() {
+            lru.clear();
+        }
+    }
+
+    class LfuPolicy extends Policy {
+        static final int MAX_FREQUENCY = 15;
+        // one list per use count, saturating at MAX_FREQUENCY.
+        final List<NodeList<K, V>> byFrequency = new ArrayList<>();
+
+        LfuPolicy() {
+            for (int i = 0; i <= MAX_FREQUENCY; i++)
+                byFrequency.add(new NodeList<>());
+        }
+
+        @Override
+        void onInsert(@NotNull Node<K, V> node) {
+            node.frequency = 1;
+            byFrequency.get(1).addLast(node);
+        }
+
+        @Override
+        void onAccess(@NotNull Node<K, V> node) {
+            if (node.frequency < MAX_FREQUENCY) {
+                node.list.remove(node);
+                byFrequency.get(++node.frequency).addLast(node);
+            } else {
+                node.list.moveToLast(node);
+            }
+        }
+
+        @Override
+        Node<K, V> victim(@NotNull Node<K, V> keep) {
+            for (NodeList<K, V> list : byFrequency) {
+                Node<K, V> first = list.first(keep);
+                if (first != null)
+                    return first;
+            }
+            return null;
+        }
+
+        @Override
+        void clear() {
+            byFrequency.forEach(NodeList::clear);
+        }
+    }
+
+    class TinyLfuPolicy extends Policy {
+        final NodeList<K, V> window = new NodeList<>();
+        final NodeList<K, V> probation = new NodeList<>();
+        final NodeList<K, V> protect = new NodeList<>();
+        final FrequencySketch sketch = new FrequencySketch(maxEntries > 0 ? maxEntries : 1 << 16);
+
+        private long capacity() {
+            return maxEntries > 0 ? maxEntries : map.size();
+        }
+
+        private long windowCapacity() {
+            return Math.max(1, capacity() / 100);
+        }
+
+        private long protectedCapacity() {
+            return Math.max(1, (capacity() - windowCapacity()) * 4 / 5);
+        }
+
+        @Override
+        void onInsert(@NotNull Node<K, V> node) {
+            sketch.increment(node.key);
+            window.addLast(node);
+            if (window.size > windowCapacity()) {
+                // the oldest in the window becomes a candidate for the main space.
+                Node<K, V> candidate = window.head;
+                window.remove(candidate);
+                probation.addLast(candidate);
+            }
+        }
+
+        @Override
+        void onAccess(@NotNull Node<K, V> node) {
+            sketch.increment(node.key);
+            if (node.list == probation) {
+                probation.remove(node);
+                protect.addLast(node);
+                while (protect.size > protectedCapacity()) {
+                    Node<K, V> demoted = protect.head;
+                    protect.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            } else {
+                node.list.moveToLast(node);
+            }
+        }
+
+        @Override
+        Node<K, V> victim(@NotNull Node<K, V> keep) {
+            Node<K, V> victim = probation.first(keep);
+            Node<K, V> candidate = probation.last(keep);
+            if (victim == null) {
+                Node<K, V> first = protect.first(keep);
+                return first != null ? first : window.first(keep);
+            }
+            if (victim == candidate)
+                return victim;
+            // only keep the newcomer if it has been used more than the entry it would displace.
+            return sketch.frequency(candidate.key) > sketch.frequency(victim.key) ? victim : candidate;
+        }
+
+        @Override
+        void clear() {
+            window.clear();
+            probation.clear();
+            protect.clear();
+        }
+    }
+}
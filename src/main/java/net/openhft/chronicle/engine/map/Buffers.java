@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 public class Buffers {
     final Bytes<ByteBuffer> keyBuffer = Bytes.elasticByteBuffer();
     final Bytes<ByteBuffer> valueBuffer = Bytes.elasticByteBuffer();
+    final Bytes<ByteBuffer> valueBuffer2 = Bytes.elasticByteBuffer();
 
     static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
 
@@ -0,0 +1,73 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A reusable view of the readable bytes of a BytesStore as 8-bit characters.  It is only valid
+ * until the BytesStore changes or the view is set to another value.
+ */
+final class BytesCharSequence implements CharSequence {
+    private BytesStore bytes;
+    private long start;
+    private int length;
+
+    @NotNull
+    static StringBuilder append8bit(@NotNull StringBuilder sb, @NotNull BytesStore bs) {
+        for (long i = bs.readPosition(), end = bs.readLimit(); i < end; i++)
+            sb.append((char) bs.readUnsignedByte(i));
+        return sb;
+    }
+
+    @NotNull
+    BytesCharSequence set(@NotNull BytesStore bytes) {
+        this.bytes = bytes;
+        this.start = bytes.readPosition();
+        this.length = (int) bytes.readRemaining();
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        return (char) bytes.readUnsignedByte(start + index);
+    }
+
+    @NotNull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append(charAt(i));
+        return sb.toString();
+    }
+}
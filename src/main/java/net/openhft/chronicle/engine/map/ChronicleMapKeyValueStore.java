@@ -33,7 +33,10 @@ import net.openhft.chronicle.engine.tree.HostIdentifier;
 import net.openhft.chronicle.hash.replication.EngineReplicationLangBytesConsumer;
 import net.openhft.chronicle.map.ChronicleMap;
 import net.openhft.chronicle.map.ChronicleMapBuilder;
+import net.openhft.chronicle.map.ExternalMapQueryContext;
+import net.openhft.chronicle.map.MapEntry;
 import net.openhft.chronicle.map.MapEventListener;
+import net.openhft.chronicle.map.MapSegmentContext;
 import net.openhft.chronicle.network.connection.TcpChannelHub;
 import net.openhft.chronicle.threads.api.EventLoop;
 import org.jetbrains.annotations.NotNull;
@@ -50,7 +53,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import static net.openhft.chronicle.core.io.Closeable.closeQuietly;
-import static net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer.notifyEachEvent;
 import static net.openhft.chronicle.hash.replication.SingleChronicleHashReplication.builder;
 
 
@@ -180,6 +182,45 @@ public class ChronicleMapKeyValueStore<K, MV, V> implements AuthenticatedKeyValu
 
     }
 
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        if (!isClosed.get())
+            chronicleMap.putAll(entries);
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (!isClosed.get())
+            return chronicleMap.putIfAbsent(key, value);
+        else
+            return null;
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        if (!isClosed.get())
+            return chronicleMap.replace(key, value);
+        else
+            return null;
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        return !isClosed.get() && chronicleMap.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        return !isClosed.get() && chronicleMap.remove(key, value);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return chronicleMap.containsKey(key);
+    }
+
     @Override
     public V getUsing(K key, @Nullable MV value) {
         if (value != null) throw new UnsupportedOperationException("Mutable values not supported");
@@ -191,22 +232,45 @@ public class ChronicleMapKeyValueStore<K, MV, V> implements AuthenticatedKeyValu
         return chronicleMap.size();
     }
 
+    @Override
+    public int segments() {
+        return chronicleMap.segments();
+    }
+
+    @Override
+    public int segmentFor(K key) {
+        try (ExternalMapQueryContext<K, V, ?> c = chronicleMap.queryContext(key)) {
+            return c.segmentIndex();
+        }
+    }
+
     @Override
     public void keysFor(int segment, @NotNull SubscriptionConsumer<K> kConsumer) throws InvalidSubscriberException {
-        //Ignore the segments and return keysFor the whole map
-        notifyEachEvent(chronicleMap.keySet(), kConsumer);
+        forEachSegmentEntry(segment, e -> kConsumer.accept(e.key().getUsing(null)));
     }
 
     @Override
     public void entriesFor(int segment, @NotNull SubscriptionConsumer<MapEvent<K, V>> kvConsumer) throws InvalidSubscriberException {
-        //Ignore the segments and return entriesFor the whole map
-        chronicleMap.entrySet().stream().map(e -> InsertedEvent.of(assetFullName, e.getKey(), e.getValue())).forEach(e -> {
-            try {
-                kvConsumer.accept(e);
-            } catch (InvalidSubscriberException t) {
-                throw Jvm.rethrow(t);
-            }
-        });
+        forEachSegmentEntry(segment, e -> kvConsumer.accept(
+                InsertedEvent.of(assetFullName, e.key().getUsing(null), e.value().getUsing(null))));
+    }
+
+    /**
+     * Visits only the entries held in one segment of the Chronicle Map, holding that segment's
+     * read lock rather than walking the whole map.  The entry's data is only valid during the
+     * call and get() may return an instance the map reuses, so use getUsing(null) to keep it.
+     */
+    private void forEachSegmentEntry(int segment, @NotNull SubscriptionConsumer<MapEntry<K, V>> consumer)
+            throws InvalidSubscriberException {
+        try (MapSegmentContext<K, V, ?> c = chronicleMap.segmentContext(segment)) {
+            c.forEachSegmentEntry(e -> {
+                try {
+                    consumer.accept(e);
+                } catch (InvalidSubscriberException ise) {
+                    throw Jvm.rethrow(ise);
+                }
+            });
+        }
     }
 
     @NotNull
@@ -228,7 +292,7 @@ public class ChronicleMapKeyValueStore<K, MV, V> implements AuthenticatedKeyValu
 
     @Override
     public boolean containsValue(final V value) {
-        throw new UnsupportedOperationException("todo");
+        return chronicleMap.containsValue(value);
     }
 
     @NotNull
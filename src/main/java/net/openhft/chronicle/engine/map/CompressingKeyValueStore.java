@@ -0,0 +1,425 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.IORuntimeException;
+import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.WrappingViewFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates values of at least a threshold size before they reach the underlying store, and
+ * inflates them on the way out, so callers and subscribers only see the original bytes.
+ * <p>
+ * Compressed values are stored with a four byte marker and their original length.  Values which
+ * don't get smaller are stored as they are, unless they start with a marker, in which case they
+ * are stored after an escape marker so they can't be mistaken for an encoded value.  Values
+ * stored before compression was enabled are still matched by replaceIfEqual, removeIfEqual and
+ * containsValue.
+ * <p>
+ * The values passed to subscribers and entriesFor consumers are inflated into a buffer reused
+ * by the thread, so they are only valid until the consumer returns.
+ */
+public class CompressingKeyValueStore<K> implements AuthenticatedKeyValueStore<K, Bytes, BytesStore>, MetricsSource {
+    private static final byte[] MAGIC = {(byte) 0xFF, 'D', 'F', 'L'};
+    // marks a plain value which starts with a marker.
+    private static final byte[] ESCAPE = {(byte) 0xFF, 'R', 'A', 'W'};
+    private static final int HEADER = MAGIC.length + 4;
+    private static final ThreadLocal<Codec> CODECS = ThreadLocal.withInitial(Codec::new);
+
+    @NotNull
+    private final Asset asset;
+    @NotNull
+    private final AuthenticatedKeyValueStore<K, Bytes, BytesStore> kvStore;
+    private final int threshold;
+    @NotNull
+    private final VanillaKVSSubscription<K, Bytes, BytesStore> subscriptions;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder plainBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    public CompressingKeyValueStore(@NotNull Asset asset,
+                                    @NotNull AuthenticatedKeyValueStore<K, Bytes, BytesStore> kvStore,
+                                    int threshold) {
+        this.asset = asset;
+        this.kvStore = kvStore;
+        this.threshold = threshold;
+        // not registered with the asset as the translating store above has its own.
+        this.subscriptions = new VanillaKVSSubscription<>((Class) null, asset);
+        subscriptions.setKvStore(this);
+        kvStore.subscription(true).registerDownstream(e -> {
+            if (subscriptions.hasSubscribers()) {
+                Codec codec = CODECS.get();
+                // an update has an old value as well, inflated first.
+                subscriptions.notifyEvent(e.translate(k -> k,
+                        v -> plain(v, v == e.value() ? codec.plain : codec.plainOld)));
+            }
+        });
+    }
+
+    /**
+     * @param threshold the smallest value in bytes to compress
+     * @return a factory to use with addWrappingRule
+     */
+    @NotNull
+    public static WrappingViewFactory<AuthenticatedKeyValueStore, AuthenticatedKeyValueStore> above(int threshold) {
+        return (context, asset, underlying) -> new CompressingKeyValueStore<>(asset, underlying, threshold);
+    }
+
+    static boolean isCompressed(@NotNull BytesStore bytes) {
+        return bytes.readRemaining() >= HEADER && startsWith(bytes, MAGIC);
+    }
+
+    static boolean isEscaped(@NotNull BytesStore bytes) {
+        return startsWith(bytes, ESCAPE);
+    }
+
+    private static boolean isEncoded(@NotNull BytesStore bytes) {
+        return isCompressed(bytes) || isEscaped(bytes);
+    }
+
+    private static boolean startsWith(@NotNull BytesStore bytes, @NotNull byte[] prefix) {
+        if (bytes.readRemaining() < prefix.length)
+            return false;
+        long position = bytes.readPosition();
+        for (int i = 0; i < prefix.length; i++)
+            if (bytes.readByte(position + i) != prefix[i])
+                return false;
+        return true;
+    }
+
+    @NotNull
+    private static BytesStore escape(@NotNull BytesStore value, @NotNull Bytes<ByteBuffer> into) {
+        if (!startsWith(value, MAGIC) && !startsWith(value, ESCAPE))
+            return value;
+        into.clear();
+        into.write(ESCAPE, 0, ESCAPE.length);
+        into.write(value);
+        return into;
+    }
+
+    @Nullable
+    BytesStore pack(@Nullable BytesStore value, @NotNull Bytes<ByteBuffer> into) {
+        if (value == null)
+            return null;
+        if (value.readRemaining() < threshold)
+            return escape(value, into);
+
+        long start = System.nanoTime();
+        Codec codec = CODECS.get();
+        int length = (int) value.readRemaining();
+        byte[] input = codec.input(length);
+        value.bytesForRead().read(input, 0, length);
+
+        Deflater deflater = codec.deflater;
+        deflater.reset();
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        into.clear();
+        into.write(MAGIC, 0, MAGIC.length);
+        into.writeInt(length);
+        while (!deflater.finished()) {
+            int count = deflater.deflate(codec.buffer);
+            into.write(codec.buffer, 0, count);
+        }
+        attempts.increment();
+        compressNanos.add(System.nanoTime() - start);
+
+        if (into.readRemaining() >= length)
+            return escape(value, into);
+        compressed.increment();
+        plainBytes.add(length);
+        compressedBytes.add(into.readRemaining());
+        return into;
+    }
+
+    // values returned to a caller are theirs to keep.
+    @Nullable
+    BytesStore plain(@Nullable BytesStore stored) {
+        return stored == null || !isEncoded(stored) ? stored : decode(stored, Bytes.elasticByteBuffer());
+    }
+
+    @Nullable
+    BytesStore plain(@Nullable BytesStore stored, @NotNull Bytes into) {
+        return stored == null || !isEncoded(stored) ? stored : decode(stored, into);
+    }
+
+    @NotNull
+    Bytes decode(@NotNull BytesStore stored, @NotNull Bytes into) {
+        if (isCompressed(stored))
+            return unpack(stored, into);
+        Bytes bytes = stored.bytesForRead();
+        bytes.readSkip(ESCAPE.length);
+        into.clear();
+        into.write(bytes);
+        return into;
+    }
+
+    @NotNull
+    Bytes unpack(@NotNull BytesStore stored, @NotNull Bytes into) {
+        long start = System.nanoTime();
+        Codec codec = CODECS.get();
+        long position = stored.readPosition();
+        int length = stored.readInt(position + MAGIC.length);
+        int compressedLength = (int) (stored.readRemaining() - HEADER);
+        byte[] input = codec.input(compressedLength);
+        Bytes bytes = stored.bytesForRead();
+        bytes.readSkip(HEADER);
+        bytes.read(input, 0, compressedLength);
+
+        Inflater inflater = codec.inflater;
+        inflater.reset();
+        inflater.setInput(input, 0, compressedLength);
+        into.clear();
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(codec.buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IORuntimeException("Truncated compressed value in " + asset.fullName());
+                into.write(codec.buffer, 0, count);
+            }
+        } catch (DataFormatException e) {
+            throw new IORuntimeException(e);
+        }
+        if (into.readRemaining() != length)
+            throw new IORuntimeException("Expected " + length + " bytes but inflated " + into.readRemaining());
+        decompressed.increment();
+        decompressNanos.add(System.nanoTime() - start);
+        return into;
+    }
+
+    @NotNull
+    @Override
+    public KVSSubscription<K, Bytes, BytesStore> subscription(boolean createIfAbsent) {
+        return subscriptions;
+    }
+
+    @Override
+    public boolean put(K key, BytesStore value) {
+        return kvStore.put(key, pack(value, CODECS.get().packed));
+    }
+
+    @Nullable
+    @Override
+    public BytesStore getAndPut(K key, BytesStore value) {
+        return plain(kvStore.getAndPut(key, pack(value, CODECS.get().packed)));
+    }
+
+    @Override
+    public boolean remove(K key) {
+        return kvStore.remove(key);
+    }
+
+    @Nullable
+    @Override
+    public BytesStore getAndRemove(K key) {
+        return plain(kvStore.getAndRemove(key));
+    }
+
+    @Nullable
+    @Override
+    public BytesStore getUsing(K key, @Nullable Bytes value) {
+        BytesStore stored = kvStore.getUsing(key, value);
+        if (stored == null || !isEncoded(stored))
+            return stored;
+        if (stored == value) {
+            // can't decode a value into itself.
+            Bytes<ByteBuffer> copy = CODECS.get().stored;
+            copy.clear();
+            copy.write(stored);
+            stored = copy;
+        }
+        return decode(stored, value == null ? Bytes.elasticByteBuffer() : value);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return kvStore.containsKey(key);
+    }
+
+    @NotNull
+    @Override
+    public Map<K, BytesStore> entriesBetween(@Nullable K fromKey, boolean fromInclusive,
+                                             @Nullable K toKey, boolean toInclusive, int limit) {
+        return plain(kvStore.entriesBetween(fromKey, fromInclusive, toKey, toInclusive, limit));
+    }
+
+    @NotNull
+    @Override
+    public Map<K, BytesStore> entriesWithPrefix(@NotNull String prefix, @Nullable K afterKey, int limit) {
+        return plain(kvStore.entriesWithPrefix(prefix, afterKey, limit));
+    }
+
+    @NotNull
+    private Map<K, BytesStore> plain(@NotNull Map<K, BytesStore> page) {
+        // keeps the page in key order.
+        Map<K, BytesStore> plain = new LinkedHashMap<>();
+        page.forEach((k, v) -> plain.put(k, plain(v)));
+        return plain;
+    }
+
+    @Nullable
+    @Override
+    public BytesStore putIfAbsent(K key, BytesStore value) {
+        return plain(kvStore.putIfAbsent(key, pack(value, CODECS.get().packed)));
+    }
+
+    @Nullable
+    @Override
+    public BytesStore replace(K key, BytesStore value) {
+        return plain(kvStore.replace(key, pack(value, CODECS.get().packed)));
+    }
+
+    // compression is deterministic so equal values compress to equal bytes, a value stored
+    // before compression was enabled is as it was given.
+    @Override
+    public boolean replaceIfEqual(K key, BytesStore oldValue, BytesStore newValue) {
+        Codec codec = CODECS.get();
+        BytesStore packedOld = pack(oldValue, codec.packed);
+        BytesStore packedNew = pack(newValue, codec.packed2);
+        return kvStore.replaceIfEqual(key, packedOld, packedNew)
+                || packedOld != oldValue && kvStore.replaceIfEqual(key, oldValue, packedNew);
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, BytesStore value) {
+        BytesStore packed = pack(value, CODECS.get().packed);
+        return kvStore.removeIfEqual(key, packed)
+                || packed != value && kvStore.removeIfEqual(key, value);
+    }
+
+    @Override
+    public boolean containsValue(BytesStore value) {
+        BytesStore packed = pack(value, CODECS.get().packed);
+        return kvStore.containsValue(packed)
+                || packed != value && kvStore.containsValue(value);
+    }
+
+    @Override
+    public long longSize() {
+        return kvStore.longSize();
+    }
+
+    @Override
+    public int segments() {
+        return kvStore.segments();
+    }
+
+    @Override
+    public int segmentFor(K key) {
+        return kvStore.segmentFor(key);
+    }
+
+    @Override
+    public void keysFor(int segment, SubscriptionConsumer<K> kConsumer) throws InvalidSubscriberException {
+        kvStore.keysFor(segment, kConsumer);
+    }
+
+    @Override
+    public void entriesFor(int segment, @NotNull SubscriptionConsumer<MapEvent<K, BytesStore>> kvConsumer) throws InvalidSubscriberException {
+        Bytes<ByteBuffer> plain = CODECS.get().plain;
+        kvStore.entriesFor(segment, e -> kvConsumer.accept(
+                isEncoded(e.value()) ? e.translate(k -> k, v -> plain(v, plain)) : e));
+    }
+
+    @Override
+    public boolean reusesValues() {
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        kvStore.clear();
+    }
+
+    @Override
+    public void addMetrics(@NotNull Map<String, String> metrics) {
+        long plain = plainBytes.sum();
+        long packed = compressedBytes.sum();
+        long tried = attempts.sum();
+        long inflated = decompressed.sum();
+        metrics.put("compressionThreshold", Integer.toString(threshold));
+        metrics.put("compressedValues", Long.toString(compressed.sum()));
+        metrics.put("compressionRatio", packed == 0 ? "n/a" : String.format("%.2f", (double) plain / packed));
+        metrics.put("compressNanosAvg", tried == 0 ? "n/a" : Long.toString(compressNanos.sum() / tried));
+        metrics.put("decompressNanosAvg", inflated == 0 ? "n/a" : Long.toString(decompressNanos.sum() / inflated));
+    }
+
+    @NotNull
+    @Override
+    public Asset asset() {
+        return asset;
+    }
+
+    @NotNull
+    @Override
+    public KeyValueStore<K, Bytes, BytesStore> underlying() {
+        return kvStore;
+    }
+
+    @Override
+    public void close() {
+        kvStore.close();
+    }
+
+    @Override
+    public void accept(ReplicationEntry replicationEntry) {
+        kvStore.accept(replicationEntry);
+    }
+
+    static final class Codec {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final Inflater inflater = new Inflater();
+        final byte[] buffer = new byte[8 << 10];
+        final Bytes<ByteBuffer> packed = Bytes.elasticByteBuffer();
+        final Bytes<ByteBuffer> packed2 = Bytes.elasticByteBuffer();
+        final Bytes<ByteBuffer> stored = Bytes.elasticByteBuffer();
+        final Bytes<ByteBuffer> plain = Bytes.elasticByteBuffer();
+        final Bytes<ByteBuffer> plainOld = Bytes.elasticByteBuffer();
+        private byte[] input = new byte[8 << 10];
+
+        @NotNull
+        byte[] input(int length) {
+            if (input.length < length)
+                input = new byte[Math.max(length, input.length * 2)];
+            return input;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+/**
+ * How a {@link BoundedKeyValueStore} chooses which entry to evict.
+ */
+public enum EvictionPolicy {
+    /**
+     * the least recently used entry.
+     */
+    LRU,
+    /**
+     * the least frequently used entry, the oldest of those used as little.
+     */
+    LFU,
+    /**
+     * a small LRU window in front of a segmented LRU, where a new entry only displaces an older one
+     * if a sketch of recent use says it is used more often.
+     */
+    TINY_LFU
+}
@@ -0,0 +1,300 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import net.openhft.chronicle.threads.HandlerPriority;
+import net.openhft.chronicle.threads.api.EventHandler;
+import net.openhft.chronicle.threads.api.EventLoop;
+import net.openhft.chronicle.threads.api.InvalidEventHandlerException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes entries once their time to live has passed.  Entries put without one live for the
+ * asset's ttlMillis, or for ever if that is 0.
+ * <p>
+ * Deadlines are kept in a {@link TimerWheel} turned by a handler on the asset's event loop, which
+ * removes at most {@link #MAX_EXPIRIES_PER_ACTION} entries per call.  Removing through the store
+ * underneath notifies subscribers with a RemovedEvent.  An entry past its deadline is not
+ * returned, even if it hasn't been removed yet.
+ * <p>
+ * Each key has one timer in the wheel.  Putting the key again moves its deadline rather than
+ * scheduling another timer, and a timer which comes due before its key's deadline is scheduled
+ * again for that deadline.  The store registers itself as a view of the asset so its metrics are
+ * found even though it sits above the store the asset's other views use.
+ */
+public class ExpiringKeyValueStore<K, MV, V> extends AbstractKeyValueStore<K, MV, V> implements MetricsSource {
+    static final long TICK_MILLIS = 10;
+    static final int MAX_EXPIRIES_PER_ACTION = 1000;
+
+    private final long defaultTtlMillis;
+    private final TimerWheel<Expiry<K, V>> wheel = new TimerWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    // the timer of each key, a timer no longer here is ignored when it comes due.
+    private final ConcurrentMap<K, Expiry<K, V>> expiries = new ConcurrentHashMap<>();
+    private final LongAdder expired = new LongAdder();
+    private volatile boolean closed = false;
+
+    public ExpiringKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset, @NotNull KeyValueStore<K, MV, V> kvStore) {
+        super(context, asset, kvStore);
+        Long ttlMillis = context.ttlMillis();
+        this.defaultTtlMillis = ttlMillis == null ? 0 : ttlMillis;
+        asset.addView(ExpiringKeyValueStore.class, this);
+        EventLoop eventLoop = asset.findOrCreateView(EventLoop.class);
+        eventLoop.addHandler(new EventHandler() {
+            @Override
+            public boolean action() throws InvalidEventHandlerException {
+                if (closed)
+                    throw new InvalidEventHandlerException();
+                return expire(System.currentTimeMillis(), MAX_EXPIRIES_PER_ACTION) > 0;
+            }
+
+            @NotNull
+            @Override
+            public HandlerPriority priority() {
+                return HandlerPriority.MONITOR;
+            }
+        });
+    }
+
+    /**
+     * Remove up to maxEntries entries whose deadline is at or before nowMillis.
+     *
+     * @return the number of entries removed.
+     */
+    int expire(long nowMillis, int maxEntries) {
+        int count = 0;
+        for (Expiry<K, V> expiry : wheel.expire(nowMillis, maxEntries)) {
+            if (expire(expiry, nowMillis))
+                count++;
+        }
+        return count;
+    }
+
+    private boolean expire(@NotNull Expiry<K, V> expiry, long nowMillis) {
+        // only if this is still the key's timer and its deadline has passed, the value is taken
+        // under the same lock a put updates it with.
+        Object[] value = {null};
+        expiries.computeIfPresent(expiry.key, (k, e) -> {
+            if (e != expiry)
+                return e;
+            if (e.deadlineMillis > nowMillis) {
+                // put again since it was scheduled.
+                wheel.schedule(e);
+                return e;
+            }
+            value[0] = e.value;
+            return null;
+        });
+        if (value[0] == null || !kvStore.removeIfEqual(expiry.key, (V) value[0]))
+            return false;
+        expired.increment();
+        return true;
+    }
+
+    private boolean hasExpired(K key) {
+        Expiry<K, V> expiry = expiries.get(key);
+        long now = System.currentTimeMillis();
+        if (expiry == null || expiry.deadlineMillis > now)
+            return false;
+        expire(expiry, now);
+        return true;
+    }
+
+    private void expireAfter(K key, V value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            expiries.remove(key);
+            return;
+        }
+        long deadlineMillis = System.currentTimeMillis() + ttlMillis;
+        expiries.compute(key, (k, expiry) -> {
+            if (expiry == null) {
+                expiry = new Expiry<>(k, value, deadlineMillis);
+                wheel.schedule(expiry);
+            } else {
+                // the timer already in the wheel is scheduled again when it comes due.
+                expiry.value = value;
+                expiry.deadlineMillis = deadlineMillis;
+            }
+            return expiry;
+        });
+    }
+
+    @Override
+    public boolean put(K key, V value, long timeToLive, @NotNull TimeUnit unit) {
+        boolean replaced = kvStore.put(key, value);
+        expireAfter(key, value, unit.toMillis(timeToLive));
+        return replaced;
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        boolean replaced = kvStore.put(key, value);
+        expireAfter(key, value, defaultTtlMillis);
+        return replaced;
+    }
+
+    @Nullable
+    @Override
+    public V getAndPut(K key, V value) {
+        V oldValue = kvStore.getAndPut(key, value);
+        expireAfter(key, value, defaultTtlMillis);
+        return oldValue;
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (hasExpired(key))
+            return putIfAbsent(key, value);
+        V existing = kvStore.putIfAbsent(key, value);
+        if (existing == null)
+            expireAfter(key, value, defaultTtlMillis);
+        return existing;
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        if (hasExpired(key))
+            return null;
+        V oldValue = kvStore.replace(key, value);
+        if (oldValue != null)
+            expireAfter(key, value, defaultTtlMillis);
+        return oldValue;
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        if (hasExpired(key) || !kvStore.replaceIfEqual(key, oldValue, newValue))
+            return false;
+        expireAfter(key, newValue, defaultTtlMillis);
+        return true;
+    }
+
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        hasExpired(key);
+        long newVersion = kvStore.putIfVersion(key, value, version);
+        if (newVersion != 0)
+            expireAfter(key, value, defaultTtlMillis);
+        return newVersion;
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        if (hasExpired(key) || !kvStore.removeIfVersion(key, version))
+            return false;
+        expiries.remove(key);
+        return true;
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        kvStore.putAll(entries);
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet())
+            expireAfter(entry.getKey(), entry.getValue(), defaultTtlMillis);
+    }
+
+    @Nullable
+    @Override
+    public V getUsing(K key, MV value) {
+        return hasExpired(key) ? null : kvStore.getUsing(key, value);
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        return hasExpired(key) ? null : kvStore.get(key);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return !hasExpired(key) && kvStore.containsKey(key);
+    }
+
+    @Override
+    public boolean remove(K key) {
+        expiries.remove(key);
+        return kvStore.remove(key);
+    }
+
+    @Nullable
+    @Override
+    public V getAndRemove(K key) {
+        expiries.remove(key);
+        return kvStore.getAndRemove(key);
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        if (!kvStore.removeIfEqual(key, value))
+            return false;
+        expiries.remove(key);
+        return true;
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        for (K key : keys)
+            expiries.remove(key);
+        kvStore.removeAll(keys);
+    }
+
+    @Override
+    public void clear() {
+        expiries.clear();
+        wheel.clear();
+        kvStore.clear();
+    }
+
+    @Override
+    public void addMetrics(@NotNull Map<String, String> metrics) {
+        metrics.put("ttlMillis", Long.toString(defaultTtlMillis));
+        metrics.put("expiringEntries", Integer.toString(expiries.size()));
+        metrics.put("pendingTimers", Long.toString(wheel.size()));
+        metrics.put("expiredEntries", Long.toString(expired.sum()));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        super.close();
+    }
+
+    static final class Expiry<K, V> extends TimerWheel.Timer {
+        final K key;
+        volatile V value;
+
+        Expiry(K key, V value, long deadlineMillis) {
+            super(deadlineMillis);
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
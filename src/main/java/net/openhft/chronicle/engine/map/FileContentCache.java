@@ -0,0 +1,90 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last known contents of the files of a {@link FilePerKeyValueStore}, least recently used
+ * first.  Given a byte budget, the least recently used contents are dropped to stay within it,
+ * otherwise nothing is dropped.
+ * <p>
+ * Dropped contents are not released as a reader may still hold them, they are left to the GC.
+ */
+class FileContentCache {
+    private final long maxBytes;
+    private final Map<File, FileRecord<BytesStore>> records = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long evictions;
+
+    FileContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    boolean bounded() {
+        return maxBytes > 0;
+    }
+
+    @Nullable
+    synchronized FileRecord<BytesStore> get(@NotNull File file) {
+        return records.get(file);
+    }
+
+    @Nullable
+    synchronized FileRecord<BytesStore> put(@NotNull File file, @NotNull FileRecord<BytesStore> record) {
+        FileRecord<BytesStore> prev = records.put(file, record);
+        bytes += sizeOf(record) - sizeOf(prev);
+        if (bounded()) {
+            for (Iterator<FileRecord<BytesStore>> it = records.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+                bytes -= sizeOf(it.next());
+                it.remove();
+                evictions++;
+            }
+        }
+        return prev;
+    }
+
+    @Nullable
+    synchronized FileRecord<BytesStore> remove(@NotNull File file) {
+        FileRecord<BytesStore> prev = records.remove(file);
+        bytes -= sizeOf(prev);
+        return prev;
+    }
+
+    synchronized int size() {
+        return records.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    private static long sizeOf(@Nullable FileRecord<BytesStore> record) {
+        return record == null ? 0 : record.contents.readRemaining();
+    }
+}
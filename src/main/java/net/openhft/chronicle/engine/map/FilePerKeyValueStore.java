@@ -21,7 +21,7 @@ import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.bytes.BytesUtil;
 import net.openhft.chronicle.bytes.IORuntimeException;
-import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.engine.api.management.MetricsSource;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.map.MapEvent;
 import net.openhft.chronicle.engine.api.map.StringBytesStoreKeyValueStore;
@@ -29,7 +29,11 @@ import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
 import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
+import net.openhft.chronicle.threads.HandlerPriority;
 import net.openhft.chronicle.threads.Threads;
+import net.openhft.chronicle.threads.api.EventHandler;
+import net.openhft.chronicle.threads.api.EventLoop;
+import net.openhft.chronicle.threads.api.InvalidEventHandlerException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -41,10 +45,9 @@ import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.WatchEvent.Kind;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
 import static net.openhft.chronicle.core.Jvm.pause;
@@ -66,13 +69,35 @@ import static net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntr
  * Note the {@link WatchService} is extremely OS dependant.  Mas OSX registers
  * very few events if they are done quickly and there is a significant delay
  * between the event and the event being triggered.
+ * <p>
+ * With {@link #writeBehind(long, int)} writes are held in memory and written out in the
+ * background, so repeated updates of a key only write its latest value.  Reads see the held
+ * value, and {@link #flush()} writes out everything held so far.
+ * <p>
+ * The keys are held in memory, read from the directory once at start up and then kept up to date
+ * by this store's writes and the watcher, so the size and the keys don't need a scan of the
+ * directory.
+ * <p>
+ * With {@link RequestContext#largeReadBytes()} set, values of at least that size are read
+ * straight into a buffer of their own, rather than the thread's reused buffer, so they can be
+ * handed out without another copy.  Files aren't memory mapped, as a mapping costs more to set up
+ * than reading the file once, and a file which may be truncated can't be handed out as a view.
+ * With {@link
+ * RequestContext#contentCacheBytes()} set, the contents of recently used smaller files are cached
+ * up to that many bytes, otherwise only the contents of files the watcher has seen are kept.
  */
-public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Closeable {
+public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Closeable, MetricsSource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FilePerKeyValueStore.class);
+    static final int DEFAULT_WRITE_BEHIND_ENTRIES = 10_000;
+    // marks a key removed but not yet deleted from disk.
+    private static final BytesStore REMOVED = Bytes.elasticByteBuffer();
     private final Path dirPath;
     //Use BytesStore so that it can be shared safely between threads
-    private final Map<File, FileRecord<BytesStore>> lastFileRecordMap = new ConcurrentHashMap<>();
+    private final FileContentCache contentCache;
+    private final long largeReadBytes;
+    // the keys in the map, including those held by write behind.
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
 
     @NotNull
     private final Thread fileFpmWatcher;
@@ -82,6 +107,16 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     private final Asset asset;
     private volatile boolean closed = false;
 
+    // writes not yet on disk, the latest value per key.
+    private final Map<String, BytesStore> pending = new ConcurrentHashMap<>();
+    private volatile boolean writeBehind = false;
+    private final Object flushLock = new Object();
+    private int writeBehindEntries = DEFAULT_WRITE_BEHIND_ENTRIES;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder largeReads = new LongAdder();
+
     public FilePerKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset) throws IORuntimeException {
         this(context, asset, context.type(), context.basePath(), context.name());
         asset.registerView(StringBytesStoreKeyValueStore.class, this);
@@ -90,6 +125,8 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     FilePerKeyValueStore(RequestContext context, @NotNull Asset asset, Class type, String basePath, String name) {
         this.asset = asset;
         assert type == String.class;
+        this.contentCache = new FileContentCache(context.contentCacheBytes());
+        this.largeReadBytes = context.largeReadBytes();
 
         String first = basePath;
         String dirName = first == null ? name : first + "/" + name;
@@ -104,6 +141,8 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
                             StandardWatchEventKinds.ENTRY_MODIFY},
                     SensitivityWatchEventModifier.HIGH
             );
+            // after registering, so a file added meanwhile is seen by either the scan or the watcher.
+            loadKeys();
         } catch (IOException e) {
             throw new IORuntimeException(e);
         }
@@ -115,6 +154,91 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
         subscriptions.setKvStore(this);
     }
 
+    private void loadKeys() throws IOException {
+        try (Stream<Path> files = Files.list(dirPath)) {
+            files.parallel()
+                    .filter(this::isVisible)
+                    .filter(p -> !Files.isDirectory(p))
+                    .forEach(p -> keys.add(p.getFileName().toString()));
+        }
+    }
+
+    /**
+     * Hold writes in memory and write them out every flushMillis, or as soon as maxPending keys
+     * are held.  Subscribers see the changes as they reach the disk.
+     *
+     * @param flushMillis how long a write can be held.
+     * @param maxPending  the most keys held before the writer flushes, or 0 for the default.
+     */
+    public void writeBehind(long flushMillis, int maxPending) {
+        if (flushMillis <= 0)
+            throw new IllegalArgumentException("flushMillis must be positive, was " + flushMillis);
+        this.writeBehindEntries = maxPending > 0 ? maxPending : DEFAULT_WRITE_BEHIND_ENTRIES;
+        this.writeBehind = true;
+        EventLoop eventLoop = asset.findOrCreateView(EventLoop.class);
+        eventLoop.addHandler(new EventHandler() {
+            private long nextFlush = System.currentTimeMillis() + flushMillis;
+
+            @Override
+            public boolean action() throws InvalidEventHandlerException {
+                if (closed)
+                    throw new InvalidEventHandlerException();
+                long now = System.currentTimeMillis();
+                if (now < nextFlush)
+                    return false;
+                nextFlush = now + flushMillis;
+                return flush() > 0;
+            }
+
+            @NotNull
+            @Override
+            public HandlerPriority priority() {
+                return HandlerPriority.MONITOR;
+            }
+        });
+    }
+
+    /**
+     * Write out all the values held by write behind.  Once this returns, every write made before
+     * it was called is on disk.
+     *
+     * @return the number of keys written or deleted.
+     */
+    public int flush() {
+        int count = 0;
+        // one flush at a time so an older value is never written over a newer one.
+        synchronized (flushLock) {
+            for (String key : pending.keySet()) {
+                BytesStore value = pending.get(key);
+                if (value == null)
+                    continue;
+                // written while still held, so readers see it until it is on disk.
+                Path path = dirPath.resolve(key);
+                if (value == REMOVED)
+                    deleteFile(path);
+                else
+                    writeToFile(path, value);
+                // only if it hasn't been replaced meanwhile, otherwise the newer one is written next time.
+                pending.computeIfPresent(key, (k, v) -> v == value ? null : v);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // takes a copy the caller won't reuse, or REMOVED.
+    private boolean holdWrite(String key, @NotNull BytesStore value) {
+        boolean[] existed = {false};
+        // held values may still be read after they are replaced, so they are left to the GC.
+        pending.compute(key, (k, prev) -> {
+            existed[0] = value == REMOVED ? keys.remove(k) : !keys.add(k);
+            return value;
+        });
+        if (pending.size() >= writeBehindEntries)
+            flush();
+        return existed[0];
+    }
+
     @NotNull
     @Override
     public RawKVSSubscription<String, Bytes, BytesStore> subscription(boolean createIfAbsent) {
@@ -123,12 +247,22 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
 
     @Override
     public long longSize() {
-        return getFiles().count();
+        return keys.size();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return keys.contains(key);
     }
 
     @Nullable
     @Override
     public BytesStore getUsing(String key, Bytes value) {
+        if (writeBehind) {
+            BytesStore held = pending.get(key);
+            if (held != null)
+                return held == REMOVED ? null : held;
+        }
         Path path = dirPath.resolve(key);
         return getFileContents(path, value);
     }
@@ -143,13 +277,8 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     }
 
     void keysFor0(@NotNull SubscriptionConsumer<String> stringConsumer) throws InvalidSubscriberException {
-        getFiles().forEach(p -> {
-            try {
-                stringConsumer.accept(p.getFileName().toString());
-            } catch (InvalidSubscriberException e) {
-                throw Jvm.rethrow(e);
-            }
-        });
+        for (String key : keys)
+            stringConsumer.accept(key);
     }
 
     @Override
@@ -162,21 +291,17 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     }
 
     void entriesFor0(@NotNull SubscriptionConsumer<MapEvent<String, BytesStore>> kvConsumer) throws InvalidSubscriberException {
-        getFiles().map(p -> InsertedEvent.of(asset.fullName(), p.getFileName().toString(), getFileContents(p, null)))
-                .forEach(e -> {
-                    try {
-                        // in case the file has been deleted in the meantime.
-                        if (e != null)
-                            kvConsumer.accept(e);
-                    } catch (InvalidSubscriberException ise) {
-                        throw Jvm.rethrow(ise);
-                    }
-                });
+        for (String key : keys) {
+            BytesStore value = getUsing(key, null);
+            // in case the file has been deleted in the meantime.
+            if (value != null)
+                kvConsumer.accept(InsertedEvent.of(asset.fullName(), key, value));
+        }
     }
 
     @Override
     public Iterator<String> keySetIterator() {
-        return getFiles().map(p -> p.getFileName().toString()).iterator();
+        return Collections.unmodifiableSet(keys).iterator();
     }
 
     @Override
@@ -185,28 +310,42 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     }
 
     public Stream<Map.Entry<String, BytesStore>> getEntryStream() {
-        return getFiles()
-                .map(p -> (Map.Entry<String, BytesStore>) new SimpleEntry<>(p.getFileName().toString(), getFileContents(p, null)));
+        return keys.stream()
+                .map(k -> (Map.Entry<String, BytesStore>) new SimpleEntry<>(k, getUsing(k, null)))
+                .filter(e -> e.getValue() != null);
     }
 
     @Override
     public boolean put(String key, @NotNull BytesStore value) {
         if (closed) throw new IllegalStateException("closed");
+        if (writeBehind)
+            return holdWrite(key, value.copy());
         Path path = dirPath.resolve(key);
-        FileRecord fr = lastFileRecordMap.get(path.toFile());
+        FileRecord fr = contentCache.get(path.toFile());
         writeToFile(path, value);
         if (fr != null) fr.valid = false;
-        return fr != null;
+        return !keys.add(key);
     }
 
     @Nullable
     @Override
     public BytesStore getAndPut(String key, @NotNull BytesStore value) {
         if (closed) throw new IllegalStateException("closed");
+        if (writeBehind) {
+            // copied first as reading the existing value can reuse the caller's buffer, and a flush
+            // can reuse the buffer the existing value was read into.
+            BytesStore copy = value.copy();
+            BytesStore existingValue = get(key);
+            if (existingValue != null)
+                existingValue = existingValue.copy();
+            holdWrite(key, copy);
+            return existingValue;
+        }
         Path path = dirPath.resolve(key);
-        FileRecord fr = lastFileRecordMap.get(path.toFile());
+        FileRecord fr = contentCache.get(path.toFile());
         BytesStore existingValue = getFileContents(path, null);
         writeToFile(path, value);
+        keys.add(key);
         if (fr != null) fr.valid = false;
         return existingValue == null ? null : existingValue;
     }
@@ -217,7 +356,12 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
         if (closed) throw new IllegalStateException("closed");
         BytesStore existing = get(key);
         if (existing != null) {
-            deleteFile(dirPath.resolve(key));
+            if (writeBehind) {
+                holdWrite(key, REMOVED);
+            } else {
+                deleteFile(dirPath.resolve(key));
+                keys.remove(key);
+            }
         }
         return existing;
     }
@@ -225,66 +369,72 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     @Override
     public boolean remove(String key) {
         if (closed) throw new IllegalStateException("closed");
+        if (writeBehind)
+            return holdWrite(key, REMOVED);
         Path path = dirPath.resolve(key);
         if (path.toFile().isFile())
             deleteFile(path);
-        // todo check this is removed in watcher
-        FileRecord fr = lastFileRecordMap.get(path.toFile());
-        return fr != null;
+        return keys.remove(key);
     }
 
     @Override
     public void clear() {
-        AtomicInteger count = new AtomicInteger();
-        Stream<Path> files = getFiles();
-        files.forEach((path) -> {
+        flush();
+        List<String> failed = new ArrayList<>();
+        for (String key : keys) {
             try {
-                deleteFile(path);
+                deleteFile(dirPath.resolve(key));
+                keys.remove(key);
             } catch (Exception e) {
-                count.incrementAndGet();
+                failed.add(key);
                 // ignored at first.
             }
-        });
-        if (count.intValue() > 0) {
+        }
+        if (!failed.isEmpty()) {
             pause(100);
-            getFiles().forEach(this::deleteFile);
+            for (String key : failed) {
+                deleteFile(dirPath.resolve(key));
+                keys.remove(key);
+            }
         }
     }
 
     @Override
     public boolean containsValue(final BytesStore value) {
-        throw new UnsupportedOperationException("todo");
-    }
-
-
-    private Stream<Path> getFiles() {
-        try {
-            return Files
-                    .walk(dirPath)
-                    .filter(p -> !Files.isDirectory(p))
-                    .filter(this::isVisible);
-        } catch (IOException e) {
-            throw Jvm.rethrow(e);
-        }
+        return getEntryStream().anyMatch(e -> value.equals(e.getValue()));
     }
 
     boolean isVisible(@NotNull Path p) {
-        return !p.getFileName().startsWith(".");
+        return !p.getFileName().toString().startsWith(".");
     }
 
     @Nullable
     BytesStore getFileContents(@NotNull Path path, Bytes using) {
         File file = path.toFile();
-        FileRecord<BytesStore> lastFileRecord = lastFileRecordMap.get(file);
+        FileRecord<BytesStore> lastFileRecord = contentCache.get(file);
+        long lastModified = file.lastModified();
         if (lastFileRecord != null && lastFileRecord.valid
-                && file.lastModified() == lastFileRecord.timestamp) {
+                && lastModified == lastFileRecord.timestamp) {
+            cacheHits.increment();
             return lastFileRecord.contents;
         }
-        return getFileContentsFromDisk(path, using);
+        cacheMisses.increment();
+        BytesStore contents = getFileContentsFromDisk(path, using);
+        // a record the watcher made is left for the watcher to replace, so it can tell what changed.
+        if (contents != null && contentCache.bounded() && !isOwned(contents)
+                && (lastFileRecord == null || !lastFileRecord.notified))
+            contentCache.put(file, new FileRecord<>(lastModified, contents.copy(), false));
+        return contents;
+    }
+
+    // contents read from disk are either the thread's reused buffer, or a large value's own buffer
+    // which the caller owns.
+    private boolean isOwned(@NotNull BytesStore contents) {
+        return contents != Buffers.BUFFERS.get().valueBuffer;
     }
 
     @Nullable
-    Bytes getFileContentsFromDisk(@NotNull Path path, Bytes using) {
+    BytesStore getFileContentsFromDisk(@NotNull Path path, Bytes using) {
         for (int i = 1; i <= 5; i++) {
             try {
                 return getFileContentsFromDisk0(path, using);
@@ -295,19 +445,27 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
         return null;
     }
 
-    private Bytes getFileContentsFromDisk0(@NotNull Path path, Bytes using) throws IOException {
+    private BytesStore getFileContentsFromDisk0(@NotNull Path path, Bytes using) throws IOException {
         if (!Files.exists(path)) return null;
         File file = path.toFile();
 
         Buffers b = Buffers.BUFFERS.get();
         Bytes<ByteBuffer> readingBytes = b.valueBuffer;
         try (FileChannel fc = new FileInputStream(file).getChannel()) {
-            readingBytes.ensureCapacity(fc.size());
+            long size = fc.size();
+            if (largeReadBytes > 0 && size >= largeReadBytes) {
+                largeReads.increment();
+                readingBytes = Bytes.elasticByteBuffer();
+            }
+            readingBytes.ensureCapacity(size);
 
             ByteBuffer dst = readingBytes.underlyingObject();
             dst.clear();
 
-            fc.read(dst);
+            // a large file can take more than one read.
+            while (dst.hasRemaining())
+                if (fc.read(dst) < 0)
+                    break;
 
             readingBytes.readPosition(0);
             readingBytes.readLimit(dst.position());
@@ -367,10 +525,24 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
     }
 
     public void close() {
+        flush();
         closed = true;
         fileFpmWatcher.interrupt();
     }
 
+    @Override
+    public void addMetrics(@NotNull Map<String, String> metrics) {
+        long hit = cacheHits.sum();
+        long lookups = hit + cacheMisses.sum();
+        metrics.put("contentCacheEntries", Integer.toString(contentCache.size()));
+        metrics.put("contentCacheBytes", Long.toString(contentCache.bytes()));
+        metrics.put("contentCacheHits", Long.toString(hit));
+        metrics.put("contentCacheMisses", Long.toString(lookups - hit));
+        metrics.put("contentCacheHitRatio", lookups == 0 ? "n/a" : String.format("%.3f", (double) hit / lookups));
+        metrics.put("contentCacheEvictions", Long.toString(contentCache.evictions()));
+        metrics.put("largeReads", Long.toString(largeReads.sum()));
+    }
+
     @NotNull
     @Override
     public Asset asset() {
@@ -439,12 +611,13 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
                     Path p = dirPath.resolve(fileName);
                     BytesStore mapVal = getFileContentsFromDisk(p, null);
 
-                    FileRecord<BytesStore> prev = lastFileRecordMap.get(p.toFile());
+                    FileRecord<BytesStore> cached = contentCache.get(p.toFile());
+                    // with a bounded cache, a file whose record was dropped is reported as inserted.
+                    FileRecord<BytesStore> prev = cached != null && cached.notified ? cached : null;
 //                    if (mapVal == null) {
 //                            System.out.println("Unable to read "+mapKey+", exists: "+p.toFile().exists());
 //                    }
                     if (prev != null && BytesUtil.contentEqual(mapVal, prev.contents)) {
-//                            System.out.println("... key: "+mapKey+" equal, last.keys: "+new TreeSet<>(lastFileRecordMap.keySet()));
                         continue;
                     }
 
@@ -454,7 +627,11 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
                             mapVal = prev.contents;
                     } else {
 //                            System.out.println("adding "+mapKey);
-                        lastFileRecordMap.put(p.toFile(), new FileRecord<>(p.toFile().lastModified(), mapVal.copy()));
+                        if (!isOwned(mapVal))
+                            mapVal = mapVal.copy();
+                        contentCache.put(p.toFile(), new FileRecord<>(p.toFile().lastModified(), mapVal, true));
+                        if (pending.get(mapKey) != REMOVED)
+                            keys.add(mapKey);
                     }
                     if (prev == null) {
                         subscriptions.notifyEvent(InsertedEvent.of(asset.fullName(), p.toFile().getName(), mapVal));
@@ -466,7 +643,11 @@ public class FilePerKeyValueStore implements StringBytesStoreKeyValueStore, Clos
                 } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
                     Path p = dirPath.resolve(fileName);
 
-                    FileRecord<BytesStore> prev = lastFileRecordMap.remove(p.toFile());
+                    FileRecord<BytesStore> removed = contentCache.remove(p.toFile());
+                    FileRecord<BytesStore> prev = removed != null && removed.notified ? removed : null;
+                    // unless it has been written again since, or is held by write behind.
+                    if (!Files.exists(p) && !pending.containsKey(mapKey))
+                        keys.remove(mapKey);
                     BytesStore lastVal = prev == null ? null : prev.contents;
                     subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), p.toFile().getName(), lastVal));
                     if (prev != null)
@@ -23,9 +23,12 @@ class FileRecord<T> {
     final long timestamp;
     boolean valid = true;
     final T contents;
+    // seen by the watcher, so subscribers have been told of these contents.
+    final boolean notified;
 
-    FileRecord(long timestamp, T contents) {
+    FileRecord(long timestamp, T contents, boolean notified) {
         this.timestamp = timestamp;
         this.contents = contents;
+        this.notified = notified;
     }
 }
@@ -39,27 +39,45 @@ public class InsertedEvent<K, V> implements MapEvent<K, V> {
     @Nullable
     private V value;
 
-    private InsertedEvent(String assetName, K key, V value) {
+    private long version;
+
+    private InsertedEvent(String assetName, K key, V value, long version) {
         this.assetName = assetName;
         this.key = key;
         this.value = value;
+        this.version = version;
     }
 
     @NotNull
     public static <K, V> InsertedEvent<K, V> of(String assetName, K key, V value) {
-        return new InsertedEvent<>(assetName, key, value);
+        return new InsertedEvent<>(assetName, key, value, 0);
+    }
+
+    @NotNull
+    public static <K, V> InsertedEvent<K, V> of(String assetName, K key, V value, long version) {
+        return new InsertedEvent<>(assetName, key, value, version);
+    }
+
+    /**
+     * Point a reused event at the next entry.
+     */
+    @NotNull
+    InsertedEvent<K, V> set(K key, V value) {
+        this.key = key;
+        this.value = value;
+        return this;
     }
 
     @NotNull
     @Override
     public <K2, V2> MapEvent<K2, V2> translate(@NotNull Function<K, K2> keyFunction, @NotNull Function<V, V2> valueFunction) {
-        return new InsertedEvent<>(assetName, keyFunction.apply(key), valueFunction.apply(value));
+        return new InsertedEvent<>(assetName, keyFunction.apply(key), valueFunction.apply(value), version);
     }
 
     @NotNull
     @Override
     public <K2, V2> MapEvent<K2, V2> translate(@NotNull BiFunction<K, K2, K2> keyFunction, @NotNull BiFunction<V, V2, V2> valueFunction) {
-        return new InsertedEvent<>(assetName, keyFunction.apply(key, null), valueFunction.apply(value, null));
+        return new InsertedEvent<>(assetName, keyFunction.apply(key, null), valueFunction.apply(value, null), version);
     }
 
     @Nullable
@@ -106,9 +124,15 @@ public class InsertedEvent<K, V> implements MapEvent<K, V> {
                 "assetName='" + assetName + '\'' +
                 ", key=" + key +
                 ", value=" + value +
+                (version == 0 ? "" : ", version=" + version) +
                 '}';
     }
 
+    @Override
+    public long version() {
+        return version;
+    }
+
     @Override
     public String assetName() {
         return assetName;
@@ -119,6 +143,7 @@ public class InsertedEvent<K, V> implements MapEvent<K, V> {
         wire.read(MapEventFields.assetName).text(s -> assetName = s);
         key = (K) wire.read(MapEventFields.key).object(Object.class);
         value = (V) wire.read(MapEventFields.value).object(Object.class);
+        wire.read(MapEventFields.version).int64(x -> version = x);
     }
 
     @Override
@@ -126,5 +151,6 @@ public class InsertedEvent<K, V> implements MapEvent<K, V> {
         wire.write(MapEventFields.assetName).text(assetName);
         wire.write(MapEventFields.key).object(key);
         wire.write(MapEventFields.value).object(value);
+        wire.write(MapEventFields.version).int64(version);
     }
 }
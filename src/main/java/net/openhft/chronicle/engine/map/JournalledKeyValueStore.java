@@ -0,0 +1,465 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.IORuntimeException;
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import net.openhft.chronicle.threads.HandlerPriority;
+import net.openhft.chronicle.threads.api.EventHandler;
+import net.openhft.chronicle.threads.api.EventLoop;
+import net.openhft.chronicle.threads.api.InvalidEventHandlerException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static net.openhft.chronicle.engine.map.MappedJournal.*;
+
+/**
+ * Keeps a map in memory and appends every change to a journal, so it can be rebuilt on restart.
+ * <p>
+ * Keys are spread over {@link #SEGMENTS} journals, each &lt;basePath&gt;/&lt;name&gt;.journal/&lt;segment&gt;.&lt;generation&gt;.journal.
+ * A change is made to the store and appended to its segment's journal under the segment's lock,
+ * so each journal holds the changes to its keys in the order they were made.  With a
+ * journalSyncMillis of 0 each change is forced to disk before returning, otherwise a handler on
+ * the asset's event loop forces the journals that often, and changes since are lost on a crash.
+ * <p>
+ * The same handler compacts a segment whose journal has more than twice as many records as the
+ * segment has entries, by writing its entries to a new journal which then replaces the old one.
+ * Changes to that segment wait while this happens.
+ * <p>
+ * On start up, each segment is replayed in parallel and loaded into the store with putAll.
+ * <p>
+ * When the store is bounded, the keys it evicts are journalled as removes.
+ */
+public class JournalledKeyValueStore<K, MV, V> extends AbstractKeyValueStore<K, MV, V>
+        implements AuthenticatedKeyValueStore<K, MV, V>, MetricsSource {
+    static final int SEGMENTS = 8;
+    static final long COMPACT_MIN_RECORDS = 10_000;
+    static final String SUFFIX = ".journal";
+    private static final Pattern JOURNAL_FILE = Pattern.compile("(\\d+)\\.(\\d+)\\" + SUFFIX);
+    private static final Logger LOG = LoggerFactory.getLogger(JournalledKeyValueStore.class);
+
+    @NotNull
+    private final File dir;
+    private final long syncMillis;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private long recoveredRecords, recoveryMillis;
+    private long lastSync = System.currentTimeMillis();
+    private volatile boolean closed = false;
+    private final Queue<K> evicted = new ConcurrentLinkedQueue<>();
+
+    public JournalledKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset,
+                                   @NotNull AuthenticatedKeyValueStore<K, MV, V> kvStore) {
+        this(context, asset, kvStore, context.basePath(), context.name());
+    }
+
+    JournalledKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset,
+                            @NotNull AuthenticatedKeyValueStore<K, MV, V> kvStore, String basePath, String name) {
+        super(context, asset, kvStore);
+        if (basePath == null)
+            throw new IllegalArgumentException("A journal needs a basePath for " + name);
+        this.dir = new File(basePath, name + SUFFIX);
+        this.syncMillis = context.journalSyncMillis();
+        dir.mkdirs();
+        if (kvStore instanceof BoundedKeyValueStore)
+            ((BoundedKeyValueStore<K, MV, V>) kvStore).onEviction(evicted::add);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = openSegment(i);
+        recover();
+        journalEvictions();
+
+        EventLoop eventLoop = asset.findOrCreateView(EventLoop.class);
+        eventLoop.addHandler(new EventHandler() {
+            @Override
+            public boolean action() throws InvalidEventHandlerException {
+                if (closed)
+                    throw new InvalidEventHandlerException();
+                return housekeep(System.currentTimeMillis());
+            }
+
+            @NotNull
+            @Override
+            public HandlerPriority priority() {
+                return HandlerPriority.MONITOR;
+            }
+        });
+    }
+
+    @NotNull
+    private File fileFor(int segment, long generation) {
+        return new File(dir, segment + "." + generation + SUFFIX);
+    }
+
+    // use the latest generation, removing any older one or unfinished compaction.
+    @NotNull
+    private Segment openSegment(int id) {
+        long generation = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher m = JOURNAL_FILE.matcher(file.getName());
+                if (m.matches() && Integer.parseInt(m.group(1)) == id)
+                    generation = Math.max(generation, Long.parseLong(m.group(2)));
+            }
+            for (File file : files) {
+                String name = file.getName();
+                Matcher m = JOURNAL_FILE.matcher(name);
+                if (m.matches() && Integer.parseInt(m.group(1)) == id && Long.parseLong(m.group(2)) < generation
+                        || name.startsWith(id + ".") && name.endsWith(".tmp"))
+                    file.delete();
+            }
+        }
+        return new Segment(id, generation, new MappedJournal(fileFor(id, generation)));
+    }
+
+    private void recover() {
+        long start = System.currentTimeMillis();
+        recoveredRecords = Arrays.stream(segments).parallel().mapToLong(this::replay).sum();
+        recoveryMillis = System.currentTimeMillis() - start;
+        if (recoveredRecords > 0)
+            LOG.info("Replayed " + recoveredRecords + " records from " + dir + " in " + recoveryMillis + " ms");
+    }
+
+    private long replay(@NotNull Segment segment) {
+        Map<K, V> entries = new HashMap<>();
+        long records = segment.journal.replay(keyType, valueType, (op, key, value) -> {
+            switch (op) {
+                case PUT:
+                    entries.put((K) key, (V) value);
+                    break;
+                case REMOVE:
+                    entries.remove(key);
+                    break;
+                case CLEAR:
+                    entries.clear();
+                    break;
+                default:
+                    throw new IORuntimeException("Unknown op " + op + " in " + fileFor(segment.id, segment.generation));
+            }
+        });
+        kvStore.putAll(entries);
+        return records;
+    }
+
+    @NotNull
+    private Segment segmentOf(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    /**
+     * Evictions happen inside the store while holding another segment's lock, so they are queued
+     * and journalled here once that lock is released.  A key put again since is not removed.
+     */
+    private void journalEvictions() {
+        for (K key; (key = evicted.poll()) != null; ) {
+            Segment segment = segmentOf(key);
+            synchronized (segment) {
+                if (!kvStore.containsKey(key))
+                    append(segment, REMOVE, key, null);
+            }
+        }
+    }
+
+    // called holding the segment's lock.
+    private void append(@NotNull Segment segment, byte op, Object key, Object value) {
+        segment.journal.append(op, key, value);
+        syncIfNeeded(segment);
+    }
+
+    private void syncIfNeeded(@NotNull Segment segment) {
+        if (syncMillis <= 0) {
+            segment.journal.sync();
+            syncs.increment();
+        }
+    }
+
+    boolean housekeep(long nowMillis) {
+        if (syncMillis > 0 && nowMillis >= lastSync + syncMillis) {
+            lastSync = nowMillis;
+            sync();
+        }
+        boolean busy = false;
+        long entriesPerSegment = kvStore.longSize() / SEGMENTS;
+        for (Segment segment : segments) {
+            if (closed)
+                break;
+            long records = segment.journal.records();
+            if (records > COMPACT_MIN_RECORDS && records > 2 * entriesPerSegment) {
+                compact(segment);
+                busy = true;
+            }
+        }
+        return busy;
+    }
+
+    /**
+     * Force every journal to disk.
+     */
+    public void sync() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.journal.sync();
+            }
+        }
+        syncs.increment();
+    }
+
+    /**
+     * Replace a segment's journal with one holding only its current entries.
+     */
+    void compact(@NotNull Segment segment) {
+        synchronized (segment) {
+            if (closed)
+                return;
+            long generation = segment.generation + 1;
+            File tmp = new File(dir, segment.id + "." + generation + SUFFIX + ".tmp");
+            MappedJournal next = new MappedJournal(tmp);
+            try {
+                for (int i = 0, segs = kvStore.segments(); i < segs; i++)
+                    kvStore.entriesFor(i, e -> {
+                        if (segmentOf(e.key()) == segment)
+                            next.append(PUT, e.key(), e.value());
+                    });
+                next.sync();
+                Files.move(tmp.toPath(), fileFor(segment.id, generation).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            } catch (InvalidSubscriberException e) {
+                next.close();
+                throw new AssertionError(e);
+
+            } catch (IOException e) {
+                next.close();
+                tmp.delete();
+                throw new IORuntimeException(e);
+            }
+            segment.journal.close();
+            fileFor(segment.id, segment.generation).delete();
+            segment.journal = next;
+            segment.generation = generation;
+            compactions.increment();
+        }
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        Segment segment = segmentOf(key);
+        boolean replaced;
+        synchronized (segment) {
+            replaced = kvStore.put(key, value);
+            append(segment, PUT, key, value);
+        }
+        journalEvictions();
+        return replaced;
+    }
+
+    @Nullable
+    @Override
+    public V getAndPut(K key, V value) {
+        Segment segment = segmentOf(key);
+        V oldValue;
+        synchronized (segment) {
+            oldValue = kvStore.getAndPut(key, value);
+            append(segment, PUT, key, value);
+        }
+        journalEvictions();
+        return oldValue;
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Segment segment = segmentOf(key);
+        V oldValue;
+        synchronized (segment) {
+            oldValue = kvStore.putIfAbsent(key, value);
+            if (oldValue == null)
+                append(segment, PUT, key, value);
+        }
+        journalEvictions();
+        return oldValue;
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        Segment segment = segmentOf(key);
+        V oldValue;
+        synchronized (segment) {
+            oldValue = kvStore.replace(key, value);
+            if (oldValue != null)
+                append(segment, PUT, key, value);
+        }
+        journalEvictions();
+        return oldValue;
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            if (!kvStore.replaceIfEqual(key, oldValue, newValue))
+                return false;
+            append(segment, PUT, key, newValue);
+        }
+        journalEvictions();
+        return true;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            if (!kvStore.remove(key))
+                return false;
+            append(segment, REMOVE, key, null);
+            return true;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V getAndRemove(K key) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            V oldValue = kvStore.getAndRemove(key);
+            if (oldValue != null)
+                append(segment, REMOVE, key, null);
+            return oldValue;
+        }
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            if (!kvStore.removeIfEqual(key, value))
+                return false;
+            append(segment, REMOVE, key, null);
+            return true;
+        }
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        Map<K, V>[] bySegment = new Map[SEGMENTS];
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            int id = segmentOf(entry.getKey()).id;
+            if (bySegment[id] == null)
+                bySegment[id] = new LinkedHashMap<>();
+            bySegment[id].put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            if (bySegment[i] == null)
+                continue;
+            Segment segment = segments[i];
+            synchronized (segment) {
+                kvStore.putAll(bySegment[i]);
+                for (Map.Entry<K, V> entry : bySegment[i].entrySet())
+                    segment.journal.append(PUT, entry.getKey(), entry.getValue());
+                syncIfNeeded(segment);
+            }
+        }
+        journalEvictions();
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        for (K key : keys)
+            remove(key);
+    }
+
+    @Override
+    public void clear() {
+        clear(0);
+    }
+
+    // holds the lock of every segment so no change is made between the clear and its records.
+    private void clear(int id) {
+        if (id == SEGMENTS) {
+            kvStore.clear();
+            for (Segment segment : segments)
+                append(segment, CLEAR, null, null);
+            return;
+        }
+        synchronized (segments[id]) {
+            clear(id + 1);
+        }
+    }
+
+    @NotNull
+    @Override
+    public KVSSubscription<K, MV, V> subscription(boolean createIfAbsent) {
+        return ((AuthenticatedKeyValueStore<K, MV, V>) kvStore).subscription(createIfAbsent);
+    }
+
+    @Override
+    public void addMetrics(@NotNull Map<String, String> metrics) {
+        long records = 0, bytes = 0;
+        for (Segment segment : segments) {
+            records += segment.journal.records();
+            bytes += segment.journal.position();
+        }
+        metrics.put("journalRecords", Long.toString(records));
+        metrics.put("journalBytes", Long.toString(bytes));
+        metrics.put("journalSyncs", Long.toString(syncs.sum()));
+        metrics.put("journalCompactions", Long.toString(compactions.sum()));
+        metrics.put("journalRecoveredRecords", Long.toString(recoveredRecords));
+        metrics.put("journalRecoveryMillis", Long.toString(recoveryMillis));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.journal.close();
+            }
+        }
+        kvStore.close();
+    }
+
+    static final class Segment {
+        final int id;
+        long generation;
+        MappedJournal journal;
+
+        Segment(int id, long generation, MappedJournal journal) {
+            this.id = id;
+            this.generation = generation;
+            this.journal = journal;
+        }
+    }
+}
@@ -45,6 +45,13 @@ public interface KVSSubscription<K, MV, V> extends Subscription<MapEvent<K, V>>,
 
     boolean needsPrevious();
 
+    /**
+     * @return false if no event would be delivered, so the caller need not create one.
+     */
+    default boolean hasSubscribers() {
+        return true;
+    }
+
     void setKvStore(KeyValueStore<K, MV, V> store);
 
     void notifyEvent(MapEvent<K, V> changeEvent);
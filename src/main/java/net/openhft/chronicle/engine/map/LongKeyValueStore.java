@@ -0,0 +1,56 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A store keyed by a primitive long, or an int widened to a long.  As well as the boxed
+ * KeyValueStore methods, the value can be accessed as bytes without boxing the key or creating an
+ * object for the value.
+ */
+public interface LongKeyValueStore<K, MV, V> extends KeyValueStore<K, MV, V> {
+
+    boolean containsKey(long key);
+
+    /**
+     * Append the bytes of a value to using.
+     *
+     * @param key   to look up
+     * @param using to append the value to
+     * @return true if the key was found, false if not.
+     */
+    boolean readValue(long key, @NotNull Bytes using);
+
+    /**
+     * Copy the readable bytes of value into the store.
+     *
+     * @param key   to set
+     * @param value to copy
+     * @return true if it was replaced, false if it was added.
+     */
+    boolean writeValue(long key, @NotNull BytesStore value);
+
+    /**
+     * @param key to remove
+     * @return true if it was removed, false if not.
+     */
+    boolean removeKey(long key);
+}
@@ -0,0 +1,228 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.IORuntimeException;
+import net.openhft.chronicle.bytes.NativeBytesStore;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.wire.BinaryWire;
+import net.openhft.chronicle.wire.ValueIn;
+import net.openhft.chronicle.wire.ValueOut;
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * An append only file of changes to a map, written and read through memory mappings of at least
+ * {@link #CHUNK_SIZE} bytes.
+ * <p>
+ * Each record is its length and the CRC32 of the rest of it as ints, followed by the op, the key
+ * and for a put the value.  The length is written after the rest of the record, and a replay
+ * stops at the first record which wasn't completed or doesn't match its checksum, e.g. as the
+ * pages it was written to didn't all reach the disk.  Records are only as durable as the last
+ * {@link #sync()}.
+ * <p>
+ * Not thread safe, the caller holds a lock around each call.
+ */
+class MappedJournal implements Closeable {
+    static final long CHUNK_SIZE = 16 << 20;
+    static final byte PUT = 1, REMOVE = 2, CLEAR = 3;
+    // set in the op when the key or value is written as bytes rather than as an object.
+    static final byte KEY_BYTES = 0x10, VALUE_BYTES = 0x20;
+    private static final byte OP_MASK = 0x0F;
+    // the length and the checksum.
+    private static final int HEADER = 8;
+
+    @NotNull
+    private final FileChannel fc;
+    private final Bytes<ByteBuffer> scratch = Bytes.elasticByteBuffer();
+    private final Wire scratchWire = Snapshots.wireFor(scratch);
+    private final CRC32 crc = new CRC32();
+    @Nullable
+    private MappedByteBuffer mapped;
+    private NativeBytesStore<ByteBuffer> store;
+    private long mappedStart, mappedEnd;
+    // where the next record is written.
+    private long position = 0;
+    private long records = 0;
+    private boolean dirty = false;
+
+    MappedJournal(@NotNull File file) throws IORuntimeException {
+        try {
+            fc = new RandomAccessFile(file, "rw").getChannel();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    long records() {
+        return records;
+    }
+
+    long position() {
+        return position;
+    }
+
+    private void mapAt(long offset, long minSize) {
+        try {
+            sync();
+            long size = Math.max(CHUNK_SIZE, minSize);
+            mapped = fc.map(FileChannel.MapMode.READ_WRITE, offset, size);
+            store = NativeBytesStore.wrap(mapped);
+            mappedStart = offset;
+            mappedEnd = offset + size;
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * Read every complete record from the start, leaving the journal ready to append after them.
+     *
+     * @return the number of records read.
+     */
+    long replay(Class keyType, Class valueType, @NotNull JournalConsumer consumer) throws IORuntimeException {
+        long fileSize;
+        try {
+            fileSize = fc.size();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        long pos = 0;
+        Bytes<ByteBuffer> in = null;
+        Wire wire = null;
+        while (pos + HEADER <= fileSize) {
+            if (mapped == null || pos + HEADER > mappedEnd) {
+                mapAt(pos, HEADER);
+                in = null;
+            }
+            int length = store.readVolatileInt(pos - mappedStart);
+            if (length <= 0 || pos + HEADER + length > fileSize)
+                break;
+            if (pos + HEADER + length > mappedEnd) {
+                mapAt(pos, HEADER + length);
+                in = null;
+            }
+            long start = pos - mappedStart + HEADER;
+            if (store.readInt(pos - mappedStart + 4) != checksum(mapped, (int) start, length))
+                break;
+            if (in == null) {
+                in = store.bytesForRead();
+                wire = Snapshots.wireFor(in);
+            }
+            in.readLimit(start + length);
+            in.readPosition(start);
+            byte op = in.readByte();
+            Object key = read(wire.read(() -> "key"), (op & KEY_BYTES) != 0, keyType);
+            Object value = (op & OP_MASK) == PUT
+                    ? read(wire.read(() -> "value"), (op & VALUE_BYTES) != 0, valueType)
+                    : null;
+            consumer.accept((byte) (op & OP_MASK), key, value);
+            pos += HEADER + length;
+            records++;
+        }
+        position = pos;
+        return records;
+    }
+
+    @Nullable
+    private static Object read(@NotNull ValueIn in, boolean isBytes, Class type) {
+        return isBytes ? in.bytesStore() : in.object(type);
+    }
+
+    /**
+     * Append a change.  The key is ignored for a clear, the value for all but a put.
+     */
+    void append(byte op, @Nullable Object key, @Nullable Object value) {
+        scratch.clear();
+        if (key instanceof BytesStore)
+            op |= KEY_BYTES;
+        if (op == PUT && value instanceof BytesStore)
+            op |= VALUE_BYTES;
+        scratch.writeByte(op);
+        write(scratchWire.write(() -> "key"), key);
+        if ((op & OP_MASK) == PUT)
+            write(scratchWire.write(() -> "value"), value);
+
+        int length = (int) scratch.readRemaining();
+        if (mapped == null || position + HEADER + length > mappedEnd)
+            mapAt(position, HEADER + length);
+        long offset = position - mappedStart;
+        store.write(offset + HEADER, scratch, scratch.readPosition(), length);
+        store.writeInt(offset + 4, checksum(scratch.underlyingObject(), (int) scratch.readPosition(), length));
+        store.writeOrderedInt(offset, length);
+        position += HEADER + length;
+        records++;
+        dirty = true;
+    }
+
+    private int checksum(@NotNull ByteBuffer buffer, int offset, int length) {
+        ByteBuffer bb = buffer.duplicate();
+        bb.clear();
+        bb.limit(offset + length);
+        bb.position(offset);
+        crc.reset();
+        crc.update(bb);
+        return (int) crc.getValue();
+    }
+
+    private static void write(@NotNull ValueOut out, @Nullable Object o) {
+        if (o instanceof BytesStore)
+            out.bytes((BytesStore) o);
+        else
+            out.object(o);
+    }
+
+    /**
+     * Force the records written so far to disk.
+     */
+    void sync() {
+        if (dirty && mapped != null) {
+            mapped.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            sync();
+            fc.close();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        } finally {
+            mapped = null;
+            scratch.release();
+        }
+    }
+
+    @FunctionalInterface
+    interface JournalConsumer {
+        void accept(byte op, @Nullable Object key, @Nullable Object value);
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.core.util.SerializableBiFunction;
+import net.openhft.chronicle.core.util.SerializableUpdaterWithArg;
+import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.pubsub.Subscriber;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+
+/**
+ * Keeps the most recently read entries of a remote map locally, so repeated reads don't make a
+ * round trip.
+ * <p>
+ * The cache subscribes to the map's events and replaces or drops the entries it holds as they
+ * change on the server.  Writes go to the server and drop the local entry, which is reloaded on
+ * the next read.  A read leaves a placeholder for the key, which a change of that key removes, so
+ * a value read while its key changed isn't cached, as it might be older than the change.  Changes
+ * of other keys don't stop a read being cached.
+ */
+public class NearCacheKeyValueStore<K, V> extends AbstractKeyValueStore<K, V, V>
+        implements ObjectKeyValueStore<K, V, V>, MetricsSource {
+    static final int DEFAULT_ENTRIES = 10_000;
+
+    @NotNull
+    private final ObjectKeyValueStore<K, V, V> remote;
+    private final int capacity;
+    @NotNull
+    private final Map<K, Cached<V>> cache;
+    @NotNull
+    private final Subscriber<MapEvent<K, V>> invalidator = this::onEvent;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitAgeMillis = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    public NearCacheKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset,
+                                  @NotNull ObjectKeyValueStore<K, V, V> remote) {
+        super(context, asset, remote);
+        this.remote = remote;
+        long entries = context.nearCacheEntries();
+        this.capacity = entries > 0 ? (int) Math.min(entries, Integer.MAX_VALUE) : DEFAULT_ENTRIES;
+        this.cache = new LinkedHashMap<K, Cached<V>>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Cached<V>> eldest) {
+                if (size() <= capacity)
+                    return false;
+                evictions.increment();
+                return true;
+            }
+        };
+        remote.subscription(true).registerSubscriber(
+                requestContext().type(MapEvent.class).bootstrap(false), invalidator);
+    }
+
+    void onEvent(@NotNull MapEvent<K, V> event) {
+        K key = event.key();
+        V value = event.value();
+        synchronized (cache) {
+            Cached<V> cached = cache.get(key);
+            if (cached == null)
+                return;
+            // a value being read might be older than the event.
+            if (event instanceof RemovedEvent || value == null || cached.isLoading()) {
+                cache.remove(key);
+                invalidations.increment();
+            } else {
+                cached.set(value);
+                updates.increment();
+            }
+        }
+    }
+
+    @Nullable
+    private Cached<V> cached(K key) {
+        synchronized (cache) {
+            Cached<V> cached = cache.get(key);
+            return cached == null || cached.isLoading() ? null : cached;
+        }
+    }
+
+    /**
+     * @return the placeholder left for a key about to be read, which a change of the key removes.
+     */
+    @NotNull
+    private Cached<V> loading(K key) {
+        Cached<V> placeholder = new Cached<>(null);
+        synchronized (cache) {
+            cache.put(key, placeholder);
+        }
+        return placeholder;
+    }
+
+    private void cache(K key, @Nullable V value, @NotNull Cached<V> placeholder) {
+        synchronized (cache) {
+            if (cache.get(key) != placeholder)
+                return;
+            if (value == null)
+                cache.remove(key);
+            else
+                placeholder.set(value);
+        }
+    }
+
+    private void invalidate(K key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    private void invalidateAll(@NotNull Collection<? extends K> keys) {
+        synchronized (cache) {
+            for (K key : keys)
+                cache.remove(key);
+        }
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        Cached<V> cached = cached(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.get(hitAgeMillis);
+        }
+        misses.increment();
+        Cached<V> placeholder = loading(key);
+        V value = remote.get(key);
+        cache(key, value, placeholder);
+        return value;
+    }
+
+    @Nullable
+    @Override
+    public V getUsing(K key, V value) {
+        return get(key);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return cached(key) != null || remote.containsKey(key);
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> getAll(@NotNull Collection<? extends K> keys) {
+        Map<K, V> found = new LinkedHashMap<>();
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            Cached<V> cached = cached(key);
+            if (cached == null) {
+                missing.add(key);
+            } else {
+                hits.increment();
+                found.put(key, cached.get(hitAgeMillis));
+            }
+        }
+        if (missing.isEmpty())
+            return found;
+
+        misses.add(missing.size());
+        List<Cached<V>> placeholders = new ArrayList<>(missing.size());
+        for (K key : missing)
+            placeholders.add(loading(key));
+        Map<K, V> fetched = remote.getAll(missing);
+        for (int i = 0; i < missing.size(); i++) {
+            K key = missing.get(i);
+            cache(key, fetched.get(key), placeholders.get(i));
+        }
+        if (found.isEmpty())
+            return fetched;
+
+        // keep the order of the keys requested.
+        Map<K, V> all = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value == null)
+                value = fetched.get(key);
+            if (value != null)
+                all.put(key, value);
+        }
+        return all;
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        invalidate(key);
+        return remote.put(key, value);
+    }
+
+    @Nullable
+    @Override
+    public V getAndPut(K key, V value) {
+        invalidate(key);
+        return remote.getAndPut(key, value);
+    }
+
+    @Override
+    public boolean remove(K key) {
+        invalidate(key);
+        return remote.remove(key);
+    }
+
+    @Nullable
+    @Override
+    public V getAndRemove(K key) {
+        invalidate(key);
+        return remote.getAndRemove(key);
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        invalidate(key);
+        return remote.replace(key, value);
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        invalidate(key);
+        return remote.replaceIfEqual(key, oldValue, newValue);
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        invalidate(key);
+        return remote.removeIfEqual(key, value);
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        invalidate(key);
+        return remote.putIfAbsent(key, value);
+    }
+
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        invalidate(key);
+        return remote.putIfVersion(key, value, version);
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        invalidate(key);
+        return remote.removeIfVersion(key, version);
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        invalidateAll(entries.keySet());
+        remote.putAll(entries);
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        invalidateAll(keys);
+        remote.removeAll(keys);
+    }
+
+    @Override
+    public <UA, RA, R> R applyTo(K key, @Nullable SerializableBiFunction<V, UA, V> updateFunction, UA updateArgument,
+                                 @Nullable SerializableBiFunction<V, RA, R> returnFunction, RA returnArgument) {
+        if (updateFunction != null)
+            invalidate(key);
+        return remote.applyTo(key, updateFunction, updateArgument, returnFunction, returnArgument);
+    }
+
+    @Override
+    public <UA> void update(K key, @NotNull SerializableBiFunction<V, UA, V> updateFunction, UA updateArgument) {
+        invalidate(key);
+        remote.update(key, updateFunction, updateArgument);
+    }
+
+    // a function on the whole map could change any entry.
+    @Override
+    public <A, R> R applyToMap(@NotNull SerializableBiFunction<ConcurrentMap<K, V>, A, R> function, A argument) {
+        invalidateCache();
+        return remote.applyToMap(function, argument);
+    }
+
+    @Override
+    public <A> void updateMap(@NotNull SerializableUpdaterWithArg<ConcurrentMap<K, V>, A> updater, A argument) {
+        invalidateCache();
+        remote.updateMap(updater, argument);
+    }
+
+    @Override
+    public void clear() {
+        invalidateCache();
+        remote.clear();
+    }
+
+    private void invalidateCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void accept(final ReplicationEntry replicationEntry) {
+        remote.accept(replicationEntry);
+    }
+
+    @NotNull
+    @Override
+    public KVSSubscription<K, V, V> subscription(boolean createIfAbsent) {
+        return remote.subscription(createIfAbsent);
+    }
+
+    @Override
+    public Class<K> keyType() {
+        return remote.keyType();
+    }
+
+    @Override
+    public Class<V> valueType() {
+        return remote.valueType();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void addMetrics(@NotNull Map<String, String> metrics) {
+        long hit = hits.sum();
+        long lookups = hit + misses.sum();
+        metrics.put("nearCacheEntries", Integer.toString(size()));
+        metrics.put("nearCacheCapacity", Integer.toString(capacity));
+        metrics.put("nearCacheHits", Long.toString(hit));
+        metrics.put("nearCacheMisses", Long.toString(lookups - hit));
+        metrics.put("nearCacheHitRatio", lookups == 0 ? "n/a" : String.format("%.3f", (double) hit / lookups));
+        metrics.put("nearCacheHitAgeMillisAvg", hit == 0 ? "n/a" : Long.toString(hitAgeMillis.sum() / hit));
+        metrics.put("nearCacheEvictions", Long.toString(evictions.sum()));
+        metrics.put("nearCacheInvalidations", Long.toString(invalidations.sum()));
+        metrics.put("nearCacheUpdates", Long.toString(updates.sum()));
+    }
+
+    @Override
+    public void close() {
+        remote.subscription(false).unregisterSubscriber(invalidator);
+        synchronized (cache) {
+            cache.clear();
+        }
+        super.close();
+    }
+
+    /**
+     * A cached value and when it was last loaded or updated, to report how old the values served
+     * are.  Without a value it is a placeholder for a value being read.
+     */
+    static final class Cached<V> {
+        private volatile V value;
+        private volatile long loadedMillis;
+
+        Cached(V value) {
+            set(value);
+        }
+
+        void set(V value) {
+            this.value = value;
+            this.loadedMillis = System.currentTimeMillis();
+        }
+
+        boolean isLoading() {
+            return value == null;
+        }
+
+        V get(@NotNull LongAdder ageMillis) {
+            ageMillis.add(System.currentTimeMillis() - loadedMillis);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,607 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import net.openhft.chronicle.wire.Marshallable;
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static net.openhft.chronicle.engine.map.Buffers.BUFFERS;
+
+/**
+ * A store for Long or Integer keys which holds both the hash table and the values off heap.
+ * <p>
+ * Each segment is an open addressing table with linear probing, where a slot holds the key, the
+ * address, length and capacity of the value.  The values are copied into memory owned by the slot,
+ * which is reused when a value of the same or smaller size is written, so reading or writing the
+ * bytes of a value with {@link #readValue(long, Bytes)} or {@link #writeValue(long, BytesStore)}
+ * doesn't allocate unless the table has to grow.
+ * <p>
+ * Segments are locked individually, so a consumer passed to keysFor or entriesFor must not modify
+ * the segment it is visiting.
+ */
+public class OffHeapLongKeyValueStore<K, MV, V> implements LongKeyValueStore<K, MV, V>,
+        AuthenticatedKeyValueStore<K, MV, V> {
+    private static final Memory MEMORY = OS.memory();
+    private static final int KEY = 0, ADDRESS = 8, LENGTH = 16, CAPACITY = 20, SLOT_SIZE = 24;
+    private static final int DEFAULT_SEGMENTS = 16, MIN_SLOTS = 16;
+
+    @NotNull
+    private final Segment[] segments;
+    private final Asset asset;
+    private final boolean intKeys;
+    private final Class<V> valueType;
+    private final boolean bytesValues;
+    private final BiFunction<V, Bytes, Bytes> valueToBytes;
+    private final BiFunction<BytesStore, V, V> bytesToValue;
+
+    public OffHeapLongKeyValueStore(@NotNull RequestContext context, Asset asset) {
+        this(asset, context.keyType(), context.valueType(), context.wireType(), context.entries());
+    }
+
+    OffHeapLongKeyValueStore(Asset asset, Class keyType, Class<V> valueType,
+                             Function<Bytes, Wire> wireType, long entries) {
+        this.asset = asset;
+        this.intKeys = keyType == Integer.class;
+        this.valueType = valueType;
+        this.bytesValues = valueType == null || BytesStore.class.isAssignableFrom(valueType);
+        this.valueToBytes = bytesValues ? null : VanillaStringMarshallableKeyValueStore.toBytes(valueType, wireType);
+        this.bytesToValue = bytesValues ? null : VanillaStringMarshallableKeyValueStore.fromBytes(valueType, wireType);
+
+        int slots = MIN_SLOTS;
+        while (slots * 3L / 4 * DEFAULT_SEGMENTS < entries)
+            slots <<= 1;
+        segments = new Segment[DEFAULT_SEGMENTS];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment(slots);
+    }
+
+    /**
+     * @return whether the store can hold keys and values of these types, i.e. Long or Integer keys
+     * and values of bytes, String or Marshallable.
+     */
+    public static boolean supports(Class keyType, Class valueType) {
+        return (keyType == Long.class || keyType == Integer.class)
+                && valueType != null
+                && (BytesStore.class.isAssignableFrom(valueType)
+                || valueType == String.class
+                || Marshallable.class.isAssignableFrom(valueType));
+    }
+
+    static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 48) & (segments.length - 1)];
+    }
+
+    private long toLong(@NotNull K key) {
+        return ((Number) key).longValue();
+    }
+
+    @NotNull
+    private K toKey(long key) {
+        return (K) (intKeys ? (Object) (int) key : (Object) key);
+    }
+
+    @Override
+    public boolean isKeyType(Object key) {
+        return intKeys ? key instanceof Integer : key instanceof Long;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        long hash = hash(key);
+        return segment(hash).indexOf(key, hash) >= 0;
+    }
+
+    @Override
+    public boolean readValue(long key, @NotNull Bytes using) {
+        long hash = hash(key);
+        return segment(hash).read(key, hash, using);
+    }
+
+    @Override
+    public boolean writeValue(long key, @NotNull BytesStore value) {
+        long hash = hash(key);
+        return segment(hash).write(key, hash, value);
+    }
+
+    @Override
+    public boolean removeKey(long key) {
+        long hash = hash(key);
+        return segment(hash).remove(key, hash);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return isKeyType(key) && containsKey(toLong(key));
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        return writeValue(toLong(key), toBytes(value));
+    }
+
+    @Override
+    public boolean remove(K key) {
+        return isKeyType(key) && removeKey(toLong(key));
+    }
+
+    @Nullable
+    @Override
+    public V getAndPut(K key, V value) {
+        long k = toLong(key), hash = hash(k);
+        BytesStore bytes = toBytes(value);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int index = segment.indexOf(k, hash);
+            V previous = index < 0 ? null : segment.valueAt(index, this::toValue);
+            segment.writeAt(index, k, hash, bytes);
+            return previous;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V getAndRemove(K key) {
+        if (!isKeyType(key))
+            return null;
+        long k = toLong(key), hash = hash(k);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int index = segment.indexOf(k, hash);
+            if (index < 0)
+                return null;
+            V previous = segment.valueAt(index, this::toValue);
+            segment.removeAt(index);
+            return previous;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        long k = toLong(key), hash = hash(k);
+        BytesStore bytes = toBytes(value);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int index = segment.indexOf(k, hash);
+            if (index >= 0)
+                return segment.valueAt(index, this::toValue);
+            segment.writeAt(index, k, hash, bytes);
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        long k = toLong(key), hash = hash(k);
+        BytesStore bytes = toBytes(value);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int index = segment.indexOf(k, hash);
+            if (index < 0)
+                return null;
+            V previous = segment.valueAt(index, this::toValue);
+            segment.writeAt(index, k, hash, bytes);
+            return previous;
+        }
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        if (!isKeyType(key))
+            return false;
+        long k = toLong(key), hash = hash(k);
+        Buffers b = BUFFERS.get();
+        BytesStore oldBytes = toBytes(oldValue, b.valueBuffer);
+        BytesStore newBytes = toBytes(newValue, b.valueBuffer2);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int index = segment.indexOf(k, hash);
+            if (index < 0 || !segment.contentEqualsAt(index, oldBytes))
+                return false;
+            segment.writeAt(index, k, hash, newBytes);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        if (!isKeyType(key))
+            return false;
+        long k = toLong(key), hash = hash(k);
+        BytesStore bytes = toBytes(value);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int index = segment.indexOf(k, hash);
+            if (index < 0 || !segment.contentEqualsAt(index, bytes))
+                return false;
+            segment.removeAt(index);
+            return true;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V getUsing(K key, MV using) {
+        if (!isKeyType(key))
+            return null;
+        long k = toLong(key);
+        if (bytesValues) {
+            Bytes bytes = using instanceof Bytes ? (Bytes) using : Bytes.elasticByteBuffer();
+            bytes.clear();
+            return readValue(k, bytes) ? (V) bytes : null;
+        }
+        Bytes<ByteBuffer> buffer = readBuffer();
+        if (!readValue(k, buffer))
+            return null;
+        return bytesToValue.apply(buffer, valueType.isInstance(using) ? (V) using : null);
+    }
+
+    @NotNull
+    private BytesStore toBytes(V value) {
+        return toBytes(value, BUFFERS.get().valueBuffer);
+    }
+
+    @NotNull
+    private BytesStore toBytes(V value, @NotNull Bytes<ByteBuffer> buffer) {
+        if (value instanceof BytesStore)
+            return (BytesStore) value;
+        buffer.clear();
+        return valueToBytes.apply(value, buffer);
+    }
+
+    /**
+     * keys are never serialised by this store, so the key buffer is free to read values into while
+     * the value buffer may be holding a value to write.
+     */
+    @NotNull
+    private static Bytes<ByteBuffer> readBuffer() {
+        Bytes<ByteBuffer> buffer = BUFFERS.get().keyBuffer;
+        buffer.clear();
+        return buffer;
+    }
+
+    @NotNull
+    private V toValue(long address, int length) {
+        if (bytesValues) {
+            Bytes bytes = Bytes.elasticByteBuffer();
+            copyTo(address, length, bytes);
+            return (V) bytes;
+        }
+        Bytes<ByteBuffer> buffer = readBuffer();
+        copyTo(address, length, buffer);
+        return bytesToValue.apply(buffer, null);
+    }
+
+    @Override
+    public long longSize() {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    @Override
+    public int segments() {
+        return segments.length;
+    }
+
+    @Override
+    public int segmentFor(K key) {
+        return (int) (hash(toLong(key)) >>> 48) & (segments.length - 1);
+    }
+
+    @Override
+    public void keysFor(int segment, @NotNull SubscriptionConsumer<K> kConsumer) throws InvalidSubscriberException {
+        segments[segment].forEach((key, address, length) -> kConsumer.accept(toKey(key)));
+    }
+
+    @Override
+    public void entriesFor(int segment, @NotNull SubscriptionConsumer<MapEvent<K, V>> kvConsumer) throws InvalidSubscriberException {
+        String assetName = asset.fullName();
+        segments[segment].forEach((key, address, length) ->
+                kvConsumer.accept(InsertedEvent.of(assetName, toKey(key), toValue(address, length))));
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        BytesStore bytes = toBytes(value);
+        for (Segment segment : segments)
+            if (segment.containsValue(bytes))
+                return true;
+        return false;
+    }
+
+    @Override
+    public Asset asset() {
+        return asset;
+    }
+
+    @Nullable
+    @Override
+    public KeyValueStore<K, MV, V> underlying() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments)
+            segment.close();
+    }
+
+    @NotNull
+    @Override
+    public KVSSubscription<K, MV, V> subscription(boolean createIfAbsent) {
+        throw new UnsupportedOperationException("todo");
+    }
+
+    @Override
+    public void accept(final ReplicationEntry replicationEntry) {
+        throw new UnsupportedOperationException("todo");
+    }
+
+    static void copyFrom(@NotNull BytesStore from, long address, long length) {
+        long start = from.readPosition();
+        int i = 0;
+        for (; i < length - 7; i += 8)
+            MEMORY.writeLong(address + i, from.readLong(start + i));
+        for (; i < length; i++)
+            MEMORY.writeByte(address + i, from.readByte(start + i));
+    }
+
+    static void copyTo(long address, long length, @NotNull Bytes to) {
+        int i = 0;
+        for (; i < length - 7; i += 8)
+            to.writeLong(MEMORY.readLong(address + i));
+        for (; i < length; i++)
+            to.writeByte(MEMORY.readByte(address + i));
+    }
+
+    static boolean contentEquals(long address, long length, @NotNull BytesStore bytes) {
+        if (bytes.readRemaining() != length)
+            return false;
+        long start = bytes.readPosition();
+        int i = 0;
+        for (; i < length - 7; i += 8)
+            if (MEMORY.readLong(address + i) != bytes.readLong(start + i))
+                return false;
+        for (; i < length; i++)
+            if (MEMORY.readByte(address + i) != bytes.readByte(start + i))
+                return false;
+        return true;
+    }
+
+    @FunctionalInterface
+    interface SlotConsumer {
+        void accept(long key, long address, int length) throws InvalidSubscriberException;
+    }
+
+    @FunctionalInterface
+    interface SlotFunction<T> {
+        T apply(long address, int length);
+    }
+
+    static final class Segment {
+        private long table;
+        private int slots, size;
+
+        Segment(int slots) {
+            this.slots = slots;
+            this.table = allocateTable(slots);
+        }
+
+        private long allocateTable(int slots) {
+            long address = MEMORY.allocate((long) slots * SLOT_SIZE);
+            MEMORY.setMemory(address, (long) slots * SLOT_SIZE, (byte) 0);
+            return address;
+        }
+
+        private long slot(int index) {
+            return table + (long) index * SLOT_SIZE;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * @return the index of the key or, if absent, -1 - the index of the free slot to use.
+         */
+        synchronized int indexOf(long key, long hash) {
+            int mask = slots - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                long slot = slot(i);
+                if (MEMORY.readLong(slot + ADDRESS) == 0)
+                    return -1 - i;
+                if (MEMORY.readLong(slot + KEY) == key)
+                    return i;
+            }
+        }
+
+        synchronized boolean read(long key, long hash, @NotNull Bytes using) {
+            int index = indexOf(key, hash);
+            if (index < 0)
+                return false;
+            long slot = slot(index);
+            copyTo(MEMORY.readLong(slot + ADDRESS), MEMORY.readInt(slot + LENGTH), using);
+            return true;
+        }
+
+        synchronized <T> T valueAt(int index, @NotNull SlotFunction<T> function) {
+            long slot = slot(index);
+            return function.apply(MEMORY.readLong(slot + ADDRESS), MEMORY.readInt(slot + LENGTH));
+        }
+
+        synchronized boolean contentEqualsAt(int index, @NotNull BytesStore value) {
+            long slot = slot(index);
+            return contentEquals(MEMORY.readLong(slot + ADDRESS), MEMORY.readInt(slot + LENGTH), value);
+        }
+
+        synchronized boolean write(long key, long hash, @NotNull BytesStore value) {
+            return writeAt(indexOf(key, hash), key, hash, value);
+        }
+
+        /**
+         * @param index as returned by indexOf for this key, while holding the lock.
+         */
+        synchronized boolean writeAt(int index, long key, long hash, @NotNull BytesStore value) {
+            int length = Math.toIntExact(value.readRemaining());
+            boolean replaced = index >= 0;
+            if (!replaced) {
+                if ((size + 1) * 4L > slots * 3L) {
+                    resize(slots << 1);
+                    index = indexOf(key, hash);
+                }
+                index = -1 - index;
+                size++;
+            }
+            long slot = slot(index);
+            long address = MEMORY.readLong(slot + ADDRESS);
+            int capacity = MEMORY.readInt(slot + CAPACITY);
+            if (capacity < length) {
+                if (address != 0)
+                    MEMORY.freeMemory(address, capacity);
+                // at least 8 bytes so an empty value still has a non zero address.
+                capacity = Math.max(8, (length + 7) & ~7);
+                address = MEMORY.allocate(capacity);
+                MEMORY.writeLong(slot + ADDRESS, address);
+                MEMORY.writeInt(slot + CAPACITY, capacity);
+            }
+            MEMORY.writeLong(slot + KEY, key);
+            MEMORY.writeInt(slot + LENGTH, length);
+            copyFrom(value, address, length);
+            return replaced;
+        }
+
+        synchronized boolean remove(long key, long hash) {
+            int index = indexOf(key, hash);
+            if (index < 0)
+                return false;
+            removeAt(index);
+            return true;
+        }
+
+        synchronized void removeAt(int hole) {
+            long slot = slot(hole);
+            MEMORY.freeMemory(MEMORY.readLong(slot + ADDRESS), MEMORY.readInt(slot + CAPACITY));
+
+            // shift back any entry which would no longer be found past the hole.
+            int mask = slots - 1;
+            for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+                long next = slot(i);
+                if (MEMORY.readLong(next + ADDRESS) == 0)
+                    break;
+                int home = (int) hash(MEMORY.readLong(next + KEY)) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    MEMORY.copyMemory(next, slot(hole), SLOT_SIZE);
+                    hole = i;
+                }
+            }
+            MEMORY.setMemory(slot(hole), SLOT_SIZE, (byte) 0);
+            size--;
+        }
+
+        private void resize(int newSlots) {
+            long oldTable = table;
+            int oldSlots = slots;
+            table = allocateTable(newSlots);
+            slots = newSlots;
+            int mask = newSlots - 1;
+            for (int j = 0; j < oldSlots; j++) {
+                long from = oldTable + (long) j * SLOT_SIZE;
+                if (MEMORY.readLong(from + ADDRESS) == 0)
+                    continue;
+                int i = (int) hash(MEMORY.readLong(from + KEY)) & mask;
+                while (MEMORY.readLong(slot(i) + ADDRESS) != 0)
+                    i = (i + 1) & mask;
+                MEMORY.copyMemory(from, slot(i), SLOT_SIZE);
+            }
+            MEMORY.freeMemory(oldTable, (long) oldSlots * SLOT_SIZE);
+        }
+
+        synchronized void forEach(@NotNull SlotConsumer consumer) throws InvalidSubscriberException {
+            for (int i = 0; i < slots; i++) {
+                long slot = slot(i);
+                long address = MEMORY.readLong(slot + ADDRESS);
+                if (address != 0)
+                    consumer.accept(MEMORY.readLong(slot + KEY), address, MEMORY.readInt(slot + LENGTH));
+            }
+        }
+
+        synchronized boolean containsValue(@NotNull BytesStore value) {
+            for (int i = 0; i < slots; i++) {
+                long slot = slot(i);
+                long address = MEMORY.readLong(slot + ADDRESS);
+                if (address != 0 && contentEquals(address, MEMORY.readInt(slot + LENGTH), value))
+                    return true;
+            }
+            return false;
+        }
+
+        private void freeValues() {
+            for (int i = 0; i < slots; i++) {
+                long slot = slot(i);
+                long address = MEMORY.readLong(slot + ADDRESS);
+                if (address != 0)
+                    MEMORY.freeMemory(address, MEMORY.readInt(slot + CAPACITY));
+            }
+        }
+
+        synchronized void clear() {
+            freeValues();
+            MEMORY.setMemory(table, (long) slots * SLOT_SIZE, (byte) 0);
+            size = 0;
+        }
+
+        synchronized void close() {
+            if (table == 0)
+                return;
+            freeValues();
+            MEMORY.freeMemory(table, (long) slots * SLOT_SIZE);
+            table = 0;
+            size = 0;
+        }
+    }
+}
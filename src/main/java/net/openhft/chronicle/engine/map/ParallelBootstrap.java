@@ -0,0 +1,93 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.map.SegmentCursor.SegmentReader;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bootstraps a subscriber by scanning the segments of a store concurrently in a fork-join pool.
+ * <p>
+ * The scans run ahead of the subscriber, at most a couple of segments per pool thread, while the
+ * results are delivered on the caller's thread in segment order, so the subscriber sees the same
+ * sequence of events as a sequential bootstrap.
+ */
+final class ParallelBootstrap {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelBootstrap.class);
+
+    private ParallelBootstrap() {
+    }
+
+    static <T> void bootstrap(@NotNull String assetName,
+                              int segments,
+                              @NotNull SegmentReader<T> reader,
+                              @NotNull SubscriptionConsumer<T> consumer) throws InvalidSubscriberException {
+        bootstrap(ForkJoinPool.commonPool(), assetName, segments, reader, consumer);
+    }
+
+    static <T> void bootstrap(@NotNull ForkJoinPool pool,
+                              @NotNull String assetName,
+                              int segments,
+                              @NotNull SegmentReader<T> reader,
+                              @NotNull SubscriptionConsumer<T> consumer) throws InvalidSubscriberException {
+        long start = System.nanoTime();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        int progressEvery = Math.max(1, segments / 10);
+        Deque<ForkJoinTask<List<T>>> scans = new ArrayDeque<>(window);
+        int nextSegment = 0;
+        try {
+            for (int delivered = 0; delivered < segments; delivered++) {
+                while (nextSegment < segments && scans.size() < window)
+                    scans.add(pool.submit(scan(reader, nextSegment++)));
+
+                for (T t : scans.poll().join())
+                    consumer.accept(t);
+
+                if ((delivered + 1) % progressEvery == 0 && LOG.isDebugEnabled())
+                    LOG.debug("bootstrap of " + assetName + " " + (delivered + 1) + "/" + segments + " segments");
+            }
+        } catch (InvalidSubscriberException e) {
+            scans.forEach(s -> s.cancel(false));
+            throw e;
+        }
+        if (LOG.isInfoEnabled()) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            LOG.info("bootstrap of " + assetName + " took " + micros / 1000.0 + " ms over " + segments + " segments");
+        }
+    }
+
+    @NotNull
+    private static <T> ForkJoinTask<List<T>> scan(@NotNull SegmentReader<T> reader, int segment) {
+        return ForkJoinTask.adapt(() -> {
+            List<T> list = new ArrayList<>();
+            reader.readSegment(segment, list::add);
+            return list;
+        });
+    }
+}
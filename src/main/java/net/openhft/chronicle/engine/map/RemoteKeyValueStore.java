@@ -17,18 +17,25 @@
 package net.openhft.chronicle.engine.map;
 
 import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.util.SerializableBiFunction;
+import net.openhft.chronicle.core.util.SerializableFunction;
+import net.openhft.chronicle.core.util.SerializableUpdaterWithArg;
 import net.openhft.chronicle.engine.api.EngineReplication.ReplicationEntry;
+import net.openhft.chronicle.engine.api.map.EntryPredicate;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.VersionedValue;
 import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
 import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
 import net.openhft.chronicle.engine.collection.ClientWiredStatelessChronicleCollection;
 import net.openhft.chronicle.engine.collection.ClientWiredStatelessChronicleSet;
+import net.openhft.chronicle.engine.server.internal.MapWireHandler.Params;
 import net.openhft.chronicle.network.connection.AbstractStatelessClient;
 import net.openhft.chronicle.network.connection.CoreFields;
 import net.openhft.chronicle.network.connection.TcpChannelHub;
+import net.openhft.chronicle.wire.ReadMarshallable;
 import net.openhft.chronicle.wire.ValueIn;
 import net.openhft.chronicle.wire.ValueOut;
 import net.openhft.chronicle.wire.Wires;
@@ -38,6 +45,11 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -49,6 +61,10 @@ public class RemoteKeyValueStore<K, V> extends AbstractStatelessClient<EventId>
         implements Cloneable, ObjectKeyValueStore<K, V, V> {
 
     public static final Consumer<ValueOut> VOID_PARAMETERS = out -> out.marshallable(WriteMarshallable.EMPTY);
+    private static final Function<ValueIn, Void> VOID_REPLY = in -> {
+        in.marshallable(ReadMarshallable.DISCARD);
+        return null;
+    };
 
     private final Class<K> kClass;
     private final Class<V> vClass;
@@ -60,6 +76,9 @@ public class RemoteKeyValueStore<K, V> extends AbstractStatelessClient<EventId>
     // todo
     @NotNull
     private final ObjectKVSSubscription<K, V, V> subscriptions;
+    // limits the asynchronous requests of this map, if set.
+    @Nullable
+    private final Semaphore outstanding;
 
     public RemoteKeyValueStore(@NotNull final RequestContext context,
                                @NotNull Asset asset,
@@ -69,6 +88,9 @@ public class RemoteKeyValueStore<K, V> extends AbstractStatelessClient<EventId>
         this.kClass = context.keyType();
         this.vClass = context.valueType();
         this.context = context;
+        this.outstanding = context.maxOutstanding() > 0
+                ? new Semaphore((int) Math.min(Integer.MAX_VALUE, context.maxOutstanding()))
+                : null;
 
         subscriptions = asset.acquireView(ObjectKVSSubscription.class, context);
         subscriptions.setKvStore(this);
@@ -112,11 +134,26 @@ public class RemoteKeyValueStore<K, V> extends AbstractStatelessClient<EventId>
 
     @Override
     public boolean containsValue(final V value) {
-        throw new UnsupportedOperationException("todo");
+        checkValue(value);
+        return proxyReturnBoolean(containsValue, out -> out.object(value));
     }
 
 
 
+    @NotNull
+    @Override
+    public Set<K> keysForValue(@NotNull V value) {
+        checkValue(value);
+        return proxyReturnWireConsumerInOut(keysForValue, CoreFields.reply, out -> out.object(value), read -> {
+            final Set<K> keys = new LinkedHashSet<>();
+            read.sequence(s -> {
+                while (read.hasNextSequenceItem())
+                    keys.add(read.object(kClass));
+            });
+            return keys;
+        });
+    }
+
     private void checkValue(@Nullable Object value) {
         if (value == null)
             throw new NullPointerException("value must not be null");
@@ -139,6 +176,119 @@ public class RemoteKeyValueStore<K, V> extends AbstractStatelessClient<EventId>
         return proxyReturnBooleanWithArgs(replaceForOld, key, oldValue, newValue);
     }
 
+    @Nullable
+    @Override
+    public VersionedValue<V> getVersioned(K key) {
+        checkKey(key);
+        return proxyReturnWireConsumerInOut(getVersioned, CoreFields.reply, toParameters(getVersioned, key),
+                read -> read.applyToMarshallable(wire -> {
+                    final V value = wire.read(Params.value).object(vClass);
+                    final long version = wire.read(Params.version).int64();
+                    return value == null ? null : new VersionedValue<>(value, version);
+                }));
+    }
+
+    /**
+     * The async methods send the request and return without waiting for the reply, so many
+     * requests can be in flight on one connection.  The future is completed in the common fork-join
+     * pool when the reply arrives.
+     */
+    @NotNull
+    public CompletableFuture<V> getAsync(K key) {
+        checkKey(key);
+        return async(get, toParameters(get, key), in -> in.object(vClass));
+    }
+
+    @NotNull
+    public CompletableFuture<V> getAndPutAsync(K key, V value) {
+        checkKey(key);
+        checkValue(value);
+        return async(getAndPut, toParameters(getAndPut, key, value), in -> in.object(vClass));
+    }
+
+    /**
+     * unlike put, this waits for the server to acknowledge the change.
+     */
+    @NotNull
+    public CompletableFuture<Void> putAsync(K key, V value) {
+        checkKey(key);
+        checkValue(value);
+        return async(putAll, out -> out.sequence(s -> s.marshallable(wire -> wire.write(Params.key).object(key)
+                .write(Params.value).object(value))), VOID_REPLY);
+    }
+
+    @NotNull
+    public CompletableFuture<V> putIfAbsentAsync(K key, V value) {
+        checkKey(key);
+        checkValue(value);
+        return async(putIfAbsent, toParameters(putIfAbsent, key, value), in -> in.object(vClass));
+    }
+
+    @NotNull
+    public CompletableFuture<V> getAndRemoveAsync(K key) {
+        checkKey(key);
+        return async(getAndRemove, toParameters(getAndRemove, key), in -> in.object(vClass));
+    }
+
+    /**
+     * unlike remove, this waits for the server to acknowledge the change.
+     */
+    @NotNull
+    public CompletableFuture<Void> removeAsync(K key) {
+        checkKey(key);
+        return async(removeAll, out -> out.sequence(s -> s.object(key)), VOID_REPLY);
+    }
+
+    @NotNull
+    public CompletableFuture<Boolean> containsKeyAsync(K key) {
+        checkKey(key);
+        return async(containsKey, out -> out.object(key), ValueIn::bool);
+    }
+
+    @NotNull
+    public CompletableFuture<Map<K, V>> getAllAsync(@NotNull Collection<? extends K> keys) {
+        keys.forEach(this::checkKey);
+        return async(getAll, out -> out.sequence(s -> keys.forEach(s::object)), this::readEntries);
+    }
+
+    @NotNull
+    private <R> CompletableFuture<R> async(@NotNull EventId eventId,
+                                           @NotNull Consumer<ValueOut> parameters,
+                                           @NotNull Function<ValueIn, R> reply) {
+        if (outstanding == null)
+            return proxyReturnWireConsumerInOutAsync(eventId, CoreFields.reply, parameters, reply);
+
+        final CompletableFuture<R> failed = new CompletableFuture<>();
+        try {
+            if (!outstanding.tryAcquire(hub.timeoutMs, TimeUnit.MILLISECONDS)) {
+                failed.completeExceptionally(new TimeoutException(context.maxOutstanding()
+                        + " requests still outstanding after " + hub.timeoutMs + " ms"));
+                return failed;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        final CompletableFuture<R> future = proxyReturnWireConsumerInOutAsync(eventId, CoreFields.reply, parameters, reply);
+        future.whenComplete((r, t) -> outstanding.release());
+        return future;
+    }
+
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        checkKey(key);
+        checkValue(value);
+        return proxyReturnWireConsumerInOut(putIfVersion, CoreFields.reply,
+                toParameters(putIfVersion, key, value, version), ValueIn::int64);
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        checkKey(key);
+        return proxyReturnBooleanWithArgs(removeIfVersion, key, version);
+    }
+
     @Nullable
     @SuppressWarnings("NullableProblems")
     public V replace(K key, V value) {
@@ -285,6 +435,121 @@ public class RemoteKeyValueStore<K, V> extends AbstractStatelessClient<EventId>
         return proxyReturnTypedObject(getAndPut, null, vClass, key, value);
     }
 
+    @NotNull
+    @Override
+    public Map<K, V> getAll(@NotNull Collection<? extends K> keys) {
+        keys.forEach(this::checkKey);
+        return proxyReturnWireConsumerInOut(getAll, CoreFields.reply,
+                out -> out.sequence(s -> keys.forEach(s::object)),
+                this::readEntries);
+    }
+
+    @Override
+    public Map<K, V> entriesBetween(@Nullable K fromKey, boolean fromInclusive,
+                                    @Nullable K toKey, boolean toInclusive, int limit) {
+        return proxyReturnWireConsumerInOut(entriesBetween, CoreFields.reply,
+                toParameters(entriesBetween, fromKey, fromInclusive, toKey, toInclusive, limit),
+                this::readEntries);
+    }
+
+    @Override
+    public Map<K, V> entriesWithPrefix(@NotNull String prefix, @Nullable K afterKey, int limit) {
+        return proxyReturnWireConsumerInOut(entriesWithPrefix, CoreFields.reply,
+                toParameters(entriesWithPrefix, prefix, afterKey, limit),
+                this::readEntries);
+    }
+
+    @Override
+    public Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value) {
+        return proxyReturnWireConsumerInOut(entriesWhere, CoreFields.reply,
+                toParameters(entriesWhere, field, value),
+                this::readEntries);
+    }
+
+    @Override
+    public Map<K, V> entriesWhereBetween(@NotNull String field, @Nullable Object fromValue, @Nullable Object toValue) {
+        return proxyReturnWireConsumerInOut(entriesWhereBetween, CoreFields.reply,
+                toParameters(entriesWhereBetween, field, fromValue, toValue),
+                this::readEntries);
+    }
+
+    /**
+     * runs the query on the server, which only sends back the matching keys and projections.
+     */
+    @Override
+    public <R> Map<K, R> query(@NotNull EntryPredicate<K, V> filter,
+                               @NotNull SerializableFunction<V, R> projection, int limit) {
+        return proxyReturnWireConsumerInOut(query, CoreFields.reply,
+                toParameters(query, filter, projection, limit),
+                read -> readEntries(read, (Class<R>) Object.class));
+    }
+
+    /**
+     * sends the functions to the server, which applies them to the entry, only the result of the
+     * returnFunction comes back.
+     */
+    @Nullable
+    @Override
+    public <UA, RA, R> R applyTo(K key, @Nullable SerializableBiFunction<V, UA, V> updateFunction, UA updateArgument,
+                                 @Nullable SerializableBiFunction<V, RA, R> returnFunction, RA returnArgument) {
+        checkKey(key);
+        return proxyReturnWireConsumerInOut(applyTo, CoreFields.reply,
+                toParameters(applyTo, key, updateFunction, updateArgument, returnFunction, returnArgument),
+                read -> (R) read.object(Object.class));
+    }
+
+    @Override
+    public <UA> void update(K key, @NotNull SerializableBiFunction<V, UA, V> updateFunction, UA updateArgument) {
+        checkKey(key);
+        sendEventAsync(update, toParameters(update, key, updateFunction, updateArgument));
+    }
+
+    @Override
+    public <A, R> R applyToMap(@NotNull SerializableBiFunction<ConcurrentMap<K, V>, A, R> function, A argument) {
+        return proxyReturnWireConsumerInOut(applyToMap, CoreFields.reply,
+                toParameters(applyToMap, function, argument),
+                read -> (R) read.object(Object.class));
+    }
+
+    @Override
+    public <A> void updateMap(@NotNull SerializableUpdaterWithArg<ConcurrentMap<K, V>, A> updater, A argument) {
+        sendEventAsync(updateMap, toParameters(updateMap, updater, argument));
+    }
+
+    @NotNull
+    private Map<K, V> readEntries(@NotNull ValueIn read) {
+        return readEntries(read, vClass);
+    }
+
+    @NotNull
+    private <R> Map<K, R> readEntries(@NotNull ValueIn read, @NotNull Class<R> valueClass) {
+        final Map<K, R> result = new LinkedHashMap<>();
+        read.sequence(s -> {
+            while (read.hasNextSequenceItem())
+                read.marshallable(wire -> result.put(
+                        wire.read(Params.key).object(kClass),
+                        wire.read(Params.value).object(valueClass)));
+        });
+        return result;
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        entries.forEach((k, v) -> {
+            checkKey(k);
+            checkValue(v);
+        });
+        proxyReturnVoid(putAll, out -> out.sequence(s -> entries.forEach((k, v) ->
+                s.marshallable(wire -> wire.write(Params.key).object(k)
+                        .write(Params.value).object(v)))));
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        keys.forEach(this::checkKey);
+        proxyReturnVoid(removeAll, out -> out.sequence(s -> keys.forEach(s::object)));
+    }
+
     public void clear() {
         proxyReturnVoid(clear);
     }
@@ -39,15 +39,28 @@ public class RemovedEvent<K, V> implements MapEvent<K, V> {
     @Nullable
     private V oldValue;
 
-    private RemovedEvent(String assetName, K key, V oldValue) {
+    private long version;
+
+    private RemovedEvent(String assetName, K key, V oldValue, long version) {
         this.assetName = assetName;
         this.key = key;
         this.oldValue = oldValue;
+        this.version = version;
     }
 
     @NotNull
     public static <K, V> RemovedEvent<K, V> of(String assetName, K key, V value) {
-        return new RemovedEvent<>(assetName, key, value);
+        return new RemovedEvent<>(assetName, key, value, 0);
+    }
+
+    @NotNull
+    public static <K, V> RemovedEvent<K, V> of(String assetName, K key, V value, long version) {
+        return new RemovedEvent<>(assetName, key, value, version);
+    }
+
+    @Override
+    public long version() {
+        return version;
     }
 
     @Override
@@ -58,13 +71,13 @@ public class RemovedEvent<K, V> implements MapEvent<K, V> {
     @NotNull
     @Override
     public <K2, V2> MapEvent<K2, V2> translate(@NotNull Function<K, K2> keyFunction, @NotNull Function<V, V2> valueFunction) {
-        return new RemovedEvent<>(assetName, keyFunction.apply(key), valueFunction.apply(oldValue));
+        return new RemovedEvent<>(assetName, keyFunction.apply(key), valueFunction.apply(oldValue), version);
     }
 
     @NotNull
     @Override
     public <K2, V2> MapEvent<K2, V2> translate(@NotNull BiFunction<K, K2, K2> keyFunction, @NotNull BiFunction<V, V2, V2> valueFunction) {
-        return new RemovedEvent<>(assetName, keyFunction.apply(key, null), valueFunction.apply(oldValue, null));
+        return new RemovedEvent<>(assetName, keyFunction.apply(key, null), valueFunction.apply(oldValue, null), version);
     }
 
     @Nullable
@@ -111,6 +124,7 @@ public class RemovedEvent<K, V> implements MapEvent<K, V> {
                 "assetName='" + assetName + '\'' +
                 ", key=" + key +
                 ", oldValue=" + oldValue +
+                (version == 0 ? "" : ", version=" + version) +
                 '}';
     }
 
@@ -120,6 +134,7 @@ public class RemovedEvent<K, V> implements MapEvent<K, V> {
         wire.read(MapEventFields.assetName).text(s -> assetName = s);
         key = (K) wire.read(MapEventFields.key).object(Object.class);
         oldValue = (V) wire.read(MapEventFields.oldValue).object(Object.class);
+        wire.read(MapEventFields.version).int64(x -> version = x);
     }
 
     @Override
@@ -127,5 +142,6 @@ public class RemovedEvent<K, V> implements MapEvent<K, V> {
         wire.write(MapEventFields.assetName).text(assetName);
         wire.write(MapEventFields.key).object(key);
         wire.write(MapEventFields.oldValue).object(oldValue);
+        wire.write(MapEventFields.version).int64(version);
     }
 }
@@ -0,0 +1,211 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.AssetTree;
+import net.openhft.chronicle.threads.NamedThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes snapshots of the maps under a mount point, either every so many seconds or on demand.
+ * <p>
+ * Each map is written to &lt;dir&gt;/&lt;path under the mount&gt;.snapshot, the mount's own map
+ * to &lt;dir&gt;/&lt;mount name&gt;.snapshot.  This is registered as a view of the mount's asset
+ * so the maps below it can find it.
+ */
+public class SnapshotSchedule implements Closeable {
+    static final String SUFFIX = ".snapshot";
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotSchedule.class);
+
+    @NotNull
+    private final Asset mount;
+    @NotNull
+    private final File dir;
+    @Nullable
+    private ScheduledExecutorService ses;
+
+    public SnapshotSchedule(@NotNull Asset mount, @NotNull File dir) {
+        this.mount = mount;
+        this.dir = dir;
+    }
+
+    /**
+     * Set up snapshots for a mount, restoring any maps which have one and are empty.
+     *
+     * @param snapshotDir     where snapshots are written, relative to the baseDir unless absolute
+     * @param snapshotSeconds how often to write them, or 0 to only write them when asked.
+     */
+    public static void install(String baseDir, @NotNull AssetTree tree, @NotNull Asset mount,
+                               @NotNull String snapshotDir, long snapshotSeconds) {
+        File dir = new File(snapshotDir);
+        if (!dir.isAbsolute())
+            dir = new File(baseDir, snapshotDir);
+        SnapshotSchedule schedule = new SnapshotSchedule(mount, dir);
+        mount.registerView(SnapshotSchedule.class, schedule);
+        schedule.restoreAll(tree);
+        if (snapshotSeconds > 0)
+            schedule.start(snapshotSeconds);
+    }
+
+    /**
+     * Snapshot every map under the mount every periodSeconds.
+     */
+    public synchronized void start(long periodSeconds) {
+        if (ses != null)
+            throw new IllegalStateException("Already started");
+        ses = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("snapshot" + mount.fullName().replace('/', '-'), true));
+        ses.scheduleWithFixedDelay(this::snapshotAll, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @NotNull
+    public File dir() {
+        return dir;
+    }
+
+    @NotNull
+    File fileFor(@NotNull Asset asset) {
+        String name = asset == mount
+                ? mount.name()
+                : asset.fullName().substring(mount.fullName().length() + 1);
+        return new File(dir, name + SUFFIX);
+    }
+
+    /**
+     * @return the number of maps written.
+     */
+    public int snapshotAll() {
+        List<Asset> assets = new ArrayList<>();
+        collect(mount, assets);
+        int count = 0;
+        for (Asset asset : assets) {
+            try {
+                if (snapshot(asset) >= 0)
+                    count++;
+            } catch (Exception e) {
+                LOG.warn("Unable to snapshot " + asset.fullName(), e);
+            }
+        }
+        return count;
+    }
+
+    private static void collect(@NotNull Asset asset, @NotNull List<Asset> assets) {
+        assets.add(asset);
+        try {
+            asset.forEachChild(c -> collect(c, assets));
+        } catch (InvalidSubscriberException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Snapshot one map under the mount.
+     *
+     * @return the number of records written, or -1 if the asset has no map.
+     */
+    public long snapshot(@NotNull Asset asset) {
+        ObjectKeyValueStore store = asset.getView(ObjectKeyValueStore.class);
+        if (store == null)
+            return -1;
+        long start = System.currentTimeMillis();
+        long records = Snapshots.write(store, store.keyType(), store.valueType(), fileFor(asset));
+        if (LOG.isDebugEnabled())
+            LOG.debug("Wrote " + records + " records of " + asset.fullName() + " in " + (System.currentTimeMillis() - start) + " ms");
+        return records;
+    }
+
+    /**
+     * Reload one map from its last snapshot.
+     *
+     * @return the number of records loaded, or -1 if it has no map or no snapshot.
+     */
+    public long restore(@NotNull Asset asset) {
+        ObjectKeyValueStore store = asset.getView(ObjectKeyValueStore.class);
+        File file = fileFor(asset);
+        if (store == null || !file.exists())
+            return -1;
+        return Snapshots.restore(store, file);
+    }
+
+    /**
+     * Load every snapshot under the directory into its map, when that map is empty.
+     *
+     * @return the number of maps loaded.
+     */
+    public int restoreAll(@NotNull AssetTree tree) {
+        return restoreAll(tree, dir, "");
+    }
+
+    private int restoreAll(@NotNull AssetTree tree, @NotNull File dir, @NotNull String prefix) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return 0;
+        int count = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                count += restoreAll(tree, file, prefix + name + "/");
+                continue;
+            }
+            if (!name.endsWith(SUFFIX) || name.startsWith("."))
+                continue;
+            name = prefix + name.substring(0, name.length() - SUFFIX.length());
+            String fullName = name.equals(mount.name()) && prefix.isEmpty()
+                    ? mount.fullName()
+                    : mount.fullName() + "/" + name;
+            try {
+                Class[] types = Snapshots.types(file);
+                if (types == null) {
+                    LOG.warn("Ignoring " + file + " as it is not a snapshot");
+                    continue;
+                }
+                tree.acquireMap(fullName, types[0], types[1]);
+                ObjectKeyValueStore store = tree.getAsset(fullName).getView(ObjectKeyValueStore.class);
+                if (store.longSize() > 0)
+                    continue;
+                long records = Snapshots.restore(store, file);
+                LOG.info("Restored " + records + " records of " + fullName + " from " + file);
+                count++;
+            } catch (Exception e) {
+                LOG.warn("Unable to restore " + fullName + " from " + file, e);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ses != null) {
+            ses.shutdown();
+            ses = null;
+        }
+    }
+}
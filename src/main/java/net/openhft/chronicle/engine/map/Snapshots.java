@@ -0,0 +1,364 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.IORuntimeException;
+import net.openhft.chronicle.bytes.NativeBytesStore;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.SubscriptionKeyValueStore;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.Subscriber;
+import net.openhft.chronicle.wire.BinaryWire;
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static net.openhft.chronicle.core.pool.ClassAliasPool.CLASS_ALIASES;
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+
+/**
+ * Writes the entries of a {@link KeyValueStore} to a compact binary file, and loads them back.
+ * <p>
+ * The store is read a segment at a time while writers carry on.  Where the store has a
+ * subscription, the changes made during the scan are captured and written after it, so
+ * restoring the file gives the store as it was when the snapshot finished.  Otherwise each entry
+ * is as it was when its segment was read.
+ * <p>
+ * Each record is written after its length.  A restore memory maps the file a window at a time,
+ * mapping the next window from the start of the first record which doesn't fit, so a snapshot can
+ * be larger than a single mapping.  Each record is read from its start, found from the length of
+ * the one before, so a reader need not consume exactly the whole of a record.  The entries are loaded in batches with putAll.
+ */
+public enum Snapshots {
+    ;
+
+    static final int MAGIC = 0x43455350; // CESP
+    static final int VERSION = 1;
+    // how much of a file is mapped at once.
+    static final long WINDOW_SIZE = 1L << 30;
+    static final byte END = 0, PUT = 1, REMOVE = 2;
+    static final int BATCH_SIZE = 4096;
+    // written out to the file once this much is buffered.
+    static final int FLUSH_SIZE = 1 << 20;
+
+    @NotNull
+    static Wire wireFor(@NotNull Bytes bytes) {
+        // no field names, only the values.
+        return new BinaryWire(bytes, false, false, true);
+    }
+
+    /**
+     * Write a snapshot of the store to a file, replacing it when complete.
+     *
+     * @return the number of records written.
+     */
+    public static <K, V> long write(@NotNull KeyValueStore<K, ?, V> store, @NotNull Class keyType,
+                                    @NotNull Class valueType, @NotNull File file) throws IORuntimeException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File tmpFile = new File(parent, "." + file.getName() + "." + System.nanoTime());
+
+        Map<K, MapEvent<K, V>> changes = new LinkedHashMap<>();
+        Subscriber<MapEvent<K, V>> capture = e -> {
+            synchronized (changes) {
+                changes.remove(e.key());
+                changes.put(e.key(), copyOf(e));
+            }
+        };
+        KVSSubscription<K, ?, V> subscription = subscriptionOf(store);
+        if (subscription != null)
+            subscription.registerSubscriber(requestContext().type(MapEvent.class).bootstrap(false), capture);
+
+        Bytes<ByteBuffer> bytes = Bytes.elasticByteBuffer();
+        long[] count = {0};
+        try (FileChannel fc = new RandomAccessFile(tmpFile, "rw").getChannel()) {
+            Wire wire = wireFor(bytes);
+            bytes.writeInt(MAGIC);
+            bytes.writeInt(VERSION);
+            long header = startRecord(bytes);
+            wire.write(() -> "keyType").typeLiteral(CLASS_ALIASES.nameFor(keyType))
+                    .write(() -> "valueType").typeLiteral(CLASS_ALIASES.nameFor(valueType));
+            endRecord(bytes, header);
+
+            for (int i = 0, segs = store.segments(); i < segs; i++) {
+                store.entriesFor(i, e -> {
+                    writePut(wire, e.key(), e.value());
+                    count[0]++;
+                    if (bytes.writePosition() >= FLUSH_SIZE)
+                        drain(bytes, fc);
+                });
+                drain(bytes, fc);
+            }
+
+            if (subscription != null) {
+                subscription.unregisterSubscriber(capture);
+                List<MapEvent<K, V>> captured;
+                synchronized (changes) {
+                    captured = new ArrayList<>(changes.values());
+                }
+                for (MapEvent<K, V> e : captured) {
+                    if (e instanceof RemovedEvent) {
+                        long start = startRecord(bytes);
+                        bytes.writeByte(REMOVE);
+                        wire.write(() -> "key").object(e.key());
+                        endRecord(bytes, start);
+                    } else {
+                        writePut(wire, e.key(), e.value());
+                    }
+                    count[0]++;
+                }
+            }
+            long end = startRecord(bytes);
+            bytes.writeByte(END);
+            endRecord(bytes, end);
+            drain(bytes, fc);
+            fc.force(true);
+
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+
+        } catch (InvalidSubscriberException e) {
+            throw new AssertionError(e);
+
+        } finally {
+            if (subscription != null)
+                subscription.unregisterSubscriber(capture);
+            bytes.release();
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        return count[0];
+    }
+
+    @Nullable
+    private static <K, V> KVSSubscription<K, ?, V> subscriptionOf(@NotNull KeyValueStore<K, ?, V> store) {
+        if (!(store instanceof SubscriptionKeyValueStore))
+            return null;
+        try {
+            return ((SubscriptionKeyValueStore<K, ?, V>) store).subscription(true);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    // events can carry buffers which are reused once the event has been handled.
+    @NotNull
+    private static <K, V> MapEvent<K, V> copyOf(@NotNull MapEvent<K, V> e) {
+        V value = e.value();
+        if (e instanceof RemovedEvent)
+            return RemovedEvent.of(e.assetName(), e.key(), null);
+        if (value instanceof BytesStore)
+            value = (V) ((BytesStore) value).copy();
+        return InsertedEvent.of(e.assetName(), e.key(), value);
+    }
+
+    private static void writePut(@NotNull Wire wire, Object key, Object value) {
+        Bytes<?> bytes = wire.bytes();
+        long start = startRecord(bytes);
+        bytes.writeByte(PUT);
+        wire.write(() -> "key").object(key)
+                .write(() -> "value").object(value);
+        endRecord(bytes, start);
+    }
+
+    // the length is filled in by endRecord.
+    private static long startRecord(@NotNull Bytes<?> bytes) {
+        long start = bytes.writePosition();
+        bytes.writeInt(0);
+        return start;
+    }
+
+    private static void endRecord(@NotNull Bytes<?> bytes, long start) {
+        bytes.writeInt(start, (int) (bytes.writePosition() - start - 4));
+    }
+
+    private static void drain(@NotNull Bytes<ByteBuffer> bytes, @NotNull FileChannel fc) {
+        try {
+            ByteBuffer bb = bytes.underlyingObject();
+            bb.position((int) bytes.readPosition());
+            bb.limit((int) bytes.readLimit());
+            while (bb.remaining() > 0)
+                fc.write(bb);
+            bytes.clear();
+        } catch (IOException e) {
+            throw Jvm.rethrow(e);
+        }
+    }
+
+    /**
+     * @return the key and value types a snapshot was written with, or null if it isn't one.
+     */
+    @Nullable
+    public static Class[] types(@NotNull File file) throws IORuntimeException {
+        return read(file, WINDOW_SIZE, (records, types) -> null);
+    }
+
+    /**
+     * Load a snapshot into a store, adding to or replacing what it holds.
+     *
+     * @return the number of records loaded.
+     */
+    public static <K, V> long restore(@NotNull KeyValueStore<K, ?, V> store, @NotNull File file) throws IORuntimeException {
+        return restore(store, file, WINDOW_SIZE);
+    }
+
+    static <K, V> long restore(@NotNull KeyValueStore<K, ?, V> store, @NotNull File file, long windowSize) throws IORuntimeException {
+        long[] count = {0};
+        read(file, windowSize, (records, types) -> {
+            Map<K, V> puts = new LinkedHashMap<>();
+            List<K> removes = new ArrayList<>();
+            for (Wire wire; (wire = records.next()) != null; count[0]++) {
+                byte op = wire.bytes().readByte();
+                if (op == END)
+                    break;
+                K key = (K) wire.read(() -> "key").object(types[0]);
+                if (op == PUT) {
+                    if (!removes.isEmpty()) {
+                        store.removeAll(removes);
+                        removes.clear();
+                    }
+                    puts.put(key, (V) wire.read(() -> "value").object(types[1]));
+                    if (puts.size() >= BATCH_SIZE) {
+                        store.putAll(puts);
+                        puts.clear();
+                    }
+                } else {
+                    if (!puts.isEmpty()) {
+                        store.putAll(puts);
+                        puts.clear();
+                    }
+                    removes.add(key);
+                }
+            }
+            if (!puts.isEmpty())
+                store.putAll(puts);
+            if (!removes.isEmpty())
+                store.removeAll(removes);
+            return null;
+        });
+        return count[0];
+    }
+
+    @Nullable
+    private static Class[] read(@NotNull File file, long windowSize, @NotNull SnapshotReader reader) throws IORuntimeException {
+        try (FileChannel fc = new RandomAccessFile(file, "r").getChannel()) {
+            long size = fc.size();
+            if (size < 8)
+                return null;
+            Records records = new Records(file, fc, size, windowSize);
+            Bytes<ByteBuffer> bytes = records.bytes;
+            if (bytes.readInt() != MAGIC)
+                return null;
+            int version = bytes.readInt();
+            if (version != VERSION)
+                throw new IORuntimeException("Unsupported snapshot version " + version + " in " + file);
+            Wire wire = records.next();
+            if (wire == null)
+                throw new IORuntimeException("Truncated snapshot " + file);
+            Class[] types = {wire.read(() -> "keyType").typeLiteral(), wire.read(() -> "valueType").typeLiteral()};
+            reader.read(records, types);
+            return types;
+
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface SnapshotReader {
+        Void read(@NotNull Records records, @NotNull Class[] types) throws IOException;
+    }
+
+    /**
+     * The records of a snapshot, read through a window mapped from the file which moves on when
+     * the next record doesn't fit in it.
+     */
+    static final class Records {
+        @NotNull
+        private final File file;
+        @NotNull
+        private final FileChannel fc;
+        private final long size;
+        private final long windowSize;
+        private long windowStart, windowLength;
+        // where the next record starts in the file, after the magic number and version at first.
+        private long recordEnd = 8;
+        Bytes<ByteBuffer> bytes;
+        private Wire wire;
+
+        Records(@NotNull File file, @NotNull FileChannel fc, long size, long windowSize) throws IOException {
+            this.file = file;
+            this.fc = fc;
+            this.size = size;
+            this.windowSize = windowSize;
+            map(0, 8);
+        }
+
+        private void map(long offset, long atLeast) throws IOException {
+            long length = Math.min(size - offset, Math.max(windowSize, atLeast));
+            MappedByteBuffer mbb = fc.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            bytes = NativeBytesStore.wrap(mbb).bytesForRead();
+            bytes.readLimit(length);
+            wire = wireFor(bytes);
+            windowStart = offset;
+            windowLength = length;
+        }
+
+        /**
+         * @return the wire at the start of the next record, limited to that record, or null at
+         * the end of the file.
+         */
+        @Nullable
+        Wire next() throws IOException {
+            long offset = recordEnd;
+            if (size - offset < 4)
+                return null;
+            if (offset + 4 > windowStart + windowLength)
+                map(offset, 4);
+            int length = bytes.readInt(offset - windowStart);
+            if (length < 0 || size - offset - 4 < length)
+                throw new IORuntimeException("Truncated snapshot " + file);
+            if (offset + 4 + length > windowStart + windowLength)
+                map(offset, 4L + length);
+            long start = offset - windowStart + 4;
+            bytes.readLimit(windowLength);
+            bytes.readPosition(start);
+            bytes.readLimit(start + length);
+            recordEnd = offset + 4 + length;
+            return wire;
+        }
+    }
+}
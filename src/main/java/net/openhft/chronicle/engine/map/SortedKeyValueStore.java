@@ -0,0 +1,79 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An on heap store which keeps its keys in their natural order in a skip list, so a range or a
+ * prefix of the keys can be read a page at a time without reading the whole map.  Keys must be
+ * Comparable, and the keys of a prefix scan Strings.
+ * <p>
+ * Iteration and subscription bootstrap are also in key order.
+ */
+public class SortedKeyValueStore<K, MV, V> extends VanillaKeyValueStore<K, MV, V> {
+    @NotNull
+    private final ConcurrentNavigableMap<K, V> map;
+
+    public SortedKeyValueStore(RequestContext context, Asset asset) {
+        this(asset, new ConcurrentSkipListMap<>());
+    }
+
+    private SortedKeyValueStore(Asset asset, @NotNull ConcurrentNavigableMap<K, V> map) {
+        super(asset, map);
+        this.map = map;
+    }
+
+    @Override
+    public Map<K, V> entriesBetween(@Nullable K fromKey, boolean fromInclusive,
+                                    @Nullable K toKey, boolean toInclusive, int limit) {
+        NavigableMap<K, V> range = fromKey == null
+                ? (toKey == null ? map : map.headMap(toKey, toInclusive))
+                : (toKey == null ? map.tailMap(fromKey, fromInclusive) : map.subMap(fromKey, fromInclusive, toKey, toInclusive));
+        Map<K, V> page = new LinkedHashMap<>();
+        for (Map.Entry<K, V> entry : range.entrySet()) {
+            if (page.size() >= limit)
+                break;
+            page.put(entry.getKey(), entry.getValue());
+        }
+        return page;
+    }
+
+    @Override
+    public Map<K, V> entriesWithPrefix(@NotNull String prefix, @Nullable K afterKey, int limit) {
+        NavigableMap<K, V> tail = afterKey == null
+                ? map.tailMap((K) prefix, true)
+                : map.tailMap(afterKey, false);
+        Map<K, V> page = new LinkedHashMap<>();
+        for (Map.Entry<K, V> entry : tail.entrySet()) {
+            if (page.size() >= limit || !entry.getKey().toString().startsWith(prefix))
+                break;
+            page.put(entry.getKey(), entry.getValue());
+        }
+        return page;
+    }
+}
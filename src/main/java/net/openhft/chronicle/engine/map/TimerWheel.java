@@ -0,0 +1,146 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timer wheel.  Each level has 64 slots, a slot of one level spanning the whole of
+ * the level below, so scheduling and expiring a timer is constant time however many are pending.
+ * Timers due further out than the top level spans wait in it and are placed again as it turns.
+ * <p>
+ * The wheel only moves when {@link #expire(long, int)} is called, which returns at most a given
+ * number of timers, leaving the rest for the next call.  Only ticks which have wholly passed are
+ * turned, so a timer is never returned before its deadline, and at most a tick after it.
+ */
+final class TimerWheel<T extends TimerWheel.Timer> {
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    static final int MASK = SLOTS - 1;
+    static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final ArrayDeque<T>[][] wheels;
+    // timers which are due but haven't been returned yet.
+    private final ArrayDeque<T> due = new ArrayDeque<>();
+    // the next tick to process.
+    private long currentTick;
+    private long size;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickMillis, long nowMillis) {
+        assert tickMillis > 0;
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        this.wheels = new ArrayDeque[LEVELS][SLOTS];
+        for (ArrayDeque<T>[] wheel : wheels)
+            for (int i = 0; i < SLOTS; i++)
+                wheel[i] = new ArrayDeque<>();
+    }
+
+    private static long span(int level) {
+        return 1L << (SLOT_BITS * (level + 1));
+    }
+
+    synchronized void schedule(@NotNull T timer) {
+        size++;
+        place(timer);
+    }
+
+    private void place(@NotNull T timer) {
+        long tick = timer.deadlineMillis / tickMillis;
+        long delta = tick - currentTick;
+        if (delta < 0) {
+            due.add(timer);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= span(level))
+            level++;
+        if (delta >= span(level))
+            // beyond the top level, wait in its furthest slot and be placed again later.
+            tick = currentTick + span(level) - 1;
+        int slot = (int) (tick >>> (SLOT_BITS * level)) & MASK;
+        wheels[level][slot].add(timer);
+    }
+
+    /**
+     * Turn the wheel up to nowMillis and return up to maxTimers which are due.
+     */
+    @NotNull
+    synchronized List<T> expire(long nowMillis, int maxTimers) {
+        List<T> expired = new ArrayList<>();
+        if (size == 0) {
+            currentTick = Math.max(currentTick, nowMillis / tickMillis);
+            return expired;
+        }
+        // the tick nowMillis is in hasn't finished.
+        long target = nowMillis / tickMillis;
+        while (due.size() < maxTimers && currentTick < target) {
+            // higher levels first, so timers cascade all the way down for this tick.
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0)
+                    cascade(level, (int) (currentTick >>> (SLOT_BITS * level)) & MASK);
+            }
+            ArrayDeque<T> slot = wheels[0][(int) currentTick & MASK];
+            due.addAll(slot);
+            slot.clear();
+            currentTick++;
+        }
+        for (T t; expired.size() < maxTimers && (t = due.poll()) != null; )
+            expired.add(t);
+        size -= expired.size();
+        return expired;
+    }
+
+    private void cascade(int level, int slotIndex) {
+        ArrayDeque<T> slot = wheels[level][slotIndex];
+        if (slot.isEmpty())
+            return;
+        List<T> timers = new ArrayList<>(slot);
+        slot.clear();
+        for (T timer : timers)
+            place(timer);
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized void clear() {
+        for (ArrayDeque<T>[] wheel : wheels)
+            for (ArrayDeque<T> slot : wheel)
+                slot.clear();
+        due.clear();
+        size = 0;
+    }
+
+    static class Timer {
+        // may be moved later while scheduled, the wheel places the timer by it when scheduled
+        // and when it cascades.
+        volatile long deadlineMillis;
+
+        Timer(long deadlineMillis) {
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+}
@@ -41,28 +41,41 @@ public class UpdatedEvent<K, V> implements MapEvent<K, V> {
     @Nullable
     private V value;
 
-    private UpdatedEvent(String assetName, K key, V oldValue, V value) {
+    private long version;
+
+    private UpdatedEvent(String assetName, K key, V oldValue, V value, long version) {
         this.assetName = assetName;
         this.key = key;
         this.oldValue = oldValue;
         this.value = value;
+        this.version = version;
     }
 
     @NotNull
     public static <K, V> UpdatedEvent<K, V> of(String assetName, K key, V oldValue, V value) {
-        return new UpdatedEvent<>(assetName, key, oldValue, value);
+        return new UpdatedEvent<>(assetName, key, oldValue, value, 0);
+    }
+
+    @NotNull
+    public static <K, V> UpdatedEvent<K, V> of(String assetName, K key, V oldValue, V value, long version) {
+        return new UpdatedEvent<>(assetName, key, oldValue, value, version);
     }
 
     @NotNull
     @Override
     public <K2, V2> MapEvent<K2, V2> translate(@NotNull Function<K, K2> keyFunction, @NotNull Function<V, V2> valueFunction) {
-        return new UpdatedEvent<>(assetName, keyFunction.apply(key), valueFunction.apply(oldValue), valueFunction.apply(value));
+        return new UpdatedEvent<>(assetName, keyFunction.apply(key), valueFunction.apply(oldValue), valueFunction.apply(value), version);
     }
 
     @NotNull
     @Override
     public <K2, V2> MapEvent<K2, V2> translate(@NotNull BiFunction<K, K2, K2> keyFunction, @NotNull BiFunction<V, V2, V2> valueFunction) {
-        return new UpdatedEvent<>(assetName, keyFunction.apply(key, null), valueFunction.apply(oldValue, null), valueFunction.apply(value, null));
+        return new UpdatedEvent<>(assetName, keyFunction.apply(key, null), valueFunction.apply(oldValue, null), valueFunction.apply(value, null), version);
+    }
+
+    @Override
+    public long version() {
+        return version;
     }
 
     @Override
@@ -116,6 +129,7 @@ public class UpdatedEvent<K, V> implements MapEvent<K, V> {
                 ", key=" + key +
                 ", oldValue=" + oldValue +
                 ", value=" + value +
+                (version == 0 ? "" : ", version=" + version) +
                 '}';
     }
 
@@ -125,6 +139,7 @@ public class UpdatedEvent<K, V> implements MapEvent<K, V> {
         key = (K) wire.read(MapEventFields.key).object(Object.class);
         oldValue = (V) wire.read(MapEventFields.oldValue).object(Object.class);
         value = (V) wire.read(MapEventFields.value).object(Object.class);
+        wire.read(MapEventFields.version).int64(x -> version = x);
     }
 
     @Override
@@ -133,5 +148,6 @@ public class UpdatedEvent<K, V> implements MapEvent<K, V> {
         wire.write(MapEventFields.key).object(key);
         wire.write(MapEventFields.oldValue).object(oldValue);
         wire.write(MapEventFields.value).object(value);
+        wire.write(MapEventFields.version).int64(version);
     }
 }
@@ -17,6 +17,8 @@
 package net.openhft.chronicle.engine.map;
 
 import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.set.EntrySetView;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.AssetNotFoundException;
@@ -24,6 +26,7 @@ import net.openhft.chronicle.engine.api.tree.RequestContext;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.Map.Entry;
 
 /**
@@ -44,6 +47,16 @@ public class VanillaEntrySetView<K, MV, V> extends AbstractCollection<Entry<K, V
         return mapView.underlying().entrySetIterator();
     }
 
+    @Override
+    public int segments() {
+        return mapView.underlying().segments();
+    }
+
+    @Override
+    public void forEachInSegment(int segment, @NotNull SubscriptionConsumer<Entry<K, V>> consumer) throws InvalidSubscriberException {
+        mapView.underlying().entriesFor(segment, e -> consumer.accept(new SimpleEntry<>(e.key(), e.value())));
+    }
+
     @Override
     public int size() {
         return Math.min(Integer.MAX_VALUE, mapView.size());
@@ -0,0 +1,281 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.map.FieldIndex;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes on fields of the values, maintained from the events of the asset's subscription.
+ * <p>
+ * Each index maps a field value to the keys which have it, in a HashMap for a hash index and a
+ * TreeMap for a sorted index.  Candidates are checked against the store on lookup, so an entry
+ * changed since its event was indexed is not returned.  Fields are read by reflection and a null
+ * field is not indexed.
+ */
+public class VanillaFieldIndex<K, V> implements FieldIndex<K, V>, EventConsumer<K, V>, MetricsSource {
+    // approximate size of a map entry, its field value and the set of keys.
+    private static final int VALUE_OVERHEAD = 120;
+    // approximate size of a key's node in the set of keys.
+    private static final int KEY_OVERHEAD = 48;
+
+    private final Map<String, Index<K>> indexes = new LinkedHashMap<>();
+    @NotNull
+    private final KeyValueStore<K, ?, V> kvStore;
+    private long updates = 0, updateNanos = 0;
+
+    public VanillaFieldIndex(@NotNull RequestContext context, @NotNull Asset asset) {
+        this(asset.acquireView(ObjectKeyValueStore.class, context),
+                asset.acquireView(ObjectKVSSubscription.class, context),
+                context.hashIndexes(), context.sortedIndexes());
+    }
+
+    VanillaFieldIndex(@NotNull KeyValueStore<K, ?, V> kvStore, @NotNull KVSSubscription<K, ?, V> subscription,
+                      @Nullable String hashFields, @Nullable String sortedFields) {
+        this.kvStore = kvStore;
+        addIndexes(hashFields, false);
+        addIndexes(sortedFields, true);
+        if (indexes.isEmpty())
+            throw new IllegalArgumentException("No fields to index, set hashIndexes or sortedIndexes");
+
+        subscription.registerDownstream(this);
+        try {
+            for (int i = 0, segs = kvStore.segments(); i < segs; i++)
+                kvStore.entriesFor(i, e -> add(e.key(), e.value()));
+        } catch (InvalidSubscriberException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the value compared by the indexes, so a field can be looked up with an enum or its
+     * name, or with a number of any type.
+     */
+    @Nullable
+    static Object normalize(@Nullable Object value) {
+        if (value instanceof Enum)
+            return ((Enum) value).name();
+        if (value instanceof CharSequence)
+            return value.toString();
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return ((Number) value).longValue();
+        if (value instanceof Float || value instanceof Double) {
+            double d = ((Number) value).doubleValue();
+            return d == (long) d ? (Object) (long) d : (Object) d;
+        }
+        return value;
+    }
+
+    /**
+     * the order of a sorted index, in which whole numbers, held as longs, and other numbers, held
+     * as doubles, are compared by value.
+     */
+    static int compare(@NotNull Object a, @NotNull Object b) {
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass())
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private void addIndexes(@Nullable String fields, boolean sorted) {
+        if (fields == null)
+            return;
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (!field.isEmpty())
+                indexes.put(field, new Index<>(field, sorted));
+        }
+    }
+
+    @Override
+    public void notifyEvent(@NotNull MapEvent<K, V> changeEvent) {
+        long start = System.nanoTime();
+        K key = changeEvent.key();
+        V oldValue = changeEvent.oldValue();
+        V value = changeEvent.value();
+        synchronized (this) {
+            if (oldValue != null)
+                remove(key, oldValue);
+            if (value != null)
+                add(key, value);
+            updates++;
+            updateNanos += System.nanoTime() - start;
+        }
+    }
+
+    synchronized void add(@NotNull K key, @NotNull V value) {
+        for (Index<K> index : indexes.values())
+            index.add(key, value);
+    }
+
+    synchronized void remove(@NotNull K key, @NotNull V value) {
+        for (Index<K> index : indexes.values())
+            index.remove(key, value);
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value) {
+        Index<K> index = index(field);
+        Object fieldValue = normalize(value);
+        List<K> candidates;
+        synchronized (this) {
+            Set<K> keys = index.keysByValue.get(fieldValue);
+            candidates = keys == null ? Collections.emptyList() : new ArrayList<>(keys);
+        }
+        Map<K, V> entries = new LinkedHashMap<>();
+        for (K key : candidates) {
+            V current = kvStore.get(key);
+            if (current != null && fieldValue.equals(index.fieldValue(current)))
+                entries.put(key, current);
+        }
+        return entries;
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> entriesWhereBetween(@NotNull String field, @Nullable Object fromValue, @Nullable Object toValue) {
+        Index<K> index = index(field);
+        if (!index.sorted)
+            throw new UnsupportedOperationException("The index on " + field + " is not sorted, add it to the sortedIndexes");
+        Object from = normalize(fromValue);
+        Object to = normalize(toValue);
+        List<K> candidates = new ArrayList<>();
+        synchronized (this) {
+            NavigableMap<Object, Set<K>> sorted = (NavigableMap<Object, Set<K>>) index.keysByValue;
+            NavigableMap<Object, Set<K>> range = from == null
+                    ? (to == null ? sorted : sorted.headMap(to, false))
+                    : (to == null ? sorted.tailMap(from, true) : sorted.subMap(from, true, to, false));
+            for (Set<K> keys : range.values())
+                candidates.addAll(keys);
+        }
+        Map<K, V> entries = new LinkedHashMap<>();
+        for (K key : candidates) {
+            V current = kvStore.get(key);
+            if (current == null)
+                continue;
+            Object fieldValue = index.fieldValue(current);
+            if (fieldValue != null
+                    && (from == null || compare(fieldValue, from) >= 0)
+                    && (to == null || compare(fieldValue, to) < 0))
+                entries.put(key, current);
+        }
+        return entries;
+    }
+
+    @NotNull
+    private Index<K> index(@NotNull String field) {
+        Index<K> index = indexes.get(field);
+        if (index == null)
+            throw new UnsupportedOperationException("No index on " + field + ", add it to the hashIndexes or sortedIndexes");
+        return index;
+    }
+
+    @Override
+    public synchronized void addMetrics(@NotNull Map<String, String> metrics) {
+        long values = 0, keys = 0;
+        for (Index<K> index : indexes.values()) {
+            values += index.keysByValue.size();
+            keys += index.keys;
+        }
+        metrics.put("fieldIndexes", "" + indexes.size());
+        metrics.put("fieldIndexValues", "" + values);
+        metrics.put("fieldIndexKeys", "" + keys);
+        metrics.put("fieldIndexBytes", "" + (values * VALUE_OVERHEAD + keys * KEY_OVERHEAD));
+        metrics.put("fieldIndexUpdates", "" + updates);
+        metrics.put("fieldIndexUpdateAvgNanos", "" + (updates == 0 ? 0 : updateNanos / updates));
+    }
+
+    @Override
+    public void onEndOfSubscription() {
+        synchronized (this) {
+            for (Index<K> index : indexes.values()) {
+                index.keysByValue.clear();
+                index.keys = 0;
+            }
+        }
+    }
+
+    static final class Index<K> {
+        @NotNull
+        final String field;
+        final boolean sorted;
+        @NotNull
+        final Map<Object, Set<K>> keysByValue;
+        private final Map<Class, Field> fieldByClass = new ConcurrentHashMap<>();
+        long keys = 0;
+
+        Index(@NotNull String field, boolean sorted) {
+            this.field = field;
+            this.sorted = sorted;
+            this.keysByValue = sorted ? new TreeMap<>(VanillaFieldIndex::compare) : new HashMap<>();
+        }
+
+        @Nullable
+        Object fieldValue(@NotNull Object value) {
+            Field f = fieldByClass.computeIfAbsent(value.getClass(), this::lookupField);
+            try {
+                return normalize(f.get(value));
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @NotNull
+        private Field lookupField(@NotNull Class type) {
+            for (Class c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                try {
+                    Field f = c.getDeclaredField(field);
+                    f.setAccessible(true);
+                    return f;
+                } catch (NoSuchFieldException ignored) {
+                    // try the super class.
+                }
+            }
+            throw new IllegalArgumentException(type.getName() + " has no field " + field);
+        }
+
+        void add(@NotNull K key, @NotNull Object value) {
+            Object fieldValue = fieldValue(value);
+            if (fieldValue != null && keysByValue.computeIfAbsent(fieldValue, v -> new LinkedHashSet<>()).add(key))
+                keys++;
+        }
+
+        void remove(@NotNull K key, @NotNull Object value) {
+            Object fieldValue = fieldValue(value);
+            if (fieldValue == null)
+                return;
+            Set<K> keySet = keysByValue.get(fieldValue);
+            if (keySet != null && keySet.remove(key)) {
+                keys--;
+                if (keySet.isEmpty())
+                    keysByValue.remove(fieldValue);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package net.openhft.chronicle.engine.map;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.map.KeyValueStore.Entry;
 import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.SegmentCursor.SegmentReader;
 import net.openhft.chronicle.engine.api.pubsub.*;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
@@ -112,7 +113,8 @@ public class VanillaKVSSubscription<K, MV, V> implements ObjectKVSSubscription<K
         return topicSubscribers.size();
     }
 
-    private boolean hasSubscribers() {
+    @Override
+    public boolean hasSubscribers() {
         return hasSubscribers || asset.hasChildren();
     }
 
@@ -169,8 +171,7 @@ public class VanillaKVSSubscription<K, MV, V> implements ObjectKVSSubscription<K
             if (bootstrap != Boolean.FALSE && kvStore != null) {
                 Subscriber<MapEvent<K, V>> sub = (Subscriber<MapEvent<K, V>>) subscriber;
                 try {
-                    for (int i = 0; i < kvStore.segments(); i++)
-                        kvStore.entriesFor(i, sub::onMessage);
+                    bootstrap(rc, kvStore::entriesFor, sub::onMessage);
                 } catch (InvalidSubscriberException e) {
                     subscribers.remove(subscriber);
                 }
@@ -180,10 +181,9 @@ public class VanillaKVSSubscription<K, MV, V> implements ObjectKVSSubscription<K
             keySubscribers.add(sub);
             if (bootstrap != Boolean.FALSE && kvStore != null) {
                 try {
-                    for (int i = 0; i < kvStore.segments(); i++)
-                        kvStore.keysFor(i, sub::onMessage);
+                    bootstrap(rc, kvStore::keysFor, sub::onMessage);
                 } catch (InvalidSubscriberException e) {
-                    subscribers.remove(subscriber);
+                    keySubscribers.remove(sub);
                 }
             }
         }
@@ -197,8 +197,7 @@ public class VanillaKVSSubscription<K, MV, V> implements ObjectKVSSubscription<K
         keySubscribers.add(subscriber);
         if (bootstrap != Boolean.FALSE && kvStore != null) {
             try {
-                for (int i = 0; i < kvStore.segments(); i++)
-                    kvStore.keysFor(i, subscriber::onMessage);
+                bootstrap(rc, kvStore::keysFor, subscriber::onMessage);
             } catch (InvalidSubscriberException e) {
                 keySubscribers.remove(subscriber);
             }
@@ -212,8 +211,7 @@ public class VanillaKVSSubscription<K, MV, V> implements ObjectKVSSubscription<K
         topicSubscribers.add((TopicSubscriber<K, V>) subscriber);
         if (bootstrap != Boolean.FALSE && kvStore != null) {
             try {
-                for (int i = 0; i < kvStore.segments(); i++)
-                    kvStore.entriesFor(i, e -> subscriber.onMessage(e.key(), e.value()));
+                bootstrap(rc, kvStore::entriesFor, e -> subscriber.onMessage(e.key(), e.value()));
             } catch (InvalidSubscriberException dontAdd) {
                 topicSubscribers.remove(subscriber);
             }
@@ -221,6 +219,20 @@ public class VanillaKVSSubscription<K, MV, V> implements ObjectKVSSubscription<K
         hasSubscribers = true;
     }
 
+    private <T> void bootstrap(@NotNull RequestContext rc,
+                               @NotNull SegmentReader<T> reader,
+                               @NotNull SubscriptionConsumer<T> consumer) throws InvalidSubscriberException {
+        int segments = kvStore.segments();
+        // parallel scans buffer entries, which reused values don't survive.
+        if (rc.parallelBootstrap() == Boolean.TRUE && segments > 1 && !kvStore.reusesValues()) {
+            ParallelBootstrap.bootstrap(asset.fullName(), segments, reader, consumer);
+
+        } else {
+            for (int i = 0; i < segments; i++)
+                reader.readSegment(i, consumer);
+        }
+    }
+
     @Override
     public void registerDownstream(EventConsumer<K, V> subscription) {
         downstream.add(subscription);
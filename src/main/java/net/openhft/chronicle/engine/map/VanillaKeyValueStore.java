@@ -35,7 +35,7 @@ import java.util.concurrent.ConcurrentMap;
  * Created by peter on 22/05/15.
  */
 public class VanillaKeyValueStore<K, MV, V> implements AuthenticatedKeyValueStore<K, MV, V> {
-    private final ConcurrentMap<K, V> map = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, V> map;
     private Asset asset;
 
     public VanillaKeyValueStore(RequestContext context, Asset asset) {
@@ -43,7 +43,12 @@ public class VanillaKeyValueStore<K, MV, V> implements AuthenticatedKeyValueStor
     }
 
     public VanillaKeyValueStore(Asset asset) {
+        this(asset, new ConcurrentHashMap<>());
+    }
+
+    protected VanillaKeyValueStore(Asset asset, @NotNull ConcurrentMap<K, V> map) {
         this.asset = asset;
+        this.map = map;
     }
 
     @Override
@@ -61,6 +66,36 @@ public class VanillaKeyValueStore<K, MV, V> implements AuthenticatedKeyValueStor
         return map.get(key);
     }
 
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        map.putAll(entries);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return map.putIfAbsent(key, value);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return map.replace(key, value);
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        return map.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        return map.remove(key, value);
+    }
+
     @Override
     public long longSize() {
         return map.size();
@@ -100,7 +135,7 @@ public class VanillaKeyValueStore<K, MV, V> implements AuthenticatedKeyValueStor
 
     @Override
     public boolean containsValue(final V value) {
-        throw new UnsupportedOperationException("todo");
+        return map.containsValue(value);
     }
 
     @Override
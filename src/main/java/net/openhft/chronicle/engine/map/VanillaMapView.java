@@ -17,9 +17,17 @@
 package net.openhft.chronicle.engine.map;
 
 import net.openhft.chronicle.core.annotation.NotNull;
+import net.openhft.chronicle.core.util.SerializableBiFunction;
+import net.openhft.chronicle.core.util.SerializableFunction;
+import net.openhft.chronicle.core.util.SerializableUpdater;
+import net.openhft.chronicle.core.util.SerializableUpdaterWithArg;
+import net.openhft.chronicle.engine.api.map.EntryPredicate;
+import net.openhft.chronicle.engine.api.map.FieldIndex;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.map.MapEvent;
 import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.map.ValueIndex;
+import net.openhft.chronicle.engine.api.map.VersionedValue;
 import net.openhft.chronicle.engine.api.pubsub.Subscriber;
 import net.openhft.chronicle.engine.api.pubsub.TopicSubscriber;
 import net.openhft.chronicle.engine.api.set.EntrySetView;
@@ -29,7 +37,11 @@ import net.openhft.chronicle.engine.api.tree.RequestContext;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
 
@@ -46,6 +58,10 @@ public class VanillaMapView<K, MV, V> extends AbstractMap<K, V> implements MapVi
 
     public VanillaMapView(@org.jetbrains.annotations.NotNull RequestContext context, Asset asset, KeyValueStore<K, MV, V> kvStore) {
         this(context.keyType(), context.valueType(), asset, kvStore, context.putReturnsNull() != Boolean.FALSE, context.removeReturnsNull() != Boolean.FALSE);
+        if (context.valueIndex() == Boolean.TRUE)
+            asset.acquireView(ValueIndex.class, context);
+        if (context.hashIndexes() != null || context.sortedIndexes() != null)
+            asset.acquireView(FieldIndex.class, context);
     }
 
     public VanillaMapView(Class keyClass, Class valueType, Asset asset, KeyValueStore<K, MV, V> kvStore, boolean putReturnsNull, boolean removeReturnsNull) {
@@ -79,6 +95,26 @@ public class VanillaMapView<K, MV, V> extends AbstractMap<K, V> implements MapVi
             throw new NullPointerException("value can not be null");
     }
 
+    @Override
+    public boolean containsValue(final Object value) {
+        checkValue(value);
+        if (!valueType.isInstance(value))
+            return false;
+        ValueIndex<K, V> valueIndex = asset.getView(ValueIndex.class);
+        return valueIndex == null
+                ? kvStore.containsValue((V) value)
+                : valueIndex.containsValue((V) value);
+    }
+
+    @Override
+    public Set<K> keysForValue(V value) {
+        checkValue(value);
+        ValueIndex<K, V> valueIndex = asset.getView(ValueIndex.class);
+        return valueIndex == null
+                ? kvStore.keysForValue(value)
+                : valueIndex.keysForValue(value);
+    }
+
     @Override
     public Asset asset() {
         return asset;
@@ -110,6 +146,169 @@ public class VanillaMapView<K, MV, V> extends AbstractMap<K, V> implements MapVi
         }
     }
 
+    @Override
+    public void put(K key, V value, long timeToLive, @NotNull TimeUnit unit) {
+        checkKey(key);
+        checkValue(value);
+        kvStore.put(key, value, timeToLive, unit);
+    }
+
+    @Nullable
+    @Override
+    public VersionedValue<V> getVersioned(K key) {
+        checkKey(key);
+        return kvStore.getVersioned(key);
+    }
+
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        checkKey(key);
+        checkValue(value);
+        return kvStore.putIfVersion(key, value, version);
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        checkKey(key);
+        return kvStore.removeIfVersion(key, version);
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            checkKey(entry.getKey());
+            checkValue(entry.getValue());
+        }
+        kvStore.putAll(m);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        keys.forEach(this::checkKey);
+        return kvStore.getAll(keys);
+    }
+
+    @Override
+    public Map<K, V> entriesBetween(@Nullable K fromKey, boolean fromInclusive,
+                                    @Nullable K toKey, boolean toInclusive, int limit) {
+        if (fromKey != null)
+            checkKey(fromKey);
+        if (toKey != null)
+            checkKey(toKey);
+        return kvStore.entriesBetween(fromKey, fromInclusive, toKey, toInclusive, limit);
+    }
+
+    @Override
+    public Map<K, V> entriesWithPrefix(@NotNull String prefix, @Nullable K afterKey, int limit) {
+        if (afterKey != null)
+            checkKey(afterKey);
+        return kvStore.entriesWithPrefix(prefix, afterKey, limit);
+    }
+
+    @Override
+    public <R> Map<K, R> query(@NotNull EntryPredicate<K, V> filter,
+                               @NotNull SerializableFunction<V, R> projection, int limit) {
+        return kvStore.query(filter, projection, limit);
+    }
+
+    @Override
+    public Map<K, V> entriesWhere(@NotNull String field, @NotNull Object value) {
+        checkValue(value);
+        FieldIndex<K, V> fieldIndex = asset.getView(FieldIndex.class);
+        return fieldIndex == null
+                ? kvStore.entriesWhere(field, value)
+                : fieldIndex.entriesWhere(field, value);
+    }
+
+    @Override
+    public Map<K, V> entriesWhereBetween(@NotNull String field, @Nullable Object fromValue, @Nullable Object toValue) {
+        FieldIndex<K, V> fieldIndex = asset.getView(FieldIndex.class);
+        return fieldIndex == null
+                ? kvStore.entriesWhereBetween(field, fromValue, toValue)
+                : fieldIndex.entriesWhereBetween(field, fromValue, toValue);
+    }
+
+    @Override
+    public <R> R apply(K key, @NotNull SerializableFunction<V, R> function) {
+        checkKey(key);
+        return kvStore.applyTo(key, null, null, (v, a) -> function.apply(v), null);
+    }
+
+    @Override
+    public void asyncUpdate(K key, @NotNull SerializableFunction<V, V> updateFunction) {
+        checkKey(key);
+        kvStore.update(key, (v, a) -> updateFunction.apply(v), null);
+    }
+
+    @Override
+    public <R> R syncUpdate(K key, @NotNull SerializableFunction<V, V> updateFunction, @NotNull SerializableFunction<V, R> returnFunction) {
+        checkKey(key);
+        return kvStore.applyTo(key, (v, a) -> updateFunction.apply(v), null, (v, a) -> returnFunction.apply(v), null);
+    }
+
+    @Override
+    public <T, R> R apply(K key, @NotNull SerializableBiFunction<V, T, R> function, T argument) {
+        checkKey(key);
+        return kvStore.applyTo(key, null, null, function, argument);
+    }
+
+    @Override
+    public <T> void asyncUpdate(K key, @NotNull SerializableBiFunction<V, T, V> updateFunction, T argument) {
+        checkKey(key);
+        kvStore.update(key, updateFunction, argument);
+    }
+
+    @Override
+    public <T, RT, R> R syncUpdate(K key, @NotNull SerializableBiFunction<V, T, V> updateFunction, T updateArgument,
+                                   @NotNull SerializableBiFunction<V, RT, R> returnFunction, RT returnArgument) {
+        checkKey(key);
+        return kvStore.applyTo(key, updateFunction, updateArgument, returnFunction, returnArgument);
+    }
+
+    @Override
+    public <R> R apply(@NotNull SerializableFunction<ConcurrentMap<K, V>, R> function) {
+        return kvStore.applyToMap((m, a) -> function.apply(m), null);
+    }
+
+    @Override
+    public void asyncUpdate(@NotNull SerializableUpdater<ConcurrentMap<K, V>> updateFunction) {
+        kvStore.updateMap((m, a) -> updateFunction.accept(m), null);
+    }
+
+    @Override
+    public <R> R syncUpdate(@NotNull SerializableUpdater<ConcurrentMap<K, V>> updateFunction,
+                            @NotNull SerializableFunction<ConcurrentMap<K, V>, R> returnFunction) {
+        return kvStore.applyToMap((m, a) -> {
+            updateFunction.accept(m);
+            return returnFunction.apply(m);
+        }, null);
+    }
+
+    @Override
+    public <A, R> R apply(@NotNull SerializableBiFunction<ConcurrentMap<K, V>, A, R> function, A arg) {
+        return kvStore.applyToMap(function, arg);
+    }
+
+    @Override
+    public <A> void asyncUpdate(@NotNull SerializableUpdaterWithArg<ConcurrentMap<K, V>, A> updateFunction, A arg) {
+        kvStore.updateMap(updateFunction, arg);
+    }
+
+    @Override
+    public <UA, RA, R> R syncUpdate(@NotNull SerializableUpdaterWithArg<ConcurrentMap<K, V>, UA> updateFunction, UA ua,
+                                    @NotNull SerializableBiFunction<ConcurrentMap<K, V>, RA, R> returnFunction, RA ra) {
+        return kvStore.applyToMap((m, a) -> {
+            updateFunction.accept(m, ua);
+            return returnFunction.apply(m, ra);
+        }, null);
+    }
+
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        keys.forEach(this::checkKey);
+        kvStore.removeAll(keys);
+    }
+
     @Override
     public void set(K key, V value) {
         checkKey(key);
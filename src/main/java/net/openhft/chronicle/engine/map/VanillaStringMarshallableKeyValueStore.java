@@ -26,24 +26,36 @@ import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.AssetNotFoundException;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
+import net.openhft.chronicle.engine.server.WireType;
+import net.openhft.chronicle.threads.HandlerPriority;
+import net.openhft.chronicle.threads.api.EventHandler;
+import net.openhft.chronicle.threads.api.EventLoop;
+import net.openhft.chronicle.threads.api.InvalidEventHandlerException;
 import net.openhft.chronicle.wire.Marshallable;
 import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import static net.openhft.chronicle.engine.map.Buffers.BUFFERS;
+import static net.openhft.chronicle.engine.map.VanillaStringStringKeyValueStore.stream;
 
 /**
  * Created by peter on 25/05/15.
  */
 public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> implements StringMarshallableKeyValueStore<V> {
+    private static final Logger LOG = LoggerFactory.getLogger(VanillaStringMarshallableKeyValueStore.class);
     private static final ClassLocal<Constructor> CONSTRUCTORS = ClassLocal.withInitial(c -> {
         try {
             Constructor con = c.getDeclaredConstructor();
@@ -59,18 +71,36 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
     private SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore;
     private Asset asset;
     private Class<V> valueType;
+    // when set, bootstraps and events decode into reused instances.
+    private final boolean flyweight;
+    @Nullable
+    private final ThreadLocal<ReusedValues> eventValues;
+    // the storage codec declared by the mount point, if any.
+    @Nullable
+    private final WireType codec;
 
     public VanillaStringMarshallableKeyValueStore(RequestContext context, Asset asset,
                                                   SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore) throws AssetNotFoundException {
         this(asset.acquireView(ObjectKVSSubscription.class, context), asset, context.valueType(),
-                kvStore, context.wireType());
+                kvStore, codecFor(context, asset), context.flyweightValues() == Boolean.TRUE);
+        if (codec != null)
+            migrateInBackground();
+    }
+
+    @NotNull
+    private static Function<Bytes, Wire> codecFor(@NotNull RequestContext context, @NotNull Asset asset) {
+        WireType codec = asset.findView(WireType.class);
+        return codec == null ? context.wireType() : codec;
     }
 
     VanillaStringMarshallableKeyValueStore(ObjectKVSSubscription<String, V, V> subscriptions, Asset asset, Class valueType,
                                            SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore,
-                                           Function<Bytes, Wire> wireType) {
+                                           Function<Bytes, Wire> wireType, boolean flyweight) {
         this.asset = asset;
         this.valueType = valueType;
+        this.flyweight = flyweight;
+        this.eventValues = flyweight ? ThreadLocal.withInitial(() -> new ReusedValues(valueType)) : null;
+        this.codec = asset.findView(WireType.class) == wireType ? (WireType) wireType : null;
         valueToBytes = toBytes(valueType, wireType);
         bytesToValue = fromBytes(valueType, wireType);
         this.kvStore = kvStore;
@@ -79,8 +109,20 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
         RawKVSSubscription<String, Bytes, BytesStore> rawSubscription =
                 (RawKVSSubscription<String, Bytes, BytesStore>) kvStore.subscription(true);
         this.subscriptions = subscriptions;
-        rawSubscription.registerDownstream(mpe ->
-                subscriptions.notifyEvent(mpe.translate(s -> s, b -> bytesToValue.apply(b, null))));
+        subscriptions.setKvStore(this);
+        rawSubscription.registerDownstream(mpe -> {
+            if (subscriptions.hasSubscribers())
+                subscriptions.notifyEvent(translate(mpe));
+        });
+    }
+
+    @NotNull
+    private MapEvent<String, V> translate(@NotNull MapEvent<String, BytesStore> mpe) {
+        if (!flyweight)
+            return mpe.translate(s -> s, b -> bytesToValue.apply(b, null));
+        // events are delivered on the thread which made the change.
+        ReusedValues values = eventValues.get().reset();
+        return mpe.translate(s -> s, b -> b == null ? null : bytesToValue.apply(b, values.next()));
     }
 
     static <T> BiFunction<T, Bytes, Bytes> toBytes(Class type, Function<Bytes, Wire> wireType) {
@@ -105,21 +147,90 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
         return t;
     }
 
-    private <T> BiFunction<BytesStore, T, T> fromBytes(Class type, Function<Bytes, Wire> wireType) {
+    static <T> BiFunction<BytesStore, T, T> fromBytes(Class type, Function<Bytes, Wire> wireType) {
         if (type == String.class)
-            return (t, bytes) -> (T) (bytes == null ? null : bytes.toString());
-        if (Marshallable.class.isAssignableFrom(type))
+            return (bytes, t) -> (T) (bytes == null ? null : bytes.toString());
+        if (Marshallable.class.isAssignableFrom(type)) {
+            // values written before a change of codec are still readable.
+            Function<Bytes, Wire> reader = wireType instanceof WireType
+                    ? ((WireType) wireType).readingAny()
+                    : wireType;
             return (bytes, t) -> {
                 if (bytes == null)
                     return null;
 
                 t = acquireInstance(type, t);
-                ((Marshallable) t).readMarshallable(wireType.apply(bytes.bytesForRead()));
+                ((Marshallable) t).readMarshallable(reader.apply(bytes.bytesForRead()));
                 return t;
             };
+        }
         throw new UnsupportedOperationException("todo");
     }
 
+    /**
+     * Re-encode the values in a segment which were not written with the declared codec.  Each
+     * value is only replaced if it hasn't changed in the meantime.
+     *
+     * @param segment to migrate
+     * @return the number of values re-encoded.
+     */
+    int migrate(int segment) throws InvalidSubscriberException {
+        if (codec == null)
+            return 0;
+        List<String> keys = new ArrayList<>();
+        kvStore.entriesFor(segment, e -> {
+            WireType type = WireType.typeOf(e.value());
+            if (type != null && type != codec)
+                keys.add(e.key());
+        });
+        int count = 0;
+        Buffers b = BUFFERS.get();
+        for (String key : keys) {
+            BytesStore stored = kvStore.getUsing(key, b.valueBuffer);
+            if (stored == null)
+                continue;
+            WireType type = WireType.typeOf(stored);
+            if (type == null || type == codec)
+                continue;
+            V value = bytesToValue.apply(stored, null);
+            if (kvStore.replaceIfEqual(key, stored, bytesFor(b.valueBuffer2, value)))
+                count++;
+        }
+        return count;
+    }
+
+    private void migrateInBackground() {
+        EventLoop eventLoop = asset.findOrCreateView(EventLoop.class);
+        if (eventLoop == null)
+            return;
+        eventLoop.addHandler(new EventHandler() {
+            private int segment = 0;
+            private long migrated = 0;
+
+            // one segment per call so the event loop isn't held up.
+            @Override
+            public boolean action() throws InvalidEventHandlerException {
+                if (segment >= kvStore.segments()) {
+                    if (migrated > 0)
+                        LOG.info(asset.fullName() + ": re-encoded " + migrated + " values as " + codec);
+                    throw new InvalidEventHandlerException();
+                }
+                try {
+                    migrated += migrate(segment++);
+                } catch (InvalidSubscriberException e) {
+                    throw new AssertionError(e);
+                }
+                return true;
+            }
+
+            @NotNull
+            @Override
+            public HandlerPriority priority() {
+                return HandlerPriority.MONITOR;
+            }
+        });
+    }
+
     @Override
     public ObjectKVSSubscription<String, V, V> subscription(boolean createIfAbsent) {
         return subscriptions;
@@ -127,19 +238,48 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
 
     @Override
     public boolean put(String key, V value) {
-        Buffers b = BUFFERS.get();
-        Bytes valueBytes = valueToBytes.apply(value, b.valueBuffer);
-        return kvStore.put(key, valueBytes);
+        return kvStore.put(key, bytesFor(BUFFERS.get().valueBuffer, value));
     }
 
     @Override
     public V getAndPut(String key, V value) {
-        Buffers b = BUFFERS.get();
-        Bytes valueBytes = valueToBytes.apply(value, b.valueBuffer);
-        BytesStore retBytes = kvStore.getAndPut(key, valueBytes);
+        BytesStore retBytes = kvStore.getAndPut(key, bytesFor(BUFFERS.get().valueBuffer, value));
+        return retBytes == null ? null : bytesToValue.apply(retBytes, null);
+    }
+
+    @Override
+    public V putIfAbsent(String key, V value) {
+        BytesStore retBytes = kvStore.putIfAbsent(key, bytesFor(BUFFERS.get().valueBuffer, value));
+        return retBytes == null ? null : bytesToValue.apply(retBytes, null);
+    }
+
+    @Override
+    public V replace(String key, V value) {
+        BytesStore retBytes = kvStore.replace(key, bytesFor(BUFFERS.get().valueBuffer, value));
         return retBytes == null ? null : bytesToValue.apply(retBytes, null);
     }
 
+    @Override
+    public boolean replaceIfEqual(String key, V oldValue, V newValue) {
+        Buffers b = BUFFERS.get();
+        return kvStore.replaceIfEqual(key, bytesFor(b.valueBuffer, oldValue), bytesFor(b.valueBuffer2, newValue));
+    }
+
+    @Override
+    public boolean removeIfEqual(String key, V value) {
+        return kvStore.removeIfEqual(key, bytesFor(BUFFERS.get().valueBuffer, value));
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return kvStore.containsKey(key);
+    }
+
+    private Bytes bytesFor(Bytes bytes, V value) {
+        bytes.clear();
+        return valueToBytes.apply(value, bytes);
+    }
+
     @Override
     public boolean remove(String key) {
         return kvStore.remove(key);
@@ -170,34 +310,61 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
 
     @Override
     public void entriesFor(int segment, SubscriptionConsumer<MapEvent<String, V>> kvConsumer) throws InvalidSubscriberException {
-        kvStore.entriesFor(segment, e -> kvConsumer.accept(
-                InsertedEvent.of(asset.fullName(), e.key(), bytesToValue.apply(e.value(), null))));
+        String assetName = asset.fullName();
+        if (flyweight) {
+            V value = acquireInstance(valueType, null);
+            InsertedEvent<String, V> event = InsertedEvent.of(assetName, null, value);
+            kvStore.entriesFor(segment, e -> kvConsumer.accept(
+                    event.set(e.key(), bytesToValue.apply(e.value(), value))));
+        } else {
+            kvStore.entriesFor(segment, e -> kvConsumer.accept(
+                    InsertedEvent.of(assetName, e.key(), bytesToValue.apply(e.value(), null))));
+        }
+    }
+
+    @Override
+    public boolean reusesValues() {
+        return flyweight;
     }
 
     @Override
     public Iterator<Map.Entry<String, V>> entrySetIterator() {
-        // todo optimise
-        List<Map.Entry<String, V>> entries = new ArrayList<>();
-        try {
-            for (int i = 0, seg = segments(); i < seg; i++)
-                entriesFor(i, e -> entries.add(new SimpleEntry<>(e.key(), e.value())));
-        } catch (InvalidSubscriberException e) {
-            throw new AssertionError(e);
-        }
-        return entries.iterator();
+        return stream(kvStore.entrySetIterator())
+                .map(e -> (Map.Entry<String, V>) new SimpleEntry<>(e.getKey(), bytesToValue.apply(e.getValue(), null)))
+                .iterator();
+    }
+
+    @NotNull
+    @Override
+    public Map<String, V> entriesBetween(@Nullable String fromKey, boolean fromInclusive,
+                                         @Nullable String toKey, boolean toInclusive, int limit) {
+        return toValues(kvStore.entriesBetween(fromKey, fromInclusive, toKey, toInclusive, limit));
+    }
+
+    @NotNull
+    @Override
+    public Map<String, V> entriesWithPrefix(@NotNull String prefix, @Nullable String afterKey, int limit) {
+        return toValues(kvStore.entriesWithPrefix(prefix, afterKey, limit));
+    }
+
+    @NotNull
+    private Map<String, V> toValues(@NotNull Map<String, BytesStore> page) {
+        // keeps the page in key order.
+        Map<String, V> values = new LinkedHashMap<>();
+        page.forEach((k, v) -> values.put(k, bytesToValue.apply(v, null)));
+        return values;
     }
 
     @Override
     public Iterator<String> keySetIterator() {
-        // todo optimise
-        List<String> entries = new ArrayList<>();
-        try {
-            for (int i = 0, seg = segments(); i < seg; i++)
-                keysFor(i, entries::add);
-        } catch (InvalidSubscriberException e) {
-            throw new AssertionError(e);
-        }
-        return entries.iterator();
+        return kvStore.keySetIterator();
+    }
+
+    @Override
+    public Iterator<V> valuesIterator() {
+        return stream(kvStore.valuesIterator())
+                .map(bs -> bytesToValue.apply(bs, null))
+                .iterator();
     }
 
     @Override
@@ -207,7 +374,7 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
 
     @Override
     public boolean containsValue(final V value) {
-        throw new UnsupportedOperationException("todo");
+        return kvStore.containsValue(bytesFor(BUFFERS.get().valueBuffer, value));
     }
 
     @Override
@@ -239,4 +406,31 @@ public class VanillaStringMarshallableKeyValueStore<V extends Marshallable> impl
     public void accept(final ReplicationEntry replicationEntry) {
         throw new UnsupportedOperationException("todo");
     }
+
+    /**
+     * The instances one thread decodes events into; an update needs one for the old value and
+     * one for the new.
+     */
+    static final class ReusedValues {
+        private final Object[] values = new Object[2];
+        private final Class type;
+        private int next;
+
+        ReusedValues(Class type) {
+            this.type = type;
+        }
+
+        @NotNull
+        ReusedValues reset() {
+            next = 0;
+            return this;
+        }
+
+        <T> T next() {
+            int i = next++ & 1;
+            if (values[i] == null)
+                values[i] = acquireInstance(type, null);
+            return (T) values[i];
+        }
+    }
 }
@@ -26,17 +26,21 @@ import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.AssetNotFoundException;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
+import net.openhft.chronicle.engine.map.VanillaStringMarshallableKeyValueStore.ReusedValues;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Spliterators;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
 import static net.openhft.chronicle.engine.map.Buffers.BUFFERS;
 
 /**
@@ -48,24 +52,53 @@ public class VanillaStringStringKeyValueStore implements StringStringKeyValueSto
 
     private SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore;
     private Asset asset;
+    // when set, bootstraps and events carry reused views of the stored chars instead of Strings.
+    private final boolean flyweight;
+    @Nullable
+    private final ThreadLocal<ReusedValues> eventViews;
 
     public VanillaStringStringKeyValueStore(RequestContext context, @NotNull Asset asset,
                                             @NotNull SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore) throws AssetNotFoundException {
-        this(asset.acquireView(ObjectKVSSubscription.class, context), asset, kvStore);
+        this(asset.acquireView(ObjectKVSSubscription.class, context), asset, kvStore,
+                context.flyweightValues() == Boolean.TRUE);
     }
 
     VanillaStringStringKeyValueStore(@NotNull ObjectKVSSubscription<String, StringBuilder, String> subscriptions,
                                      @NotNull Asset asset,
-                                     @NotNull SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore) throws AssetNotFoundException {
+                                     @NotNull SubscriptionKeyValueStore<String, Bytes, BytesStore> kvStore,
+                                     boolean flyweight) throws AssetNotFoundException {
         this.asset = asset;
         this.kvStore = kvStore;
+        this.flyweight = flyweight;
+        this.eventViews = flyweight ? ThreadLocal.withInitial(() -> new ReusedValues(BytesCharSequence.class)) : null;
         asset.registerView(ValueReader.class, StringValueReader.BYTES_STORE_TO_STRING);
         RawKVSSubscription<String, Bytes, BytesStore> rawSubscription =
                 (RawKVSSubscription<String, Bytes, BytesStore>) kvStore.subscription(true);
         this.subscriptions = subscriptions;
-        subscriptions.setKvStore(this);
-        rawSubscription.registerDownstream(mpe ->
-                subscriptions.notifyEvent(mpe.translate(s -> s, BytesStoreToString.BYTES_STORE_TO_STRING)));
+        subscriptions.setKvStore(flyweight ? new ViewBootstrap() : this);
+        rawSubscription.registerDownstream(mpe -> {
+            // don't decode values no one will see.
+            if (subscriptions.hasSubscribers())
+                subscriptions.notifyEvent(translate(mpe));
+        });
+    }
+
+    @NotNull
+    private MapEvent<String, String> translate(@NotNull MapEvent<String, BytesStore> mpe) {
+        if (!flyweight)
+            return mpe.translate(s -> s, BytesStoreToString.BYTES_STORE_TO_STRING);
+        // events are delivered on the thread which made the change.
+        ReusedValues views = eventViews.get().reset();
+        return viewsAsStrings(mpe.translate(s -> s, b -> b == null ? null : views.<BytesCharSequence>next().set(b)));
+    }
+
+    /**
+     * A flyweight store's subscribers are handed CharSequence views where a String map would
+     * give them Strings, so they should only rely on the values being CharSequences.
+     */
+    @NotNull
+    private static MapEvent<String, String> viewsAsStrings(@NotNull MapEvent<String, ? extends CharSequence> event) {
+        return (MapEvent) event;
     }
 
     @NotNull
@@ -120,10 +153,59 @@ public class VanillaStringStringKeyValueStore implements StringStringKeyValueSto
 
     @Nullable
     @Override
-    public String getUsing(String key, StringBuilder value) {
+    public String putIfAbsent(String key, @NotNull String value) {
+        BytesStore retBytes = kvStore.putIfAbsent(key, toBytes(BUFFERS.get().valueBuffer, value));
+        return BytesStoreToString.BYTES_STORE_TO_STRING.apply(retBytes);
+    }
+
+    @Nullable
+    @Override
+    public String replace(String key, @NotNull String value) {
+        BytesStore retBytes = kvStore.replace(key, toBytes(BUFFERS.get().valueBuffer, value));
+        return BytesStoreToString.BYTES_STORE_TO_STRING.apply(retBytes);
+    }
+
+    @Override
+    public boolean replaceIfEqual(String key, @NotNull String oldValue, @NotNull String newValue) {
+        Buffers b = BUFFERS.get();
+        return kvStore.replaceIfEqual(key, toBytes(b.valueBuffer, oldValue), toBytes(b.valueBuffer2, newValue));
+    }
+
+    @Override
+    public boolean removeIfEqual(String key, @NotNull String value) {
+        return kvStore.removeIfEqual(key, toBytes(BUFFERS.get().valueBuffer, value));
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return kvStore.containsKey(key);
+    }
+
+    @NotNull
+    private static Bytes<ByteBuffer> toBytes(@NotNull Bytes<ByteBuffer> bytes, @NotNull String value) {
+        bytes.clear();
+        bytes.append8bit(value);
+        return bytes;
+    }
+
+    @Nullable
+    @Override
+    public String getUsing(String key, @Nullable StringBuilder value) {
+        if (value != null)
+            return readValue(key, value) == null ? null : value.toString();
+        BytesStore retBytes = kvStore.getUsing(key, BUFFERS.get().valueBuffer);
+        return BytesStoreToString.BYTES_STORE_TO_STRING.apply(retBytes);
+    }
+
+    @Nullable
+    @Override
+    public StringBuilder readValue(String key, @NotNull StringBuilder using) {
         Buffers b = BUFFERS.get();
         BytesStore retBytes = kvStore.getUsing(key, b.valueBuffer);
-        return retBytes == null ? null : retBytes.toString();
+        if (retBytes == null)
+            return null;
+        using.setLength(0);
+        return BytesCharSequence.append8bit(using, retBytes);
     }
 
     @Override
@@ -138,20 +220,73 @@ public class VanillaStringStringKeyValueStore implements StringStringKeyValueSto
 
     @Override
     public void entriesFor(int segment, @NotNull SubscriptionConsumer<MapEvent<String, String>> kvConsumer) throws InvalidSubscriberException {
-        kvStore.entriesFor(segment, e -> kvConsumer.accept(e.translate(k -> k, BytesStoreToString.BYTES_STORE_TO_STRING)));
+        String assetName = asset.fullName();
+        kvStore.entriesFor(segment, e -> kvConsumer.accept(
+                InsertedEvent.of(assetName, e.key(), BytesStoreToString.BYTES_STORE_TO_STRING.apply(e.value()))));
+    }
+
+    /**
+     * Visit a segment with one event and one view of the chars, reused for every entry.
+     */
+    private void entryViewsFor(int segment, @NotNull SubscriptionConsumer<MapEvent<String, String>> kvConsumer) throws InvalidSubscriberException {
+        BytesCharSequence view = new BytesCharSequence();
+        InsertedEvent<String, CharSequence> event = InsertedEvent.of(asset.fullName(), null, view);
+        MapEvent<String, String> asStrings = viewsAsStrings(event);
+        kvStore.entriesFor(segment, e -> {
+            event.set(e.key(), view.set(e.value()));
+            kvConsumer.accept(asStrings);
+        });
     }
 
     @NotNull
     @Override
     public Iterator<Map.Entry<String, String>> entrySetIterator() {
-        List<Map.Entry<String, String>> entries = new ArrayList<>();
-        try {
-            for (int i = 0, seg = segments(); i < seg; i++)
-                entriesFor(i, e -> entries.add(new SimpleEntry<>(e.key(), e.value())));
-        } catch (InvalidSubscriberException e) {
-            throw new AssertionError(e);
-        }
-        return entries.iterator();
+        return stream(kvStore.entrySetIterator())
+                .map(e -> (Map.Entry<String, String>) new SimpleEntry<>(e.getKey(),
+                        BytesStoreToString.BYTES_STORE_TO_STRING.apply(e.getValue())))
+                .iterator();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<String> keySetIterator() {
+        return kvStore.keySetIterator();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<String> valuesIterator() {
+        return stream(kvStore.valuesIterator())
+                .map(BytesStoreToString.BYTES_STORE_TO_STRING)
+                .iterator();
+    }
+
+    @NotNull
+    @Override
+    public Map<String, String> entriesBetween(@Nullable String fromKey, boolean fromInclusive,
+                                              @Nullable String toKey, boolean toInclusive, int limit) {
+        return toStrings(kvStore.entriesBetween(fromKey, fromInclusive, toKey, toInclusive, limit));
+    }
+
+    @NotNull
+    @Override
+    public Map<String, String> entriesWithPrefix(@NotNull String prefix, @Nullable String afterKey, int limit) {
+        return toStrings(kvStore.entriesWithPrefix(prefix, afterKey, limit));
+    }
+
+    @NotNull
+    private static Map<String, String> toStrings(@NotNull Map<String, BytesStore> page) {
+        // keeps the page in key order.
+        Map<String, String> strings = new LinkedHashMap<>();
+        page.forEach((k, v) -> strings.put(k, BytesStoreToString.BYTES_STORE_TO_STRING.apply(v)));
+        return strings;
+    }
+
+    /**
+     * translates lazily so only the element being visited is held in memory.
+     */
+    static <T> Stream<T> stream(@NotNull Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, 0), false);
     }
 
     @Override
@@ -161,7 +296,7 @@ public class VanillaStringStringKeyValueStore implements StringStringKeyValueSto
 
     @Override
     public boolean containsValue(final String value) {
-        throw new UnsupportedOperationException("todo");
+        return kvStore.containsValue(toBytes(BUFFERS.get().valueBuffer, value));
     }
 
 
@@ -186,6 +321,28 @@ public class VanillaStringStringKeyValueStore implements StringStringKeyValueSto
         throw new UnsupportedOperationException("todo");
     }
 
+    /**
+     * What the subscription of a flyweight store bootstraps from; the store itself, except that
+     * its entries carry reused views instead of Strings.  Queries, indexes and iterators still
+     * read the store, and get Strings.
+     */
+    final class ViewBootstrap extends AbstractKeyValueStore<String, StringBuilder, String> {
+        ViewBootstrap() {
+            super(requestContext().keyType(String.class).valueType(String.class),
+                    VanillaStringStringKeyValueStore.this.asset, VanillaStringStringKeyValueStore.this);
+        }
+
+        @Override
+        public void entriesFor(int segment, @NotNull SubscriptionConsumer<MapEvent<String, String>> kvConsumer) throws InvalidSubscriberException {
+            entryViewsFor(segment, kvConsumer);
+        }
+
+        @Override
+        public boolean reusesValues() {
+            return true;
+        }
+    }
+
     enum BytesStoreToString implements Function<BytesStore, String> {
         BYTES_STORE_TO_STRING;
 
@@ -22,19 +22,31 @@ import net.openhft.chronicle.engine.api.tree.RequestContext;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Created by peter on 22/05/15.
  */
 public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValueStore<K, MV, V> implements ObjectKeyValueStore<K, MV, V>, AuthenticatedKeyValueStore<K, MV, V> {
     @NotNull
     private final ObjectKVSSubscription<K, MV, V> subscriptions;
+    // gives the version of each change for its event, if the map keeps versions.
+    @Nullable
+    private final VersionedKeyValueStore<K, MV, V> versions;
 
     public VanillaSubscriptionKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset, @NotNull KeyValueStore<K, MV, V> item) {
         super(context, asset, item);
         this.subscriptions = asset.acquireView(ObjectKVSSubscription.class, context);
+        this.versions = item instanceof VersionedKeyValueStore ? (VersionedKeyValueStore<K, MV, V>) item : null;
         subscriptions.setKvStore(this);
     }
 
+    private long version() {
+        return versions == null ? 0 : versions.lastVersion();
+    }
+
     @NotNull
     @Override
     public ObjectKVSSubscription<K, MV, V> subscription(boolean createIfAbsent) {
@@ -45,7 +57,7 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
     public V replace(K key, V value) {
         V oldValue = kvStore.replace(key, value);
         if (oldValue != null) {
-            subscriptions.notifyEvent(UpdatedEvent.of(asset.fullName(), key, oldValue, value));
+            subscriptions.notifyEvent(UpdatedEvent.of(asset.fullName(), key, oldValue, value, version()));
         }
         return oldValue;
     }
@@ -57,8 +69,8 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
         }
         boolean replaced = kvStore.put(key, value);
             subscriptions.notifyEvent(replaced
-                    ? InsertedEvent.of(asset.fullName(), key, value)
-                    : UpdatedEvent.of(asset.fullName(), key, null, value));
+                    ? InsertedEvent.of(asset.fullName(), key, value, version())
+                    : UpdatedEvent.of(asset.fullName(), key, null, value, version()));
         return replaced;
 
     }
@@ -69,7 +81,7 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
             return getAndRemove(key) != null;
         }
         if (kvStore.remove(key)) {
-            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, null));
+            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, null, version()));
             return true;
         }
         return false;
@@ -78,7 +90,7 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
     @Override
     public boolean replaceIfEqual(K key, V oldValue, V newValue) {
         if (kvStore.replaceIfEqual(key, oldValue, newValue)) {
-            subscriptions.notifyEvent(UpdatedEvent.of(asset.fullName(), key, oldValue, newValue));
+            subscriptions.notifyEvent(UpdatedEvent.of(asset.fullName(), key, oldValue, newValue, version()));
             return true;
         }
         return false;
@@ -87,7 +99,7 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
     @Override
     public boolean removeIfEqual(K key, V value) {
         if (kvStore.removeIfEqual(key, value)) {
-            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, value));
+            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, value, version()));
             return true;
         }
         return false;
@@ -98,7 +110,7 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
     public V putIfAbsent(K key, V value) {
         V ret = kvStore.putIfAbsent(key, value);
         if (ret == null)
-            subscriptions.notifyEvent(InsertedEvent.of(asset.fullName(), key, value));
+            subscriptions.notifyEvent(InsertedEvent.of(asset.fullName(), key, value, version()));
         return ret;
     }
 
@@ -108,17 +120,76 @@ public class VanillaSubscriptionKeyValueStore<K, MV, V> extends AbstractKeyValue
         V oldValue = kvStore.getAndPut(key, value);
 
             subscriptions.notifyEvent(oldValue == null
-                    ? InsertedEvent.of(asset.fullName(), key, value)
-                    : UpdatedEvent.of(asset.fullName(), key, oldValue, value));
+                    ? InsertedEvent.of(asset.fullName(), key, value, version())
+                    : UpdatedEvent.of(asset.fullName(), key, oldValue, value, version()));
         return oldValue;
     }
 
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        long newVersion = kvStore.putIfVersion(key, value, version);
+        if (newVersion != 0) {
+            V oldValue = versions == null ? null : versions.lastOldValue();
+            subscriptions.notifyEvent(oldValue == null
+                    ? InsertedEvent.of(asset.fullName(), key, value, newVersion)
+                    : UpdatedEvent.of(asset.fullName(), key, oldValue, value, newVersion));
+        }
+        return newVersion;
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        if (!kvStore.removeIfVersion(key, version))
+            return false;
+        V oldValue = versions == null ? null : versions.lastOldValue();
+        subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, oldValue, version()));
+        return true;
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        if (versions != null) {
+            // so each event has its entry's version.
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet())
+                put(entry.getKey(), entry.getValue());
+            return;
+        }
+        Map<K, V> previous = subscriptions.needsPrevious()
+                ? kvStore.getAll(entries.keySet())
+                : Collections.emptyMap();
+        kvStore.putAll(entries);
+        String assetName = asset.fullName();
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            V oldValue = previous.get(key);
+            subscriptions.notifyEvent(oldValue == null
+                    ? InsertedEvent.of(assetName, key, value)
+                    : UpdatedEvent.of(assetName, key, oldValue, value));
+        }
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        if (versions != null) {
+            for (K key : keys)
+                remove(key);
+            return;
+        }
+        // only the keys present are removed and notified.
+        Map<K, V> previous = kvStore.getAll(keys);
+        kvStore.removeAll(previous.keySet());
+        String assetName = asset.fullName();
+        for (Map.Entry<K, V> entry : previous.entrySet())
+            subscriptions.notifyEvent(RemovedEvent.of(assetName, entry.getKey(), entry.getValue()));
+    }
+
     @Nullable
     @Override
     public V getAndRemove(K key) {
         V oldValue = kvStore.getAndRemove(key);
         if (oldValue != null)
-            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, oldValue));
+            subscriptions.notifyEvent(RemovedEvent.of(asset.fullName(), key, oldValue, version()));
         return oldValue;
     }
 }
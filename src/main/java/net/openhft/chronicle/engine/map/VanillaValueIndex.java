@@ -0,0 +1,179 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.management.MetricsSource;
+import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.ValueIndex;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A value index maintained from the events of the asset's subscription.
+ * <p>
+ * Each value hash maps to either a single key, or an array of keys when several keys share a value
+ * or a hash.  Candidates are checked against the store on lookup, so a stale key, e.g. one added
+ * by the bootstrap after it was removed, is dropped the first time it is seen.
+ */
+public class VanillaValueIndex<K, V> implements ValueIndex<K, V>, EventConsumer<K, V>, MetricsSource {
+    // approximate size of a HashMap.Node, its boxed Integer key and its share of the table.
+    private static final int BUCKET_OVERHEAD = 56;
+    private static final int ARRAY_HEADER = 16;
+
+    private final Map<Integer, Object> index = new HashMap<>();
+    @NotNull
+    private final KeyValueStore<K, ?, V> kvStore;
+    private long keys = 0;
+
+    public VanillaValueIndex(@NotNull RequestContext context, @NotNull Asset asset) {
+        this(asset.acquireView(ObjectKeyValueStore.class, context),
+                asset.acquireView(ObjectKVSSubscription.class, context));
+    }
+
+    VanillaValueIndex(@NotNull KeyValueStore<K, ?, V> kvStore, @NotNull KVSSubscription<K, ?, V> subscription) {
+        this.kvStore = kvStore;
+        subscription.registerDownstream(this);
+        try {
+            for (int i = 0, segs = kvStore.segments(); i < segs; i++)
+                kvStore.entriesFor(i, e -> add(e.value().hashCode(), e.key()));
+        } catch (InvalidSubscriberException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public void notifyEvent(@NotNull MapEvent<K, V> changeEvent) {
+        K key = changeEvent.key();
+        V oldValue = changeEvent.oldValue();
+        V value = changeEvent.value();
+        if (oldValue != null)
+            remove(oldValue.hashCode(), key);
+        if (value != null)
+            add(value.hashCode(), key);
+    }
+
+    @Override
+    public boolean containsValue(@NotNull V value) {
+        int hash = value.hashCode();
+        for (K key : candidates(hash))
+            if (matches(hash, key, value))
+                return true;
+        return false;
+    }
+
+    @NotNull
+    @Override
+    public Set<K> keysForValue(@NotNull V value) {
+        int hash = value.hashCode();
+        Set<K> keys = new LinkedHashSet<>();
+        for (K key : candidates(hash))
+            if (matches(hash, key, value))
+                keys.add(key);
+        return keys;
+    }
+
+    private boolean matches(int hash, K key, @NotNull V value) {
+        V current = kvStore.get(key);
+        if (value.equals(current))
+            return true;
+        if (current == null || current.hashCode() != hash)
+            remove(hash, key);
+        return false;
+    }
+
+    @NotNull
+    synchronized List<K> candidates(int hash) {
+        Object o = index.get(hash);
+        if (o == null)
+            return Collections.emptyList();
+        if (o instanceof Object[])
+            return (List<K>) Arrays.asList(((Object[]) o).clone());
+        return Collections.singletonList((K) o);
+    }
+
+    synchronized void add(int hash, @NotNull K key) {
+        Object o = index.get(hash);
+        if (o == null) {
+            index.put(hash, key);
+
+        } else if (o instanceof Object[]) {
+            Object[] array = (Object[]) o;
+            for (Object k : array)
+                if (k.equals(key))
+                    return;
+            array = Arrays.copyOf(array, array.length + 1);
+            array[array.length - 1] = key;
+            index.put(hash, array);
+
+        } else if (o.equals(key)) {
+            return;
+
+        } else {
+            index.put(hash, new Object[]{o, key});
+        }
+        keys++;
+    }
+
+    synchronized void remove(int hash, @NotNull K key) {
+        Object o = index.get(hash);
+        if (o instanceof Object[]) {
+            Object[] array = (Object[]) o;
+            for (int i = 0; i < array.length; i++) {
+                if (array[i].equals(key)) {
+                    if (array.length == 2) {
+                        index.put(hash, array[1 - i]);
+                    } else {
+                        Object[] array2 = new Object[array.length - 1];
+                        System.arraycopy(array, 0, array2, 0, i);
+                        System.arraycopy(array, i + 1, array2, i, array2.length - i);
+                        index.put(hash, array2);
+                    }
+                    keys--;
+                    return;
+                }
+            }
+
+        } else if (o != null && o.equals(key)) {
+            index.remove(hash);
+            keys--;
+        }
+    }
+
+    @Override
+    public synchronized void addMetrics(@NotNull Map<String, String> metrics) {
+        long bytes = (long) index.size() * BUCKET_OVERHEAD;
+        for (Object o : index.values())
+            if (o instanceof Object[])
+                bytes += ARRAY_HEADER + 8L * ((Object[]) o).length;
+        metrics.put("valueIndexHashes", "" + index.size());
+        metrics.put("valueIndexKeys", "" + keys);
+        metrics.put("valueIndexBytes", "" + bytes);
+    }
+
+    @Override
+    public void onEndOfSubscription() {
+        synchronized (this) {
+            index.clear();
+            keys = 0;
+        }
+    }
+}
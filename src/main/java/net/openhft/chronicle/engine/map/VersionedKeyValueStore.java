@@ -0,0 +1,274 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.map.VersionedValue;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives each entry a version which increases with every change to the map, so a client can make a
+ * change conditional on the version it read, sending a long rather than the old value.
+ * <p>
+ * Versions come from a counter which starts at the time in milliseconds &lt;&lt; 20, so they keep
+ * increasing across a restart unless over a million changes a millisecond were made before it.
+ * A change and its version are made under one of {@link #LOCKS} locks chosen by the key's hash.
+ * <p>
+ * The version and previous value of the last change made by a thread are kept so the store
+ * above can add them to the event it sends.
+ */
+public class VersionedKeyValueStore<K, MV, V> extends AbstractKeyValueStore<K, MV, V>
+        implements AuthenticatedKeyValueStore<K, MV, V> {
+    static final int LOCKS = 64;
+
+    private final ConcurrentMap<K, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis() << 20);
+    private final Object[] locks = new Object[LOCKS];
+    private final ThreadLocal<LastChange> lastChange = ThreadLocal.withInitial(LastChange::new);
+
+    public VersionedKeyValueStore(@NotNull RequestContext context, @NotNull Asset asset,
+                                  @NotNull AuthenticatedKeyValueStore<K, MV, V> kvStore) {
+        super(context, asset, kvStore);
+        for (int i = 0; i < LOCKS; i++)
+            locks[i] = new Object();
+    }
+
+    @NotNull
+    private Object lockFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return locks[h & (LOCKS - 1)];
+    }
+
+    /**
+     * @return the version given by the last change this thread made.
+     */
+    public long lastVersion() {
+        return lastChange.get().version;
+    }
+
+    /**
+     * @return the value replaced or removed by the last conditional change this thread made.
+     */
+    @Nullable
+    public V lastOldValue() {
+        return (V) lastChange.get().oldValue;
+    }
+
+    // called holding the key's lock.
+    private long changed(K key, @Nullable V oldValue, boolean removed) {
+        long version = clock.incrementAndGet();
+        if (removed)
+            versions.remove(key);
+        else
+            versions.put(key, version);
+        LastChange change = lastChange.get();
+        change.version = version;
+        change.oldValue = oldValue;
+        return version;
+    }
+
+    // called holding the key's lock, 0 only if the key is absent.
+    private long versionOf(K key) {
+        // an entry evicted underneath has no version.
+        if (!kvStore.containsKey(key)) {
+            versions.remove(key);
+            return 0;
+        }
+        return existingVersionOf(key);
+    }
+
+    // an entry added below this store, e.g. replayed from a journal, is given a version when first
+    // asked for one.
+    private long existingVersionOf(K key) {
+        return versions.computeIfAbsent(key, k -> clock.incrementAndGet());
+    }
+
+    @Nullable
+    @Override
+    public VersionedValue<V> getVersioned(K key) {
+        synchronized (lockFor(key)) {
+            V value = kvStore.get(key);
+            if (value == null)
+                return null;
+            return new VersionedValue<>(value, existingVersionOf(key));
+        }
+    }
+
+    @Override
+    public long putIfVersion(K key, V value, long version) {
+        synchronized (lockFor(key)) {
+            if (versionOf(key) != version)
+                return 0;
+            V oldValue = kvStore.getAndPut(key, value);
+            return changed(key, oldValue, false);
+        }
+    }
+
+    @Override
+    public boolean removeIfVersion(K key, long version) {
+        synchronized (lockFor(key)) {
+            if (version == 0 || versionOf(key) != version)
+                return false;
+            V oldValue = kvStore.getAndRemove(key);
+            changed(key, oldValue, true);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        synchronized (lockFor(key)) {
+            boolean replaced = kvStore.put(key, value);
+            changed(key, null, false);
+            return replaced;
+        }
+    }
+
+    @Override
+    public boolean put(K key, V value, long timeToLive, @NotNull TimeUnit unit) {
+        synchronized (lockFor(key)) {
+            boolean replaced = kvStore.put(key, value, timeToLive, unit);
+            changed(key, null, false);
+            return replaced;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V getAndPut(K key, V value) {
+        synchronized (lockFor(key)) {
+            V oldValue = kvStore.getAndPut(key, value);
+            changed(key, oldValue, false);
+            return oldValue;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V putIfAbsent(K key, V value) {
+        synchronized (lockFor(key)) {
+            V oldValue = kvStore.putIfAbsent(key, value);
+            if (oldValue == null)
+                changed(key, null, false);
+            return oldValue;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V replace(K key, V value) {
+        synchronized (lockFor(key)) {
+            V oldValue = kvStore.replace(key, value);
+            if (oldValue != null)
+                changed(key, oldValue, false);
+            return oldValue;
+        }
+    }
+
+    @Override
+    public boolean replaceIfEqual(K key, V oldValue, V newValue) {
+        synchronized (lockFor(key)) {
+            if (!kvStore.replaceIfEqual(key, oldValue, newValue))
+                return false;
+            changed(key, oldValue, false);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean remove(K key) {
+        synchronized (lockFor(key)) {
+            if (!kvStore.remove(key))
+                return false;
+            changed(key, null, true);
+            return true;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V getAndRemove(K key) {
+        synchronized (lockFor(key)) {
+            V oldValue = kvStore.getAndRemove(key);
+            if (oldValue != null)
+                changed(key, oldValue, true);
+            return oldValue;
+        }
+    }
+
+    @Override
+    public boolean removeIfEqual(K key, V value) {
+        synchronized (lockFor(key)) {
+            if (!kvStore.removeIfEqual(key, value))
+                return false;
+            changed(key, value, true);
+            return true;
+        }
+    }
+
+    // each entry is given its own version.
+    @Override
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public void removeAll(@NotNull Collection<? extends K> keys) {
+        for (K key : keys)
+            remove(key);
+    }
+
+    @Override
+    public void clear() {
+        clear(0);
+    }
+
+    // holds every lock so no change is made between clearing the entries and their versions.
+    private void clear(int lock) {
+        if (lock == LOCKS) {
+            kvStore.clear();
+            versions.clear();
+            return;
+        }
+        synchronized (locks[lock]) {
+            clear(lock + 1);
+        }
+    }
+
+    @NotNull
+    @Override
+    public KVSSubscription<K, MV, V> subscription(boolean createIfAbsent) {
+        return ((AuthenticatedKeyValueStore<K, MV, V>) kvStore).subscription(createIfAbsent);
+    }
+
+    static final class LastChange {
+        long version;
+        Object oldValue;
+    }
+}
@@ -16,6 +16,8 @@
 
 package net.openhft.chronicle.engine.pubsub;
 
+import net.openhft.chronicle.core.util.SerializableBiFunction;
+import net.openhft.chronicle.core.util.SerializableFunction;
 import net.openhft.chronicle.engine.api.map.MapView;
 import net.openhft.chronicle.engine.api.pubsub.Reference;
 import net.openhft.chronicle.engine.api.pubsub.Subscriber;
@@ -59,6 +61,37 @@ public class VanillaReference<E> implements Reference<E>, View {
         underlyingMap.remove(name);
     }
 
+    @Override
+    public <R> R apply(@NotNull SerializableFunction<E, R> function) {
+        return underlyingMap.apply(name, function);
+    }
+
+    @Override
+    public void asyncUpdate(@NotNull SerializableFunction<E, E> updateFunction) {
+        underlyingMap.asyncUpdate(name, updateFunction);
+    }
+
+    @Override
+    public <R> R syncUpdate(@NotNull SerializableFunction<E, E> updateFunction, @NotNull SerializableFunction<E, R> returnFunction) {
+        return underlyingMap.syncUpdate(name, updateFunction, returnFunction);
+    }
+
+    @Override
+    public <T, R> R apply(@NotNull SerializableBiFunction<E, T, R> function, T argument) {
+        return underlyingMap.apply(name, function, argument);
+    }
+
+    @Override
+    public <T> void asyncUpdate(@NotNull SerializableBiFunction<E, T, E> updateFunction, T argument) {
+        underlyingMap.asyncUpdate(name, updateFunction, argument);
+    }
+
+    @Override
+    public <T, RT, R> R syncUpdate(@NotNull SerializableBiFunction<E, T, E> updateFunction, T updateArgument,
+                                   @NotNull SerializableBiFunction<E, RT, R> returnFunction, RT returnArgument) {
+        return underlyingMap.syncUpdate(name, updateFunction, updateArgument, returnFunction, returnArgument);
+    }
+
     @Override
     public void registerSubscriber(Subscriber<E> subscriber) throws AssetNotFoundException {
         underlyingMap.asset().getChild(name)
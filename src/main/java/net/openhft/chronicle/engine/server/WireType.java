@@ -17,10 +17,13 @@
 package net.openhft.chronicle.engine.server;
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.wire.BinaryWire;
+import net.openhft.chronicle.wire.BinaryWireCode;
 import net.openhft.chronicle.wire.TextWire;
 import net.openhft.chronicle.wire.Wire;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.function.Function;
 
@@ -40,8 +43,41 @@ public enum WireType implements Function<Bytes, Wire> {
         public Wire apply(Bytes bytes) {
             return new BinaryWire(bytes);
         }
+    }, COMPACT {
+        // writes field numbers instead of field names.
+        @NotNull
+        @Override
+        public Wire apply(Bytes bytes) {
+            return new BinaryWire(bytes, false, true, false);
+        }
     };
 
+    /**
+     * @param bytes a value written by one of these wire types
+     * @return the wire type it was written with, or null if it is empty.
+     */
+    @Nullable
+    public static WireType typeOf(@NotNull BytesStore bytes) {
+        if (bytes.readRemaining() <= 0)
+            return null;
+        int code = bytes.readUnsignedByte(bytes.readPosition());
+        if (code < 0x80)
+            return TEXT;
+        return code == BinaryWireCode.FIELD_NUMBER ? COMPACT : BINARY;
+    }
+
+    /**
+     * @return a function which writes with this wire type but reads values written with any of them,
+     * so stored values can be migrated while in use.
+     */
+    @NotNull
+    public Function<Bytes, Wire> readingAny() {
+        return bytes -> {
+            WireType type = typeOf(bytes);
+            return (type == null ? this : type).apply(bytes);
+        };
+    }
+
     // todo to be removed
     @NotNull
     public static Function<Bytes, Wire> wire = BINARY;
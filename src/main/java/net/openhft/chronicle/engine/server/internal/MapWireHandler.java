@@ -21,7 +21,15 @@ package net.openhft.chronicle.engine.server.internal;
  */
 
 import net.openhft.chronicle.core.pool.StringBuilderPool;
+import net.openhft.chronicle.core.util.SerializableBiFunction;
+import net.openhft.chronicle.core.util.SerializableFunction;
+import net.openhft.chronicle.core.util.SerializableUpdaterWithArg;
+import net.openhft.chronicle.engine.api.map.EntryPredicate;
+import net.openhft.chronicle.engine.api.map.FieldIndex;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
+import net.openhft.chronicle.engine.api.map.StringStringKeyValueStore;
+import net.openhft.chronicle.engine.api.map.ValueIndex;
+import net.openhft.chronicle.engine.api.map.VersionedValue;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
 import net.openhft.chronicle.engine.map.RemoteKeyValueStore;
 import net.openhft.chronicle.map.ChronicleMap;
@@ -33,8 +41,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.StreamCorruptedException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -59,6 +72,7 @@ public class MapWireHandler<K, V> extends AbstractHandler {
     private final Map<String, Long> cspToCid = new HashMap<>();
     private final AtomicLong cid = new AtomicLong();
 
+    private BiConsumer<ValueOut, K> kToWire;
     private BiConsumer<ValueOut, V> vToWire;
     @Nullable
     private Function<ValueIn, K> wireToK;
@@ -101,6 +115,32 @@ public class MapWireHandler<K, V> extends AbstractHandler {
                     return;
                 }
 
+                if (update.contentEquals(eventName)) {
+                    valueIn.marshallable(wire -> {
+                        final Params[] params = update.params();
+                        final K key = wireToK.apply(wire.read(params[0]));
+                        final SerializableBiFunction<V, Object, V> updateFunction =
+                                wire.read(params[1]).object(SerializableBiFunction.class);
+                        final Object updateArgument = wire.read(params[2]).object(Object.class);
+                        nullCheck(key);
+                        nullCheck(updateFunction);
+                        map.update(key, updateFunction, updateArgument);
+                    });
+                    return;
+                }
+
+                if (updateMap.contentEquals(eventName)) {
+                    valueIn.marshallable(wire -> {
+                        final Params[] params = updateMap.params();
+                        final SerializableUpdaterWithArg<ConcurrentMap<K, V>, Object> updater =
+                                wire.read(params[0]).object(SerializableUpdaterWithArg.class);
+                        final Object argument = wire.read(params[1]).object(Object.class);
+                        nullCheck(updater);
+                        map.updateMap(updater, argument);
+                    });
+                    return;
+                }
+
                 outWire.writeDocument(true, wire -> outWire.writeEventName(CoreFields.tid).int64(tid));
 
                 writeData(inWire.bytes(), out -> {
@@ -111,13 +151,132 @@ public class MapWireHandler<K, V> extends AbstractHandler {
                     }
 
                     if (putAll.contentEquals(eventName)) {
+                        final Params[] params = put.params();
+                        final Map<K, V> entries = new LinkedHashMap<>();
                         valueIn.sequence(v -> {
                             while (v.hasNextSequenceItem()) {
-                                valueIn.marshallable(wire -> map.put(
-                                        wireToK.apply(wire.read(put.params()[0])),
-                                        wireToV.apply(wire.read(put.params()[1]))));
+                                valueIn.marshallable(wire -> {
+                                    final K key = wireToK.apply(wire.read(params[0]));
+                                    final V value = wireToV.apply(wire.read(params[1]));
+                                    nullCheck(key);
+                                    nullCheck(value);
+                                    entries.put(key, value);
+                                });
                             }
                         });
+                        map.putAll(entries);
+                        return;
+                    }
+
+                    if (getAll.contentEquals(eventName)) {
+                        writeEntries(map.getAll(readKeys(valueIn)));
+                        return;
+                    }
+
+                    if (entriesBetween.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = entriesBetween.params();
+                            final K from = wireToK.apply(wire.read(params[0]));
+                            final boolean fromInclusive = wire.read(params[1]).bool();
+                            final K to = wireToK.apply(wire.read(params[2]));
+                            final boolean toInclusive = wire.read(params[3]).bool();
+                            final int limit = wire.read(params[4]).int32();
+                            writeEntries(map.entriesBetween(from, fromInclusive, to, toInclusive, limit));
+                        });
+                        return;
+                    }
+
+                    if (entriesWithPrefix.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = entriesWithPrefix.params();
+                            final String prefix = wire.read(params[0]).text();
+                            final K after = wireToK.apply(wire.read(params[1]));
+                            final int limit = wire.read(params[2]).int32();
+                            nullCheck(prefix);
+                            writeEntries(map.entriesWithPrefix(prefix, after, limit));
+                        });
+                        return;
+                    }
+
+                    if (entriesWhere.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = entriesWhere.params();
+                            final String field = wire.read(params[0]).text();
+                            final Object value = wire.read(params[1]).object(Object.class);
+                            nullCheck(field);
+                            nullCheck(value);
+                            final FieldIndex<K, V> fieldIndex = map.asset().getView(FieldIndex.class);
+                            writeEntries(fieldIndex == null
+                                    ? map.entriesWhere(field, value)
+                                    : fieldIndex.entriesWhere(field, value));
+                        });
+                        return;
+                    }
+
+                    if (entriesWhereBetween.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = entriesWhereBetween.params();
+                            final String field = wire.read(params[0]).text();
+                            final Object from = wire.read(params[1]).object(Object.class);
+                            final Object to = wire.read(params[2]).object(Object.class);
+                            nullCheck(field);
+                            final FieldIndex<K, V> fieldIndex = map.asset().getView(FieldIndex.class);
+                            writeEntries(fieldIndex == null
+                                    ? map.entriesWhereBetween(field, from, to)
+                                    : fieldIndex.entriesWhereBetween(field, from, to));
+                        });
+                        return;
+                    }
+
+                    if (query.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = query.params();
+                            final EntryPredicate<K, V> filter = wire.read(params[0]).object(EntryPredicate.class);
+                            final SerializableFunction<V, Object> projection = wire.read(params[1]).object(SerializableFunction.class);
+                            final int limit = wire.read(params[2]).int32();
+                            nullCheck(filter);
+                            nullCheck(projection);
+                            final Map<K, Object> result = map.query(filter, projection, limit);
+                            outWire.writeEventName(reply).sequence(v -> result.forEach((k, r) ->
+                                    v.marshallable(w -> {
+                                        kToWire.accept(w.write(key), k);
+                                        w.write(value).object(r);
+                                    })));
+                        });
+                        return;
+                    }
+
+                    if (applyTo.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = applyTo.params();
+                            final K key = wireToK.apply(wire.read(params[0]));
+                            final SerializableBiFunction<V, Object, V> updateFunction =
+                                    wire.read(params[1]).object(SerializableBiFunction.class);
+                            final Object updateArgument = wire.read(params[2]).object(Object.class);
+                            final SerializableBiFunction<V, Object, Object> returnFunction =
+                                    wire.read(params[3]).object(SerializableBiFunction.class);
+                            final Object returnArgument = wire.read(params[4]).object(Object.class);
+                            nullCheck(key);
+                            outWire.writeEventName(reply).object(
+                                    map.applyTo(key, updateFunction, updateArgument, returnFunction, returnArgument));
+                        });
+                        return;
+                    }
+
+                    if (applyToMap.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = applyToMap.params();
+                            final SerializableBiFunction<ConcurrentMap<K, V>, Object, Object> function =
+                                    wire.read(params[0]).object(SerializableBiFunction.class);
+                            final Object argument = wire.read(params[1]).object(Object.class);
+                            nullCheck(function);
+                            outWire.writeEventName(reply).object(map.applyToMap(function, argument));
+                        });
+                        return;
+                    }
+
+                    if (removeAll.contentEquals(eventName)) {
+                        map.removeAll(readKeys(valueIn));
                         return;
                     }
 
@@ -160,12 +319,26 @@ public class MapWireHandler<K, V> extends AbstractHandler {
                     if (containsValue.contentEquals(eventName)) {
                         final V value = wireToV.apply(valueIn);
                         nullCheck(value);
-                        final boolean aBoolean = map.containsValue(value);
+                        final ValueIndex<K, V> valueIndex = map.asset().getView(ValueIndex.class);
+                        final boolean aBoolean = valueIndex == null
+                                ? map.containsValue(value)
+                                : valueIndex.containsValue(value);
                         outWire.writeEventName(reply).bool(
                                 aBoolean);
                         return;
                     }
 
+                    if (keysForValue.contentEquals(eventName)) {
+                        final V value = wireToV.apply(valueIn);
+                        nullCheck(value);
+                        final ValueIndex<K, V> valueIndex = map.asset().getView(ValueIndex.class);
+                        final Set<K> keys = valueIndex == null
+                                ? map.keysForValue(value)
+                                : valueIndex.keysForValue(value);
+                        outWire.writeEventName(reply).sequence(s -> keys.forEach(k -> kToWire.accept(s, k)));
+                        return;
+                    }
+
                     if (get.contentEquals(eventName)) {
                         final K key = wireToK.apply(valueIn);
                         nullCheck(key);
@@ -174,6 +347,11 @@ public class MapWireHandler<K, V> extends AbstractHandler {
                             StringBuilder sb = SBP.acquireStringBuilder();
                             vToWire.accept(outWire.writeEventName(reply), (V) ((ChronicleMap) map).getUsing(key, sb));
 
+                        } else if (map instanceof StringStringKeyValueStore) {
+                            StringBuilder sb = SBP.acquireStringBuilder();
+                            vToWire.accept(outWire.writeEventName(reply),
+                                    (V) ((StringStringKeyValueStore) map).readValue((String) key, sb));
+
                         } else
                             vToWire.accept(outWire.writeEventName(reply), map.get(key));
 
@@ -232,6 +410,41 @@ public class MapWireHandler<K, V> extends AbstractHandler {
                         return;
                     }
 
+                    if (getVersioned.contentEquals(eventName)) {
+                        final K key = wireToK.apply(valueIn);
+                        nullCheck(key);
+                        final VersionedValue<V> result = map.getVersioned(key);
+                        outWire.writeEventName(reply).marshallable(w -> {
+                            vToWire.accept(w.write(value), result == null ? null : result.value());
+                            w.write(version).int64(result == null ? 0 : result.version());
+                        });
+                        return;
+                    }
+
+                    if (putIfVersion.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = putIfVersion.params();
+                            final K key = wireToK.apply(wire.read(params[0]));
+                            final V value = wireToV.apply(wire.read(params[1]));
+                            final long version = wire.read(params[2]).int64();
+                            nullCheck(key);
+                            nullCheck(value);
+                            outWire.writeEventName(reply).int64(map.putIfVersion(key, value, version));
+                        });
+                        return;
+                    }
+
+                    if (removeIfVersion.contentEquals(eventName)) {
+                        valueIn.marshallable(wire -> {
+                            final Params[] params = removeIfVersion.params();
+                            final K key = wireToK.apply(wire.read(params[0]));
+                            final long version = wire.read(params[1]).int64();
+                            nullCheck(key);
+                            outWire.writeEventName(reply).bool(map.removeIfVersion(key, version));
+                        });
+                        return;
+                    }
+
                     if (putIfAbsent.contentEquals(eventName)) {
                         valueIn.marshallable(wire -> {
                             final Params[] params = putIfAbsent.params();
@@ -302,6 +515,7 @@ public class MapWireHandler<K, V> extends AbstractHandler {
                         @NotNull final WireAdapter wireAdapter,
                         @NotNull final RequestContext requestContext) throws
             StreamCorruptedException {
+        this.kToWire = wireAdapter.keyToWire();
         this.vToWire = wireAdapter.valueToWire();
         this.wireToK = wireAdapter.wireToKey();
         this.wireToV = wireAdapter.wireToValue();
@@ -343,6 +557,22 @@ public class MapWireHandler<K, V> extends AbstractHandler {
         return newCid;
     }
 
+    /**
+     * read a sequence of keys, none of which may be null.
+     */
+    @NotNull
+    private List<K> readKeys(@NotNull ValueIn valueIn) {
+        final List<K> keys = new ArrayList<>();
+        valueIn.sequence(v -> {
+            while (v.hasNextSequenceItem()) {
+                final K key = wireToK.apply(valueIn);
+                nullCheck(key);
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+
     private void createProxy(final String type) {
         outWire.writeEventName(reply).type("set-proxy")
                 .marshallable(w -> {
@@ -365,6 +595,17 @@ public class MapWireHandler<K, V> extends AbstractHandler {
     }
 
 
+    /**
+     * reply with the entries as a sequence of key/value pairs, in the order of the map.
+     */
+    private void writeEntries(@NotNull Map<K, V> entries) {
+        outWire.writeEventName(reply).sequence(v -> entries.forEach((k, val) ->
+                v.marshallable(wire -> {
+                    kToWire.accept(wire.write(key), k);
+                    vToWire.accept(wire.write(value), val);
+                })));
+    }
+
     public CharSequence getCspForCid(long cid) {
         return cidToCsp.get(cid);
     }
@@ -377,13 +618,31 @@ public class MapWireHandler<K, V> extends AbstractHandler {
         newValue,
         timestamp,
         identifier,
-        entry
+        entry,
+        version,
+        fromKey,
+        fromInclusive,
+        toKey,
+        toInclusive,
+        limit,
+        prefix,
+        afterKey,
+        field,
+        fromValue,
+        toValue,
+        filter,
+        projection,
+        updateFunction,
+        updateArgument,
+        returnFunction,
+        returnArgument
     }
 
     public enum EventId implements ParameterizeWireKey {
         size,
         containsKey(key),
         containsValue(value),
+        keysForValue(value),
         get(key),
         getAndPut(key, value),
         put(key, value),
@@ -397,8 +656,22 @@ public class MapWireHandler<K, V> extends AbstractHandler {
         replaceForOld(key, oldValue, newValue),
         putIfAbsent(key, value),
         removeWithValue(key, value),
+        getVersioned(key),
+        putIfVersion(key, value, version),
+        removeIfVersion(key, version),
+        entriesBetween(fromKey, fromInclusive, toKey, toInclusive, limit),
+        entriesWithPrefix(prefix, afterKey, limit),
+        entriesWhere(field, value),
+        entriesWhereBetween(field, fromValue, toValue),
+        query(filter, projection, limit),
+        update(key, updateFunction, updateArgument),
+        applyTo(key, updateFunction, updateArgument, returnFunction, returnArgument),
+        updateMap(updateFunction, updateArgument),
+        applyToMap(returnFunction, returnArgument),
         toString,
         putAll,
+        getAll,
+        removeAll,
         hashCode,
         createChannel,
         entrySetRestricted,
@@ -17,6 +17,8 @@
 package net.openhft.chronicle.engine.set;
 
 import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.api.pubsub.SubscriptionConsumer;
 import net.openhft.chronicle.engine.api.set.KeySetView;
 import net.openhft.chronicle.engine.api.tree.Asset;
 import net.openhft.chronicle.engine.api.tree.RequestContext;
@@ -54,6 +56,16 @@ public class VanillaKeySetView<K, V> extends AbstractCollection<K> implements Ke
         return kvMapView.underlying().keySetIterator();
     }
 
+    @Override
+    public int segments() {
+        return kvMapView.underlying().segments();
+    }
+
+    @Override
+    public void forEachInSegment(int segment, SubscriptionConsumer<K> consumer) throws InvalidSubscriberException {
+        kvMapView.underlying().keysFor(segment, consumer);
+    }
+
     @Override
     public int hashCode() {
         int h = 0;
@@ -20,9 +20,11 @@ import net.openhft.chronicle.core.annotation.ForceInline;
 import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.core.util.ThrowingAcceptor;
 import net.openhft.chronicle.engine.api.collection.ValuesCollection;
+import net.openhft.chronicle.engine.api.map.FieldIndex;
 import net.openhft.chronicle.engine.api.map.KeyValueStore;
 import net.openhft.chronicle.engine.api.map.MapView;
 import net.openhft.chronicle.engine.api.map.SubscriptionKeyValueStore;
+import net.openhft.chronicle.engine.api.map.ValueIndex;
 import net.openhft.chronicle.engine.api.pubsub.*;
 import net.openhft.chronicle.engine.api.session.SessionProvider;
 import net.openhft.chronicle.engine.api.set.EntrySetView;
@@ -96,7 +98,12 @@ public class VanillaAsset implements Asset, Closeable {
         addWrappingRule(KeySetView.class, LAST + " keySet", VanillaKeySetView::new, MapView.class);
         addWrappingRule(ValuesCollection.class, LAST + " values", VanillaValuesCollection::new, MapView.class);
 
-        addWrappingRule(MapView.class, LAST + " string key maps", VanillaMapView::new, ObjectKeyValueStore.class);
+        addWrappingRule(MapView.class, LAST + " string key maps",
+                (rc, asset, kvStore) -> new VanillaMapView(rc, asset,
+                        rc.ttlMillis() == null ? kvStore : new ExpiringKeyValueStore<>(rc, asset, kvStore)),
+                ObjectKeyValueStore.class);
+        addLeafRule(ValueIndex.class, LAST + " value index", VanillaValueIndex::new);
+        addLeafRule(FieldIndex.class, LAST + " field index", VanillaFieldIndex::new);
 
 
 
@@ -127,9 +134,26 @@ public class VanillaAsset implements Asset, Closeable {
         addWrappingRule(ObjectKeyValueStore.class, LAST + " authenticated",
                 VanillaSubscriptionKeyValueStore::new, AuthenticatedKeyValueStore.class);
 
-        addLeafRule(AuthenticatedKeyValueStore.class, LAST + " vanilla", VanillaKeyValueStore::new);
+        addLeafRule(AuthenticatedKeyValueStore.class, LAST + " vanilla", (rc, asset) -> {
+            boolean bounded = rc.maxEntries() > 0 || rc.maxBytes() > 0;
+            if (bounded && rc.sorted() == Boolean.TRUE)
+                throw new UnsupportedOperationException("A map cannot be both sorted and bounded");
+            AuthenticatedKeyValueStore kvStore = bounded
+                    ? new BoundedKeyValueStore<>(rc, asset)
+                    : rc.sorted() == Boolean.TRUE
+                    ? new SortedKeyValueStore<>(rc, asset)
+                    : OffHeapLongKeyValueStore.supports(rc.keyType(), rc.valueType())
+                    ? new OffHeapLongKeyValueStore<>(rc, asset)
+                    : new VanillaKeyValueStore<>(rc, asset);
+            if (rc.journal() == Boolean.TRUE)
+                kvStore = new JournalledKeyValueStore<>(rc, asset, kvStore);
+            if (rc.versioned() == Boolean.TRUE)
+                kvStore = new VersionedKeyValueStore<>(rc, asset, kvStore);
+            return kvStore;
+        });
         addLeafRule(SubscriptionKeyValueStore.class, LAST + " vanilla", VanillaKeyValueStore::new);
         addLeafRule(KeyValueStore.class, LAST + " vanilla", VanillaKeyValueStore::new);
+        addLeafRule(LongKeyValueStore.class, LAST + " off heap", OffHeapLongKeyValueStore::new);
 
         addLeafRule(ObjectKVSSubscription.class, LAST + " vanilla",
                 VanillaKVSSubscription::new);
@@ -145,7 +169,9 @@ public class VanillaAsset implements Asset, Closeable {
                 RemoteKVSSubscription::new);
 
         addLeafRule(ObjectKeyValueStore.class, LAST + " Remote AKVS",
-                RemoteKeyValueStore::new);
+                (rc, asset) -> rc.nearCache() == Boolean.TRUE
+                        ? new NearCacheKeyValueStore<>(rc, asset, new RemoteKeyValueStore<>(rc, asset))
+                        : new RemoteKeyValueStore<>(rc, asset));
         addWrappingRule(Publisher.class, LAST + "publisher", RemotePublisher::new, MapView.class);
         addWrappingRule(TopicPublisher.class, LAST + " topic publisher", RemoteTopicPublisher::new,
                 MapView.class);
@@ -167,12 +193,25 @@ public class VanillaAsset implements Asset, Closeable {
     }
 
     public void enableTranslatingValuesToBytesStore() {
+        enableTranslatingValuesToBytesStore(0);
+    }
+
+    /**
+     * @param compressAbove values of at least this many bytes are compressed before they are
+     *                      stored, or 0 to not compress any.
+     */
+    public void enableTranslatingValuesToBytesStore(int compressAbove) {
+        WrappingViewFactory<AuthenticatedKeyValueStore, AuthenticatedKeyValueStore> stored = compressAbove > 0
+                ? CompressingKeyValueStore.above(compressAbove)
+                : (rc, asset, kvStore) -> kvStore;
         addWrappingRule(ObjectKeyValueStore.class, "{Marshalling} string,string map",
                 (rc, asset) -> rc.keyType() == String.class && rc.valueType() == String.class,
-                VanillaStringStringKeyValueStore::new, AuthenticatedKeyValueStore.class);
+                (rc, asset, kvStore) -> new VanillaStringStringKeyValueStore(rc, asset, stored.create(rc, asset, kvStore)),
+                AuthenticatedKeyValueStore.class);
         addWrappingRule(ObjectKeyValueStore.class, "{Marshalling} string,marshallable map",
                 (rc, asset) -> rc.keyType() == String.class && Marshallable.class.isAssignableFrom(rc.valueType()),
-                VanillaStringMarshallableKeyValueStore::new, AuthenticatedKeyValueStore.class);
+                (rc, asset, kvStore) -> new VanillaStringMarshallableKeyValueStore(rc, asset, stored.create(rc, asset, kvStore)),
+                AuthenticatedKeyValueStore.class);
 
         addLeafRule(RawKVSSubscription.class, LAST + " vanilla",
                 VanillaKVSSubscription::new);
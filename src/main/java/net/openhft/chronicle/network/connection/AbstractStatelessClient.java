@@ -23,7 +23,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -139,6 +143,51 @@ public abstract class AbstractStatelessClient<E extends ParameterizeWireKey> imp
         return readWire(tid, startTime, reply, consumerIn);
     }
 
+    /**
+     * sends the event without waiting for its reply.  The reply is read by the hub's reader thread,
+     * matched on its tid, so many requests can be in flight on one connection without a thread
+     * waiting for each.
+     *
+     * @return a future completed with the reply, or failed if the server throws or the reply
+     * doesn't arrive in time.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> proxyReturnWireConsumerInOutAsync(@NotNull final WireKey eventId,
+                                                                     @NotNull final WireKey reply,
+                                                                     @Nullable final Consumer<ValueOut> consumerOut,
+                                                                     @NotNull final Function<ValueIn, T> consumerIn) {
+        final long startTime = System.currentTimeMillis();
+        final long timeoutTime = startTime + hub.timeoutMs;
+        final CompletableFuture<T> failed = new CompletableFuture<>();
+        try {
+            if (!hub.acquireAsyncSlot(timeoutTime)) {
+                failed.completeExceptionally(new TimeoutException("no free slot for an asynchronous request after "
+                        + hub.timeoutMs + " ms, " + hub.asyncRequestsInFlight() + " in flight"));
+                return failed;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        final long tid = hub.nextUniqueTransaction(startTime);
+        final AsyncReply<T> asyncReply = new AsyncReply<>(tid, timeoutTime, inWire -> {
+            final StringBuilder replyName = new StringBuilder();
+            final List<T> result = new ArrayList<>(1);
+            inWire.readDocument(null, d -> result.add(readReply(d, reply, consumerIn, replyName)));
+            return result.isEmpty() ? null : result.get(0);
+        }, hub::releaseAsyncSlot);
+        hub.expectReply(asyncReply);
+        try {
+            sendEventForKnownTID(tid, startTime, eventId, consumerOut);
+        } catch (Throwable t) {
+            hub.cancelReply(asyncReply);
+            asyncReply.fail(t);
+        }
+        return asyncReply.future;
+    }
+
     @SuppressWarnings("SameParameterValue")
     protected void proxyReturnVoid(@NotNull final WireKey eventId,
                                    @Nullable final Consumer<ValueOut> consumer) {
@@ -178,6 +227,32 @@ public abstract class AbstractStatelessClient<E extends ParameterizeWireKey> imp
         return tid;
     }
 
+    private void sendEventForKnownTID(final long tid,
+                                      final long startTime,
+                                      @NotNull final WireKey eventId,
+                                      @Nullable final Consumer<ValueOut> consumer) {
+        if (hub.outBytesLock().isHeldByCurrentThread())
+            throw new IllegalStateException("Cannot view map while debugging");
+        hub.outBytesLock().lock();
+        try {
+            hub.startTime(startTime);
+            writeMetaDataForKnownTID(tid);
+            hub.outWire().writeDocument(false, wireOut -> {
+
+                final ValueOut valueOut = wireOut.writeEventName(eventId);
+
+                if (consumer == null)
+                    valueOut.marshallable(WriteMarshallable.EMPTY);
+                else
+                    consumer.accept(valueOut);
+            });
+
+            hub.writeSocket(hub.outWire());
+        } finally {
+            hub.outBytesLock().unlock();
+        }
+    }
+
     protected void sendEventAsync(@NotNull final WireKey eventId,
                                   @Nullable final Consumer<ValueOut> consumer) {
         if (hub.outBytesLock().isHeldByCurrentThread())
@@ -259,6 +334,15 @@ public abstract class AbstractStatelessClient<E extends ParameterizeWireKey> imp
     }
 
     protected <R> R readReply(@NotNull WireIn wireIn, @NotNull WireKey replyId, @NotNull Function<ValueIn, R> function) {
+        return readReply(wireIn, replyId, function, eventName);
+    }
+
+    /**
+     * @param eventName to read the name of the reply into, as replies can be read concurrently
+     *                  on the reader thread and the callers' threads.
+     */
+    private static <R> R readReply(@NotNull WireIn wireIn, @NotNull WireKey replyId,
+                                   @NotNull Function<ValueIn, R> function, @NotNull StringBuilder eventName) {
         final ValueIn event = wireIn.read(eventName);
 
         if (replyId.contentEquals(eventName))
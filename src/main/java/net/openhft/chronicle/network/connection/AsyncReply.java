@@ -0,0 +1,84 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.network.connection;
+
+import net.openhft.chronicle.wire.WireIn;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * A reply which is waited for without parking a thread.  The hub's reader thread reads the reply
+ * when it arrives, and the future is completed in the common fork-join pool, so a caller's
+ * continuations can't hold up, or deadlock, the reader thread.
+ */
+final class AsyncReply<T> {
+    final long tid;
+    final long timeoutTime;
+    @NotNull
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    @NotNull
+    private final Function<WireIn, T> reader;
+    @NotNull
+    private final Runnable onDone;
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    /**
+     * @param tid         of the request
+     * @param timeoutTime after which the future fails with a TimeoutException
+     * @param reader      reads the reply document
+     * @param onDone      called once when the reply is read, fails or times out
+     */
+    AsyncReply(long tid, long timeoutTime, @NotNull Function<WireIn, T> reader, @NotNull Runnable onDone) {
+        this.tid = tid;
+        this.timeoutTime = timeoutTime;
+        this.reader = reader;
+        this.onDone = onDone;
+    }
+
+    // a reply which arrives after the request timed out is discarded.
+    void onReply(@NotNull WireIn inWire) {
+        if (isDone())
+            return;
+        T result;
+        try {
+            result = reader.apply(inWire);
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        if (done.compareAndSet(false, true)) {
+            onDone.run();
+            ForkJoinPool.commonPool().execute(() -> future.complete(result));
+        }
+    }
+
+    boolean isDone() {
+        return done.get();
+    }
+
+    void fail(@NotNull Throwable t) {
+        if (done.compareAndSet(false, true)) {
+            onDone.run();
+            ForkJoinPool.commonPool().execute(() -> future.completeExceptionally(t));
+        }
+    }
+}
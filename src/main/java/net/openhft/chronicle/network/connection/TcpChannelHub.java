@@ -45,6 +45,7 @@ import java.nio.channels.SocketChannel;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -70,6 +71,12 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
 
     public static final int HEATBEAT_PING_PERIOD = getInteger("heartbeat.ping.period", 3_000);
     public static final int HEATBEAT_TIMEOUT_PERIOD = getInteger("heartbeat.timeout", 5_000);
+    // the most asynchronous requests which can be waiting for a reply on one connection.
+    public static final int ASYNC_MAX_IN_FLIGHT = getInteger("async.max.in.flight", 1024);
+    private static final int ASYNC_TIMEOUT_CHECK_MS = 100;
+    // how long a timed out request waits for its reply to be discarded, a reply to an unknown tid
+    // drops the connection.
+    private static final int ASYNC_LATE_REPLY_MS = getInteger("async.late.reply.ms", 60_000);
 
     public static final int SIZE_OF_SIZE = 4;
     private static final Logger LOG = LoggerFactory.getLogger(TcpChannelHub.class);
@@ -84,6 +91,7 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
     private final ReentrantLock outBytesLock = new ReentrantLock();
     @NotNull
     private final AtomicLong transactionID = new AtomicLong(0);
+    private final Semaphore asyncInFlight = new Semaphore(ASYNC_MAX_IN_FLIGHT);
     private final SessionProvider sessionProvider;
     @NotNull
     private final TcpSocketConsumer tcpSocketConsumer;
@@ -592,6 +600,41 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
         this.startTime = startTime;
     }
 
+    /**
+     * waits for one of the ASYNC_MAX_IN_FLIGHT slots for an asynchronous request on this
+     * connection.
+     *
+     * @return false if no slot became free before the timeoutTime.
+     */
+    boolean acquireAsyncSlot(long timeoutTime) throws InterruptedException {
+        return asyncInFlight.tryAcquire(Math.max(0, timeoutTime - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    void releaseAsyncSlot() {
+        asyncInFlight.release();
+    }
+
+    /**
+     * @return the number of asynchronous requests waiting for a reply.
+     */
+    public int asyncRequestsInFlight() {
+        return ASYNC_MAX_IN_FLIGHT - asyncInFlight.availablePermits();
+    }
+
+    /**
+     * registers a reply before its request is sent, so the reader thread can pass it on as soon
+     * as it arrives.
+     */
+    void expectReply(@NotNull AsyncReply<?> asyncReply) {
+        checkClosed();
+        tcpSocketConsumer.map.put(asyncReply.tid, asyncReply);
+    }
+
+    void cancelReply(@NotNull AsyncReply<?> asyncReply) {
+        tcpSocketConsumer.map.remove(asyncReply.tid, asyncReply);
+    }
+
     void checkClosed() {
         if (closed)
             throw new IllegalStateException("Closed");
@@ -651,7 +694,9 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
         }
 
         public void onConnectionClosed() {
-
+            // the replies to requests sent on this connection will never arrive.
+            failAsyncReplies(new ConnectionClosedException(format("The connection to the server " +
+                    "{0}:{1} was closed", hostname, port)));
             map.values().forEach(v -> {
                 if (v instanceof AsyncSubscription) {
                     ((AsyncSubscription) v).onClose();
@@ -661,6 +706,38 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
             });
         }
 
+        private void failAsyncReplies(@NotNull Throwable t) {
+            map.values().forEach(v -> {
+                if (v instanceof AsyncReply && map.remove(((AsyncReply) v).tid, v))
+                    ((AsyncReply) v).fail(t);
+            });
+        }
+
+        private long lastAsyncTimeoutCheck = 0;
+
+        /**
+         * fails the asynchronous requests whose reply has not arrived by their timeout.  They stay
+         * registered so a late reply is discarded, until it arrives or ASYNC_LATE_REPLY_MS later.
+         */
+        private void failExpiredAsyncReplies() {
+            long now = System.currentTimeMillis();
+            if (now - lastAsyncTimeoutCheck < ASYNC_TIMEOUT_CHECK_MS)
+                return;
+            lastAsyncTimeoutCheck = now;
+            map.values().forEach(v -> {
+                if (v instanceof AsyncReply) {
+                    AsyncReply asyncReply = (AsyncReply) v;
+                    if (now <= asyncReply.timeoutTime)
+                        return;
+                    if (!asyncReply.isDone())
+                        asyncReply.fail(new TimeoutException("timeoutTime=" + asyncReply.timeoutTime
+                                + ", tid=" + asyncReply.tid));
+                    if (now > asyncReply.timeoutTime + ASYNC_LATE_REPLY_MS)
+                        map.remove(asyncReply.tid, asyncReply);
+                }
+            });
+        }
+
         /**
          * @param wireFunction converts bytes into wire, ie TextWire or BinaryWire
          * @param provider     used to re-establish a socket connection when/if the socket
@@ -868,7 +945,13 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
                 onMessageReceived();
                 ((AsyncSubscription) o).onConsumer(inWire);
 
-                // for async
+                // for a request which doesn't wait for its reply
+            } else if (o instanceof AsyncReply) {
+                blockingRead(inWire, messageSize);
+                logToStandardOutMessageReceived(inWire);
+                onMessageReceived();
+                ((AsyncReply) o).onReply(inWire);
+
             } else {
 
                 final Bytes bytes = (Bytes) o;
@@ -1042,6 +1125,8 @@ public class TcpChannelHub implements View, Closeable, SocketChannelProvider {
             if (millisecondsSinceLastMessageReceived >= HEATBEAT_PING_PERIOD && !awaitingHeartbeat.get())
                 sendHeartbeat();
 
+            failExpiredAsyncReplies();
+
             if (TcpChannelHub.this.closed)
                 throw new InvalidEventHandlerException();
 
@@ -0,0 +1,97 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.map.FilePerKeyValueStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static net.openhft.chronicle.engine.Chassis.*;
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class FilePerKeyValueStoreIndexTest {
+    public static final String NAME = "fileperkvindex";
+    private Asset asset;
+    private FilePerKeyValueStore store;
+
+    @Before
+    public void setUp() {
+        resetChassis();
+        enableTranslatingValuesToBytesStore();
+        asset = acquireAsset(requestContext(NAME));
+        store = newStore();
+        store.clear();
+    }
+
+    private FilePerKeyValueStore newStore() {
+        return new FilePerKeyValueStore(requestContext(NAME).basePath(OS.TARGET).type(String.class), asset);
+    }
+
+    @After
+    public void tearDown() {
+        store.clear();
+        store.close();
+    }
+
+    @Test
+    public void keysAreIndexed() throws IOException {
+        for (int i = 0; i < 100; i++)
+            store.put("key-" + i, Bytes.from("value-" + i));
+        store.remove("key-0");
+        assertEquals(99, store.longSize());
+        assertTrue(store.containsKey("key-1"));
+        assertFalse(store.containsKey("key-0"));
+
+        // a new store reads the keys already on disk, skipping hidden files.
+        Files.write(Paths.get(OS.TARGET, NAME, ".hidden"), new byte[1]);
+        store.close();
+        store = newStore();
+        assertEquals(99, store.longSize());
+
+        Set<String> keys = new TreeSet<>();
+        for (Iterator<String> it = store.keySetIterator(); it.hasNext(); )
+            keys.add(it.next());
+        assertEquals(99, keys.size());
+        assertFalse(keys.contains(".hidden"));
+
+        store.clear();
+        assertEquals(0, store.longSize());
+        Files.delete(Paths.get(OS.TARGET, NAME, ".hidden"));
+    }
+
+    @Test
+    public void heldWritesAreIndexed() {
+        store.writeBehind(60_000, 0);
+        store.put("key", Bytes.from("value"));
+        assertEquals(1, store.longSize());
+        store.remove("key");
+        assertEquals(0, store.longSize());
+        assertEquals(1, store.flush());
+    }
+}
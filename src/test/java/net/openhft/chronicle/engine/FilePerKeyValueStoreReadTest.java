@@ -0,0 +1,105 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.BytesUtil;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.map.FilePerKeyValueStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.openhft.chronicle.engine.Chassis.*;
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class FilePerKeyValueStoreReadTest {
+    public static final String NAME = "fileperkvread";
+    private FilePerKeyValueStore store;
+
+    @Before
+    public void setUp() {
+        resetChassis();
+        enableTranslatingValuesToBytesStore();
+        Asset asset = acquireAsset(requestContext(NAME));
+        store = new FilePerKeyValueStore(requestContext(NAME).basePath(OS.TARGET).type(String.class)
+                .largeReadBytes(1024).contentCacheBytes(100), asset);
+        store.clear();
+    }
+
+    @After
+    public void tearDown() {
+        store.clear();
+        store.close();
+    }
+
+    @Test
+    public void smallValuesAreCachedWithinTheBudget() {
+        for (int i = 0; i < 20; i++)
+            store.put("key-" + i, Bytes.from("value-" + (100 + i)));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("value-" + (100 + i), BytesUtil.to8bitString(store.get("key-" + i)));
+            assertEquals("value-" + (100 + i), BytesUtil.to8bitString(store.get("key-" + i)));
+        }
+        Map<String, String> metrics = metrics();
+        assertTrue(Long.parseLong(metrics.get("contentCacheHits")) > 0);
+        assertTrue(Long.parseLong(metrics.get("contentCacheBytes")) <= 100);
+        assertTrue(Long.parseLong(metrics.get("contentCacheEvictions")) > 0);
+    }
+
+    @Test
+    public void largeValuesAreReadIntoTheirOwnBuffer() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4096; i++)
+            sb.append((char) ('a' + i % 26));
+        store.put("large", Bytes.from(sb.toString()));
+
+        BytesStore value = store.get("large");
+        assertEquals(sb.toString(), BytesUtil.to8bitString(value));
+        assertTrue(Long.parseLong(metrics().get("largeReads")) > 0);
+    }
+
+    @Test
+    public void largeValuesOutliveTheirFile() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4096; i++)
+            sb.append((char) ('a' + i % 26));
+        store.put("large", Bytes.from(sb.toString()));
+
+        BytesStore value = store.get("large");
+        // a view of the file would fail to read once it is truncated.
+        try (RandomAccessFile raf = new RandomAccessFile(new File(OS.TARGET + "/" + NAME, "large"), "rw")) {
+            raf.setLength(0);
+        }
+        assertEquals(sb.toString(), BytesUtil.to8bitString(value));
+    }
+
+    private Map<String, String> metrics() {
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        return metrics;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesUtil;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.map.FilePerKeyValueStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static net.openhft.chronicle.engine.Chassis.*;
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class FilePerKeyValueStoreWriteBehindTest {
+    public static final String NAME = "fileperkvwritebehind";
+    private FilePerKeyValueStore store;
+
+    @Before
+    public void setUp() {
+        resetChassis();
+        enableTranslatingValuesToBytesStore();
+        Asset asset = acquireAsset(requestContext(NAME));
+        store = new FilePerKeyValueStore(requestContext(NAME).basePath(OS.TARGET).type(String.class), asset);
+        store.clear();
+        // long enough that only flush() writes in this test.
+        store.writeBehind(60_000, 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.clear();
+        store.close();
+    }
+
+    @Test
+    public void writesAreCoalescedUntilFlushed() throws IOException {
+        Path path = Paths.get(OS.TARGET, NAME, "key");
+        for (int i = 0; i < 100; i++)
+            store.put("key", Bytes.from("value-" + i));
+
+        assertFalse(Files.exists(path));
+        assertEquals("value-99", BytesUtil.to8bitString(store.get("key")));
+
+        assertEquals(1, store.flush());
+        assertEquals("value-99", new String(Files.readAllBytes(path)));
+
+        store.remove("key");
+        assertNull(store.get("key"));
+        assertTrue(Files.exists(path));
+
+        assertEquals(1, store.flush());
+        assertFalse(Files.exists(path));
+        assertEquals(0, store.flush());
+    }
+}
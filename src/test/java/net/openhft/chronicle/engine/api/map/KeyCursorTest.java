@@ -0,0 +1,54 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.api.map;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class KeyCursorTest {
+
+    @Test
+    public void looksUpEachKeyAsItIsReached() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("c", "C");
+        List<String> looked = new ArrayList<>();
+        KeyCursor<String, String> cursor = new KeyCursor<>(new ArrayList<>(map.keySet()).iterator(), k -> {
+            looked.add(k);
+            return map.get(k);
+        });
+
+        assertEquals("A", cursor.next());
+        assertEquals(Arrays.asList("a"), looked);
+        // removed before it is reached.
+        map.remove("b");
+        assertEquals("C", cursor.next());
+        assertFalse(cursor.hasNext());
+        assertEquals(Arrays.asList("a", "b", "c"), looked);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void noKeys() {
+        KeyCursor<String, String> cursor = new KeyCursor<>(Collections.<String>emptyIterator(), k -> k);
+        assertFalse(cursor.hasNext());
+        cursor.next();
+    }
+}
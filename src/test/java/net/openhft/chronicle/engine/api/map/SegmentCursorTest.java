@@ -0,0 +1,63 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.api.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class SegmentCursorTest {
+
+    @Test
+    public void readsOneSegmentAtATime() {
+        List<Integer> read = new ArrayList<>();
+        SegmentCursor<String> cursor = new SegmentCursor<>(4, (segment, consumer) -> {
+            read.add(segment);
+            // segment 2 is empty
+            if (segment != 2) {
+                consumer.accept(segment + "a");
+                consumer.accept(segment + "b");
+            }
+        });
+
+        assertTrue(cursor.hasNext());
+        assertEquals(Arrays.asList(0), read);
+        assertEquals("0a", cursor.next());
+        assertEquals("0b", cursor.next());
+        assertEquals(Arrays.asList(0), read);
+
+        assertEquals("1a", cursor.next());
+        assertEquals("1b", cursor.next());
+        assertEquals("3a", cursor.next());
+        assertEquals("3b", cursor.next());
+        assertFalse(cursor.hasNext());
+        assertEquals(Arrays.asList(0, 1, 2, 3), read);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void emptyStore() {
+        SegmentCursor<String> cursor = new SegmentCursor<>(1, (segment, consumer) -> {
+        });
+        assertFalse(cursor.hasNext());
+        cursor.next();
+    }
+}
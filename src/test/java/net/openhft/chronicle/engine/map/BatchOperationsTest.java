@@ -0,0 +1,72 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.MapView;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchOperationsTest {
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+    }
+
+    @Test
+    public void batchesNotifyOneEventPerEntry() {
+        MapView<String, String, String> map = Chassis.acquireMap("batch", String.class, String.class);
+        List<MapEvent> events = new ArrayList<>();
+        Chassis.registerSubscriber("batch", MapEvent.class, events::add);
+
+        map.put("a", "old");
+        events.clear();
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a", "one");
+        entries.put("b", "two");
+        entries.put("c", "three");
+        map.putAll(entries);
+
+        assertEquals(3, events.size());
+        assertTrue(events.get(0) instanceof UpdatedEvent);
+        assertEquals("old", events.get(0).oldValue());
+        assertTrue(events.get(1) instanceof InsertedEvent);
+        assertTrue(events.get(2) instanceof InsertedEvent);
+
+        Map<String, String> found = map.getAll(Arrays.asList("c", "x", "a"));
+        assertEquals("{c=three, a=one}", found.toString());
+
+        events.clear();
+        map.removeAll(Arrays.asList("b", "x", "c"));
+        assertEquals(2, events.size());
+        assertTrue(events.get(0) instanceof RemovedEvent);
+        assertEquals("b", events.get(0).key());
+        assertEquals("three", events.get(1).oldValue());
+        assertEquals(1, map.size());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class BoundedKeyValueStoreTest {
+    private final List<MapEvent<String, String>> events = new ArrayList<>();
+    private Asset asset;
+    private VanillaKVSSubscription<String, String, String> subscription;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        asset = Chassis.acquireAsset(requestContext("bounded"));
+        subscription = new VanillaKVSSubscription<>((Class) null, asset);
+        subscription.registerSubscriber(requestContext().type(MapEvent.class).bootstrap(false), events::add);
+    }
+
+    private BoundedKeyValueStore<String, String, String> store(long maxEntries, long maxBytes, EvictionPolicy policy) {
+        return new BoundedKeyValueStore<>(asset, subscription, maxEntries, maxBytes, policy);
+    }
+
+    @Test
+    public void lruEvictsTheLeastRecentlyUsed() {
+        BoundedKeyValueStore<String, String, String> store = store(3, 0, EvictionPolicy.LRU);
+        store.put("a", "1");
+        store.put("b", "2");
+        store.put("c", "3");
+        store.get("a");
+        store.put("d", "4");
+
+        assertEquals(3, store.longSize());
+        assertNull(store.get("b"));
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof RemovedEvent);
+        assertEquals("b", events.get(0).key());
+    }
+
+    @Test
+    public void bytesAreBounded() {
+        BoundedKeyValueStore<String, String, String> store = store(0, 1000, EvictionPolicy.LRU);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            sb.append('x');
+        for (int i = 0; i < 5; i++)
+            store.put("k" + i, sb.toString());
+
+        assertEquals(3, store.longSize());
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertTrue(Long.parseLong(metrics.get("estimatedBytes")) <= 1000);
+        assertEquals("2", metrics.get("evictions"));
+    }
+
+    @Test
+    public void valuesLargerThanMaxBytesAreRejected() {
+        BoundedKeyValueStore<String, String, String> store = store(0, 200, EvictionPolicy.LRU);
+        store.put("a", "1");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            sb.append('x');
+        try {
+            store.put("big", sb.toString());
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals("1", store.get("a"));
+        assertFalse(store.containsKey("big"));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void lfuNeverEvictsTheEntryJustWritten() {
+        BoundedKeyValueStore<String, String, String> store = store(2, 0, EvictionPolicy.LFU);
+        store.put("a", "1");
+        store.put("b", "2");
+        for (int i = 0; i < 3; i++) {
+            store.get("a");
+            store.get("b");
+        }
+        store.put("c", "3");
+
+        assertEquals(2, store.longSize());
+        assertEquals("3", store.get("c"));
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof RemovedEvent);
+        assertFalse("c".equals(events.get(0).key()));
+    }
+
+    @Test
+    public void lfuEvictsTheLeastFrequentlyUsed() {
+        BoundedKeyValueStore<String, String, String> store = store(2, 0, EvictionPolicy.LFU);
+        store.put("a", "1");
+        for (int i = 0; i < 3; i++)
+            store.get("a");
+        store.put("b", "2");
+        store.put("c", "3");
+
+        assertEquals("1", store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals("3", store.get("c"));
+    }
+
+    @Test
+    public void tinyLfuKeepsHotEntriesThroughAScan() {
+        BoundedKeyValueStore<String, String, String> store = store(100, 0, EvictionPolicy.TINY_LFU);
+        for (int i = 0; i < 50; i++)
+            store.put("hot" + i, "value");
+        for (int j = 0; j < 5; j++)
+            for (int i = 0; i < 50; i++)
+                store.get("hot" + i);
+        for (int i = 0; i < 1000; i++)
+            store.put("scan" + i, "value");
+
+        int hot = 0;
+        for (int i = 0; i < 50; i++)
+            if (store.containsKey("hot" + i))
+                hot++;
+        assertTrue("hot entries kept " + hot, hot >= 45);
+        assertEquals(100, store.longSize());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.BytesUtil;
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class CompressingKeyValueStoreTest {
+    private VanillaSubscriptionKeyValueStore<String, Bytes, BytesStore> underlying;
+    private CompressingKeyValueStore<String> store;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        Asset asset = Chassis.acquireAsset(requestContext("compressed"));
+        underlying = new VanillaSubscriptionKeyValueStore<>(requestContext(), asset, new VanillaKeyValueStore<>(asset));
+        store = new CompressingKeyValueStore<>(asset, underlying, 256);
+    }
+
+    @Test
+    public void largeValuesAreStoredCompressed() {
+        Bytes<?> document = Bytes.elasticByteBuffer();
+        for (int i = 0; i < 1000; i++)
+            document.append("line ").append(i % 10).append(" of a repetitive document\n");
+        store.put("doc", document);
+
+        BytesStore stored = underlying.get("doc");
+        assertTrue(CompressingKeyValueStore.isCompressed(stored));
+        assertTrue(stored.readRemaining() * 5 < document.readRemaining());
+
+        assertEquals(BytesUtil.to8bitString(document), BytesUtil.to8bitString(store.get("doc")));
+        Bytes<?> using = Bytes.elasticByteBuffer();
+        assertSame(using, store.getUsing("doc", using));
+        assertEquals(document.readRemaining(), using.readRemaining());
+
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("1", metrics.get("compressedValues"));
+    }
+
+    @Test
+    public void smallValuesAreStoredAsIs() {
+        Bytes<?> small = Bytes.elasticByteBuffer();
+        small.append("tiny");
+        store.put("small", small);
+
+        assertFalse(CompressingKeyValueStore.isCompressed(underlying.get("small")));
+        assertEquals("tiny", BytesUtil.to8bitString(store.get("small")));
+    }
+
+    @Test
+    public void plainValuesWhichLookEncodedAreEscaped() {
+        for (String text : new String[]{"\u00FFDFL\u0000\u0000\u0000\u0010 not compressed", "\u00FFRAWish"}) {
+            Bytes<?> value = Bytes.elasticByteBuffer();
+            value.append8bit(text);
+            store.put("odd", value);
+
+            assertTrue(CompressingKeyValueStore.isEscaped(underlying.get("odd")));
+            assertEquals(text, BytesUtil.to8bitString(store.get("odd")));
+        }
+    }
+
+    @Test
+    public void valuesStoredBeforeCompressionStillMatch() {
+        Bytes<?> document = Bytes.elasticByteBuffer();
+        for (int i = 0; i < 1000; i++)
+            document.append("line ").append(i % 10).append(" of a repetitive document\n");
+        underlying.put("doc", document);
+
+        assertTrue(store.containsValue(document));
+        Bytes<?> small = Bytes.elasticByteBuffer();
+        small.append("replaced");
+        assertTrue(store.replaceIfEqual("doc", document, small));
+        assertEquals("replaced", BytesUtil.to8bitString(store.get("doc")));
+    }
+}
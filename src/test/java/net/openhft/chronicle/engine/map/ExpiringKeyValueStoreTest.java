@@ -0,0 +1,128 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class ExpiringKeyValueStoreTest {
+    // far enough out that the event loop doesn't expire anything during a test.
+    static final long TTL = 60_000;
+
+    private final List<MapEvent<String, String>> events = new CopyOnWriteArrayList<>();
+    private ExpiringKeyValueStore<String, String, String> store;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        Asset asset = Chassis.acquireAsset(requestContext("expiring"));
+        VanillaSubscriptionKeyValueStore<String, String, String> underlying =
+                new VanillaSubscriptionKeyValueStore<>(requestContext(), asset, new VanillaKeyValueStore<>(asset));
+        underlying.subscription(true).registerSubscriber(requestContext().type(MapEvent.class).bootstrap(false), events::add);
+        store = new ExpiringKeyValueStore<>(requestContext().ttlMillis(0), asset, underlying);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void expiredEntriesAreRemovedAndNotified() {
+        store.put("a", "1", TTL, TimeUnit.MILLISECONDS);
+        store.put("b", "2");
+        assertEquals("1", store.get("a"));
+        events.clear();
+
+        assertEquals(1, store.expire(System.currentTimeMillis() + 2 * TTL, 10));
+        assertNull(store.get("a"));
+        assertEquals("2", store.get("b"));
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof RemovedEvent);
+        assertEquals("a", events.get(0).key());
+    }
+
+    @Test
+    public void expiryIsBoundedPerCall() {
+        for (int i = 0; i < 25; i++)
+            store.put("key" + i, "value", TTL, TimeUnit.MILLISECONDS);
+        long later = System.currentTimeMillis() + 2 * TTL;
+        assertEquals(10, store.expire(later, 10));
+        assertEquals(10, store.expire(later, 10));
+        assertEquals(5, store.expire(later, 10));
+        assertEquals(0, store.longSize());
+    }
+
+    @Test
+    public void replacingAnEntryReplacesItsDeadline() {
+        store.put("a", "1", TTL, TimeUnit.MILLISECONDS);
+        store.put("a", "2");
+        assertEquals(0, store.expire(System.currentTimeMillis() + 2 * TTL, 10));
+        assertEquals("2", store.get("a"));
+    }
+
+    @Test
+    public void entriesAreNotRemovedBeforeTheirDeadline() {
+        long now = System.currentTimeMillis();
+        store.put("a", "1", TTL, TimeUnit.MILLISECONDS);
+        assertEquals(0, store.expire(now + TTL - 1, 10));
+        assertEquals("1", store.get("a"));
+    }
+
+    @Test
+    public void eachKeyHasOneTimer() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++)
+            store.put("a", "v" + i, TTL * (i + 1), TimeUnit.MILLISECONDS);
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("1", metrics.get("pendingTimers"));
+
+        // the timer comes due at the first deadline and is scheduled again for the last.
+        assertEquals(0, store.expire(now + 2 * TTL, 10));
+        assertEquals("v99", store.get("a"));
+        assertEquals(1, store.expire(now + 101 * TTL, 10));
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    public void isAViewOfItsAsset() {
+        assertSame(store, store.asset().getView(ExpiringKeyValueStore.class));
+    }
+
+    @Test
+    public void entriesPastTheirDeadlineAreNotReturned() throws InterruptedException {
+        store.put("a", "1", 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(20);
+        assertNull(store.get("a"));
+        assertFalse(store.containsKey("a"));
+    }
+}
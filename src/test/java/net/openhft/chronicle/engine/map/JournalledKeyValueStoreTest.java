@@ -0,0 +1,166 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.api.tree.RequestContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class JournalledKeyValueStoreTest {
+    private final String basePath = OS.TARGET + "/journal-" + System.nanoTime();
+    private Asset asset;
+    private JournalledKeyValueStore<String, String, String> store;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        asset = Chassis.acquireAsset(requestContext("journalled"));
+    }
+
+    @After
+    public void tearDown() {
+        if (store != null)
+            store.close();
+    }
+
+    private JournalledKeyValueStore<String, String, String> open(long syncMillis) {
+        if (store != null)
+            store.close();
+        RequestContext rc = requestContext("journalled").keyType(String.class).valueType(String.class)
+                .journalSyncMillis(syncMillis);
+        return store = new JournalledKeyValueStore<>(rc, asset, new VanillaKeyValueStore<>(asset), basePath, "map");
+    }
+
+    @Test
+    public void replaysChangesOnRestart() {
+        JournalledKeyValueStore<String, String, String> store = open(0);
+        for (int i = 0; i < 1000; i++)
+            store.put("key-" + i, "value-" + i);
+        store.remove("key-1");
+        store.replace("key-2", "two");
+        store.putIfAbsent("key-3", "ignored");
+        assertTrue(store.replaceIfEqual("key-4", "value-4", "four"));
+        assertTrue(store.removeIfEqual("key-5", "value-5"));
+
+        store = open(0);
+        assertEquals(998, store.longSize());
+        assertNull(store.get("key-1"));
+        assertEquals("two", store.get("key-2"));
+        assertEquals("value-3", store.get("key-3"));
+        assertEquals("four", store.get("key-4"));
+        assertNull(store.get("key-5"));
+        assertEquals("value-999", store.get("key-999"));
+
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("1004", metrics.get("journalRecoveredRecords"));
+    }
+
+    @Test
+    public void replayStopsAtACorruptRecord() throws IOException {
+        File file = new File(basePath + ".journal");
+        file.getParentFile().mkdirs();
+        MappedJournal journal = new MappedJournal(file);
+        journal.append(MappedJournal.PUT, "key-1", "value-1");
+        long second = journal.position();
+        journal.append(MappedJournal.PUT, "key-2", "value-2");
+        journal.append(MappedJournal.PUT, "key-3", "value-3");
+        journal.close();
+
+        // flip a byte of the second record after its length and checksum.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(second + 10);
+            int b = raf.read();
+            raf.seek(second + 10);
+            raf.write(b ^ 0xFF);
+        }
+
+        List<Object> keys = new ArrayList<>();
+        journal = new MappedJournal(file);
+        assertEquals(1, journal.replay(String.class, String.class, (op, key, value) -> keys.add(key)));
+        assertEquals(second, journal.position());
+        journal.close();
+        assertEquals(Collections.singletonList("key-1"), keys);
+    }
+
+    @Test
+    public void clearIsReplayed() {
+        JournalledKeyValueStore<String, String, String> store = open(0);
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 100; i++)
+            entries.put("key-" + i, "value-" + i);
+        store.putAll(entries);
+        store.clear();
+        store.put("after", "clear");
+
+        store = open(0);
+        assertEquals(1, store.longSize());
+        assertEquals("clear", store.get("after"));
+    }
+
+    @Test
+    public void evictionsAreJournalled() {
+        RequestContext rc = requestContext("journalled").keyType(String.class).valueType(String.class)
+                .journalSyncMillis(0);
+        BoundedKeyValueStore<String, String, String> bounded = new BoundedKeyValueStore<>(asset,
+                new VanillaKVSSubscription<>((Class) null, asset), 3, 0, EvictionPolicy.LRU);
+        store = new JournalledKeyValueStore<>(rc, asset, bounded, basePath, "map");
+        for (String key : new String[]{"a", "b", "c", "d"})
+            store.put(key, key.toUpperCase());
+        assertNull(store.get("a"));
+
+        // replayed into an unbounded store, the evicted entry stays removed.
+        store = open(0);
+        assertEquals(3, store.longSize());
+        assertNull(store.get("a"));
+        assertEquals("D", store.get("d"));
+    }
+
+    @Test
+    public void compactionKeepsTheLatestValues() {
+        JournalledKeyValueStore<String, String, String> store = open(1000);
+        for (int i = 0; i < 20 * JournalledKeyValueStore.COMPACT_MIN_RECORDS; i++)
+            store.put("key-" + i % 100, "value-" + i);
+        store.housekeep(System.currentTimeMillis());
+
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("100", metrics.get("journalRecords"));
+
+        store = open(1000);
+        assertEquals(100, store.longSize());
+        long last = 20 * JournalledKeyValueStore.COMPACT_MIN_RECORDS - 1;
+        assertEquals("value-" + last, store.get("key-" + last % 100));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.TestMarshallable;
+import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.engine.server.WireType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MapQueryTest {
+    private MapView<String, String, String> map;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        map = Chassis.acquireMap("query", String.class, String.class);
+        for (int i = 0; i < 1000; i++)
+            map.put("key-" + i, (i % 10 == 0 ? "match-" : "other-") + i);
+    }
+
+    @Test
+    public void filtersAndProjects() {
+        Map<String, Integer> lengths = map.query((k, v) -> v.startsWith("match-"), String::length, Integer.MAX_VALUE);
+        assertEquals(100, lengths.size());
+        assertEquals(7, (int) lengths.get("key-0"));
+        assertEquals(9, (int) lengths.get("key-990"));
+
+        Map<String, String> entries = map.query((k, v) -> k.endsWith("-50"), Integer.MAX_VALUE);
+        assertEquals(1, entries.size());
+        assertEquals("match-50", entries.get("key-50"));
+    }
+
+    @Test
+    public void flyweightValuesAreCopied() {
+        Asset asset = Chassis.acquireAsset(requestContext("flyweight"));
+        VanillaStringMarshallableKeyValueStore<TestMarshallable> store = new VanillaStringMarshallableKeyValueStore<>(
+                new VanillaKVSSubscription<>(requestContext(), asset), asset, TestMarshallable.class,
+                new VanillaSubscriptionKeyValueStore<>(requestContext(), asset, new VanillaKeyValueStore<>(asset)),
+                WireType.BINARY, true);
+        assertTrue(store.reusesValues());
+        for (int i = 0; i < 10; i++) {
+            TestMarshallable tm = new TestMarshallable();
+            tm.setName(new StringBuilder("name-" + i));
+            tm.setCount(i);
+            store.put("key-" + i, tm);
+        }
+
+        Map<String, TestMarshallable> result = store.query((k, v) -> v.getCount() % 2 == 0, v -> v, Integer.MAX_VALUE);
+        assertEquals(5, result.size());
+        for (Map.Entry<String, TestMarshallable> entry : result.entrySet())
+            assertEquals(entry.getKey(), "key-" + entry.getValue().getCount());
+    }
+
+    @Test
+    public void limitsTheMatches() {
+        Set<String> keys = map.keysMatching((k, v) -> v.startsWith("other-"), 25);
+        assertEquals(25, keys.size());
+        for (String key : keys)
+            assertTrue(!key.endsWith("0"));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class NearCacheKeyValueStoreTest {
+    private VanillaSubscriptionKeyValueStore<String, String, String> server;
+    private NearCacheKeyValueStore<String, String> store;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        Asset asset = Chassis.acquireAsset(requestContext("near"));
+        server = new VanillaSubscriptionKeyValueStore<>(requestContext(), asset, new VanillaKeyValueStore<>(asset));
+        store = new NearCacheKeyValueStore<>(requestContext().nearCacheEntries(3), asset, server);
+    }
+
+    @Test
+    public void repeatedReadsAreHits() {
+        server.put("a", "1");
+        assertEquals("1", store.get("a"));
+        assertEquals("1", store.get("a"));
+        assertEquals("1", store.get("a"));
+
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("2", metrics.get("nearCacheHits"));
+        assertEquals("1", metrics.get("nearCacheMisses"));
+    }
+
+    @Test
+    public void changesOnTheServerUpdateTheCache() {
+        server.put("a", "1");
+        server.put("b", "2");
+        assertEquals("1", store.get("a"));
+        assertEquals("2", store.get("b"));
+
+        server.put("a", "one");
+        server.remove("b");
+        assertEquals("one", store.get("a"));
+        assertNull(store.get("b"));
+
+        store.put("a", "uno");
+        assertEquals("uno", store.get("a"));
+    }
+
+    @Test
+    public void onlyAChangeOfTheKeyReadStopsItBeingCached() {
+        Asset asset = Chassis.acquireAsset(requestContext("racing"));
+        String[] changeDuringRead = {null};
+        int[] changes = {0};
+        VanillaSubscriptionKeyValueStore<String, String, String> racing =
+                new VanillaSubscriptionKeyValueStore<String, String, String>(requestContext(), asset, new VanillaKeyValueStore<>(asset)) {
+                    @Override
+                    public String get(String key) {
+                        String value = super.get(key);
+                        if (changeDuringRead[0] != null)
+                            put(changeDuringRead[0], "late-" + ++changes[0]);
+                        return value;
+                    }
+                };
+        NearCacheKeyValueStore<String, String> store = new NearCacheKeyValueStore<>(requestContext(), asset, racing);
+        racing.put("a", "1");
+        racing.put("b", "2");
+
+        // b changes while a is read, and again while b is read.
+        changeDuringRead[0] = "b";
+        assertEquals("1", store.get("a"));
+        assertEquals("late-1", store.get("b"));
+        changeDuringRead[0] = null;
+
+        assertEquals("1", store.get("a"));
+        assertEquals("late-2", store.get("b"));
+        assertEquals("late-2", store.get("b"));
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("2", metrics.get("nearCacheHits"));
+        assertEquals("3", metrics.get("nearCacheMisses"));
+    }
+
+    @Test
+    public void leastRecentlyReadEntriesAreEvicted() {
+        for (String key : Arrays.asList("a", "b", "c", "d"))
+            server.put(key, key);
+        assertEquals(2, store.getAll(Arrays.asList("a", "b")).size());
+        store.get("c");
+        store.get("a");
+        store.get("d");
+
+        assertEquals(3, store.size());
+        Map<String, String> metrics = new HashMap<>();
+        store.addMetrics(metrics);
+        assertEquals("1", metrics.get("nearCacheEvictions"));
+        assertEquals("a", store.getAll(Arrays.asList("a")).get("a"));
+    }
+}
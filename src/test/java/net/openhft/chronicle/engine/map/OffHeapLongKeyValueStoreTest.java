@@ -0,0 +1,118 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import net.openhft.chronicle.engine.tree.VanillaAsset;
+import net.openhft.chronicle.wire.WireType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class OffHeapLongKeyValueStoreTest {
+    private OffHeapLongKeyValueStore<Long, Bytes, BytesStore> store;
+
+    @Before
+    public void setUp() {
+        store = new OffHeapLongKeyValueStore<>(new VanillaAsset(null, ""), Long.class, BytesStore.class, WireType.BINARY, 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static Bytes<ByteBuffer> value(long n, int longs) {
+        Bytes<ByteBuffer> bytes = Bytes.elasticByteBuffer();
+        for (int i = 0; i < longs; i++)
+            bytes.writeLong(n + i);
+        return bytes;
+    }
+
+    @Test
+    public void putGetRemoveWhileGrowing() {
+        int count = 10000;
+        for (long i = 0; i < count; i++)
+            assertFalse(store.writeValue(i * 31, value(i, (int) (i % 4))));
+        assertEquals(count, store.longSize());
+
+        // replace with larger values so the value memory is reallocated
+        for (long i = 0; i < count; i += 2)
+            assertTrue(store.writeValue(i * 31, value(i, 5)));
+
+        Bytes<ByteBuffer> using = Bytes.elasticByteBuffer();
+        for (long i = 0; i < count; i++) {
+            using.clear();
+            assertTrue(store.readValue(i * 31, using));
+            assertEquals(i % 2 == 0 ? 40 : i % 4 * 8, using.readRemaining());
+            if (using.readRemaining() > 0)
+                assertEquals(i, using.readLong());
+        }
+
+        for (long i = 0; i < count; i += 3)
+            assertTrue(store.removeKey(i * 31));
+        for (long i = 0; i < count; i++)
+            assertEquals(i % 3 != 0, store.containsKey(i * 31));
+        assertFalse(store.removeKey(-1));
+        assertEquals(count - (count + 2) / 3, store.longSize());
+    }
+
+    @Test
+    public void conditionalOperations() {
+        assertNull(store.putIfAbsent(1L, value(10, 1)));
+        assertEquals(10, store.putIfAbsent(1L, value(20, 1)).readLong(0));
+
+        assertFalse(store.replaceIfEqual(1L, value(20, 1), value(30, 1)));
+        assertTrue(store.replaceIfEqual(1L, value(10, 1), value(30, 1)));
+        assertEquals(30, store.replace(1L, value(40, 2)).readLong(0));
+        assertNull(store.replace(2L, value(40, 1)));
+        assertFalse(store.containsKey(2L));
+
+        assertFalse(store.removeIfEqual(1L, value(40, 1)));
+        assertTrue(store.removeIfEqual(1L, value(40, 2)));
+        assertEquals(0, store.longSize());
+    }
+
+    @Test
+    public void segmentsCoverAllKeys() throws InvalidSubscriberException {
+        for (long i = 0; i < 1000; i++)
+            store.put(i, value(i, 1));
+
+        Set<Long> keys = new HashSet<>();
+        for (int s = 0; s < store.segments(); s++) {
+            int segment = s;
+            store.entriesFor(s, e -> {
+                assertEquals(segment, store.segmentFor(e.key()));
+                assertEquals((long) e.key(), e.value().readLong(0));
+                assertTrue(keys.add(e.key()));
+            });
+        }
+        assertEquals(1000, keys.size());
+
+        store.clear();
+        assertEquals(0, store.longSize());
+        assertNull(store.get(1L));
+    }
+}
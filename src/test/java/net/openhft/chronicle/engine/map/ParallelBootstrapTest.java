@@ -0,0 +1,61 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.api.pubsub.InvalidSubscriberException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelBootstrapTest {
+
+    @Test
+    public void deliversInSegmentOrder() throws InvalidSubscriberException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int segments = 64, perSegment = 100;
+            List<Integer> received = new ArrayList<>();
+            ParallelBootstrap.<Integer>bootstrap(pool, "test", segments, (segment, consumer) -> {
+                for (int i = 0; i < perSegment; i++)
+                    consumer.accept(segment * perSegment + i);
+            }, received::add);
+
+            assertEquals(segments * perSegment, received.size());
+            for (int i = 0; i < received.size(); i++)
+                assertEquals(i, (int) received.get(i));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = InvalidSubscriberException.class)
+    public void stopsWhenSubscriberIsInvalid() throws InvalidSubscriberException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ParallelBootstrap.<Integer>bootstrap(pool, "test", 16, (segment, consumer) -> consumer.accept(segment), i -> {
+                if (i == 3)
+                    throw new InvalidSubscriberException();
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.ThreadMonitoringTest;
+import net.openhft.chronicle.engine.api.tree.Assetted;
+import net.openhft.chronicle.engine.map.MapClientTest.RemoteMapSupplier;
+import net.openhft.chronicle.engine.tree.VanillaAssetTree;
+import net.openhft.chronicle.wire.WireType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.*;
+
+public class RemoteKeyValueStoreAsyncTest extends ThreadMonitoringTest {
+    private RemoteMapSupplier<String, String> supplier;
+    private ConcurrentMap<String, String> map;
+    private RemoteKeyValueStore<String, String> store;
+
+    @Before
+    public void setUp() throws IOException {
+        supplier = new RemoteMapSupplier<>(String.class, String.class, WireType.BINARY,
+                new VanillaAssetTree().forTesting(), "async");
+        map = supplier.get();
+        store = (RemoteKeyValueStore<String, String>) ((Assetted) map).underlying();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        supplier.close();
+    }
+
+    @Test(timeout = 20000)
+    public void manyRequestsInFlight() {
+        List<CompletableFuture<Void>> puts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            puts.add(store.putAsync("key-" + i, "value-" + i));
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture[puts.size()])).join();
+        assertEquals(1000, map.size());
+
+        List<CompletableFuture<String>> gets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            gets.add(store.getAsync("key-" + i));
+        for (int i = 0; i < 1000; i++)
+            assertEquals("value-" + i, gets.get(i).join());
+    }
+
+    @Test(timeout = 20000)
+    public void asyncUpdates() {
+        assertNull(store.getAndPutAsync("a", "1").join());
+        assertEquals("1", store.getAndPutAsync("a", "2").join());
+        assertEquals("2", store.putIfAbsentAsync("a", "3").join());
+        assertTrue(store.containsKeyAsync("a").join());
+
+        Map<String, String> all = store.getAllAsync(Arrays.asList("a", "b")).join();
+        assertEquals(1, all.size());
+
+        assertEquals("2", store.getAndRemoveAsync("a").join());
+        assertFalse(store.containsKeyAsync("a").join());
+        store.putAsync("b", "1").join();
+        store.removeAsync("b").join();
+        assertNull(map.get("b"));
+    }
+}
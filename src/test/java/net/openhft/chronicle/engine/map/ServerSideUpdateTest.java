@@ -0,0 +1,130 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.ThreadMonitoringTest;
+import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.pubsub.Reference;
+import net.openhft.chronicle.engine.map.MapClientTest.RemoteMapSupplier;
+import net.openhft.chronicle.engine.tree.VanillaAssetTree;
+import net.openhft.chronicle.wire.WireType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ServerSideUpdateTest extends ThreadMonitoringTest {
+    private MapView<String, String, String> map;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        map = Chassis.acquireMap("updates", String.class, String.class);
+    }
+
+    @Test
+    public void concurrentUpdatesAreAtomic() throws Exception {
+        map.put("counter", "0");
+        ExecutorService es = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+            futures.add(es.submit(() -> {
+                for (int i = 0; i < 1000; i++)
+                    map.asyncUpdate("counter", (v, n) -> Integer.toString(Integer.parseInt(v) + n), 1);
+            }));
+        for (Future<?> future : futures)
+            future.get();
+        es.shutdown();
+        es.awaitTermination(1, TimeUnit.SECONDS);
+        assertEquals("4000", map.get("counter"));
+    }
+
+    @Test
+    public void updateReturnsTheResultOnly() {
+        map.put("key", "hello");
+        int length = map.syncUpdate("key", (v, s) -> v + s, " world", (v, a) -> v.length(), null);
+        assertEquals(11, length);
+        assertEquals("hello world", map.get("key"));
+
+        // a null result removes the entry
+        assertNull(map.syncUpdate("key", v -> null, v -> v));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void valuesModifiedInPlaceArePut() {
+        MapView<String, StringBuilder, StringBuilder> builders = Chassis.acquireMap("builders", String.class, StringBuilder.class);
+        builders.put("key", new StringBuilder("a"));
+        builders.asyncUpdate("key", v -> v.append('b'));
+        assertEquals("ab", builders.get("key").toString());
+    }
+
+    @Test
+    public void concurrentInPlaceUpdatesAreAtomic() throws Exception {
+        MapView<String, StringBuilder, StringBuilder> builders = Chassis.acquireMap("builders", String.class, StringBuilder.class);
+        builders.put("key", new StringBuilder());
+        ExecutorService es = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+            futures.add(es.submit(() -> {
+                for (int i = 0; i < 1000; i++)
+                    builders.asyncUpdate("key", v -> v.append('x'));
+            }));
+        for (Future<?> future : futures)
+            future.get();
+        es.shutdown();
+        assertEquals(4000, builders.get("key").length());
+    }
+
+    @Test
+    public void referenceAndWholeMapUpdates() {
+        Reference<String> ref = Chassis.acquireReference("updates/ref", String.class);
+        ref.set("a");
+        assertEquals("ab", ref.syncUpdate(v -> v + "b", v -> v));
+        assertEquals("ab", map.get("ref"));
+
+        map.put("other", "x");
+        int remaining = map.syncUpdate(m -> m.keySet().removeIf(k -> k.startsWith("o")), ConcurrentMap::size);
+        assertEquals(1, remaining);
+        assertEquals(2, (int) map.apply(m -> m.values().stream().mapToInt(String::length).sum()));
+    }
+
+    @Test(timeout = 20000)
+    public void functionsRunOnTheServer() throws IOException {
+        try (RemoteMapSupplier<String, String> supplier = new RemoteMapSupplier<>(String.class, String.class,
+                WireType.BINARY, new VanillaAssetTree().forTesting(), "server-side")) {
+            ConcurrentMap<String, String> remote = supplier.get();
+            MapView<String, String, String> view = (MapView<String, String, String>) remote;
+            remote.put("key", "1");
+            assertEquals("2", view.syncUpdate("key", (v, n) -> Integer.toString(Integer.parseInt(v) + n), 1,
+                    (v, a) -> v, null));
+            assertEquals(1, (int) view.apply("key", String::length));
+            assertEquals(1, (int) view.apply(ConcurrentMap::size));
+        }
+    }
+}
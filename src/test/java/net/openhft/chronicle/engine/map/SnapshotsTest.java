@@ -0,0 +1,127 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import net.openhft.chronicle.wire.Wire;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class SnapshotsTest {
+    private final File dir = new File(OS.TARGET, "snapshots-" + System.nanoTime());
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+    }
+
+    @Test
+    public void writeAndRestore() {
+        Map<String, String> map = Chassis.acquireMap("/snapshots/map", String.class, String.class);
+        for (int i = 0; i < 10000; i++)
+            map.put("key-" + i, "value-" + i);
+        ObjectKeyValueStore<String, String, String> store = Chassis.getAsset("/snapshots/map").getView(ObjectKeyValueStore.class);
+
+        File file = new File(dir, "map.snapshot");
+        assertEquals(10000, Snapshots.write(store, String.class, String.class, file));
+        assertArrayEquals(new Class[]{String.class, String.class}, Snapshots.types(file));
+
+        map.clear();
+        map.put("extra", "kept");
+        assertEquals(10000, Snapshots.restore(store, file));
+        assertEquals(10001, map.size());
+        assertEquals("value-1234", map.get("key-1234"));
+        assertEquals("kept", map.get("extra"));
+    }
+
+    @Test
+    public void restoreThroughSmallWindows() {
+        Map<String, String> map = Chassis.acquireMap("/snapshots/windows", String.class, String.class);
+        for (int i = 0; i < 10000; i++)
+            map.put("key-" + i, "value-" + i);
+        ObjectKeyValueStore<String, String, String> store = Chassis.getAsset("/snapshots/windows").getView(ObjectKeyValueStore.class);
+
+        File file = new File(dir, "windows.snapshot");
+        assertEquals(10000, Snapshots.write(store, String.class, String.class, file));
+
+        map.clear();
+        // records regularly span the end of a window.
+        assertEquals(10000, Snapshots.restore(store, file, 100));
+        assertEquals(10000, map.size());
+        assertEquals("value-9999", map.get("key-9999"));
+    }
+
+    @Test
+    public void recordsNeedNotBeReadToTheirEnd() throws Exception {
+        Map<String, String> map = Chassis.acquireMap("/snapshots/partial", String.class, String.class);
+        for (int i = 0; i < 1000; i++)
+            map.put("key-" + i, "value-" + i);
+        ObjectKeyValueStore<String, String, String> store = Chassis.getAsset("/snapshots/partial").getView(ObjectKeyValueStore.class);
+        File file = new File(dir, "partial.snapshot");
+        Snapshots.write(store, String.class, String.class, file);
+
+        int puts = 0;
+        try (FileChannel fc = new RandomAccessFile(file, "r").getChannel()) {
+            Snapshots.Records records = new Snapshots.Records(file, fc, fc.size(), 100);
+            Wire wire;
+            // the header isn't read at all, and only the op of each entry.
+            records.next();
+            while ((wire = records.next()) != null && wire.bytes().readByte() != Snapshots.END)
+                puts++;
+        }
+        assertEquals(1000, puts);
+    }
+
+    @Test
+    public void notASnapshot() throws Exception {
+        dir.mkdirs();
+        File file = new File(dir, "other.snapshot");
+        try (FileWriter fw = new FileWriter(file)) {
+            fw.write("hello world");
+        }
+        assertNull(Snapshots.types(file));
+    }
+
+    @Test
+    public void scheduleSnapshotsAndRestoresAMount() {
+        Chassis.acquireMap("/mount/a", String.class, String.class).put("hello", "world");
+        Chassis.acquireMap("/mount/b", String.class, Long.class).put("count", 42L);
+        Asset mount = Chassis.getAsset("/mount");
+        SnapshotSchedule schedule = new SnapshotSchedule(mount, dir);
+        assertEquals(2, schedule.snapshotAll());
+        assertTrue(new File(dir, "a.snapshot").exists());
+
+        Chassis.resetChassis();
+        schedule = new SnapshotSchedule(Chassis.acquireAsset(
+                requestContext("/mount")), dir);
+        assertEquals(2, schedule.restoreAll(Chassis.defaultSession()));
+        assertEquals("world", Chassis.acquireMap("/mount/a", String.class, String.class).get("hello"));
+        assertEquals(42L, (long) Chassis.acquireMap("/mount/b", String.class, Long.class).get("count"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.TestMarshallable;
+import net.openhft.chronicle.engine.api.map.MapView;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SortedKeyValueStoreTest {
+    private MapView<String, String, String> map;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        map = Chassis.acquireMap("sorted?sorted=true", String.class, String.class);
+        for (String ccy : "USD,GBP,JPY,CHF".split(","))
+            map.put("EUR/" + ccy, "eur" + ccy);
+        map.put("GBP/USD", "gbpUSD");
+        map.put("AUD/USD", "audUSD");
+    }
+
+    @Test
+    public void iteratesInKeyOrder() {
+        assertEquals(Arrays.asList("AUD/USD", "EUR/CHF", "EUR/GBP", "EUR/JPY", "EUR/USD", "GBP/USD"),
+                new ArrayList<>(map.keySet()));
+    }
+
+    @Test
+    public void entriesBetween() {
+        assertEquals(Arrays.asList("EUR/CHF", "EUR/GBP", "EUR/JPY", "EUR/USD"),
+                new ArrayList<>(map.entriesBetween("EUR/", true, "GBP/", false, 10).keySet()));
+        assertEquals(Arrays.asList("EUR/GBP", "EUR/JPY"),
+                new ArrayList<>(map.entriesBetween("EUR/CHF", false, "EUR/USD", false, 10).keySet()));
+        assertEquals(Arrays.asList("AUD/USD", "EUR/CHF"),
+                new ArrayList<>(map.entriesBetween(null, true, null, true, 2).keySet()));
+        assertEquals("eurJPY", map.entriesBetween("EUR/JPY", true, "EUR/JPY", true, 10).get("EUR/JPY"));
+    }
+
+    @Test
+    public void entriesWithPrefix() {
+        Map<String, String> page = map.entriesWithPrefix("EUR/", null, 3);
+        assertEquals(Arrays.asList("EUR/CHF", "EUR/GBP", "EUR/JPY"), new ArrayList<>(page.keySet()));
+        page = map.entriesWithPrefix("EUR/", "EUR/JPY", 3);
+        assertEquals(Collections.singletonList("EUR/USD"), new ArrayList<>(page.keySet()));
+        assertTrue(map.entriesWithPrefix("NZD/", null, 3).isEmpty());
+    }
+
+    @Test
+    public void pagesThroughAPrefix() {
+        List<String> keys = new ArrayList<>();
+        for (Iterator<Map.Entry<String, String>> it = map.prefixIterator("EUR/", 2); it.hasNext(); )
+            keys.add(it.next().getKey());
+        assertEquals(Arrays.asList("EUR/CHF", "EUR/GBP", "EUR/JPY", "EUR/USD"), keys);
+
+        keys.clear();
+        for (Iterator<Map.Entry<String, String>> it = map.rangeIterator("B", null, 4); it.hasNext(); )
+            keys.add(it.next().getKey());
+        assertEquals(Arrays.asList("EUR/CHF", "EUR/GBP", "EUR/JPY", "EUR/USD", "GBP/USD"), keys);
+    }
+
+    @Test
+    public void translatedMapsScan() {
+        Chassis.resetChassis();
+        Chassis.enableTranslatingValuesToBytesStore();
+        MapView<String, String, String> strings = Chassis.acquireMap("strings?sorted=true", String.class, String.class);
+        MapView<String, TestMarshallable, TestMarshallable> marshallables =
+                Chassis.acquireMap("marshallables?sorted=true", String.class, TestMarshallable.class);
+        for (String key : "EUR/USD,AUD/USD,EUR/GBP".split(",")) {
+            strings.put(key, key.toLowerCase());
+            TestMarshallable tm = new TestMarshallable();
+            tm.setName(new StringBuilder(key));
+            marshallables.put(key, tm);
+        }
+
+        Map<String, String> page = strings.entriesWithPrefix("EUR/", null, 10);
+        assertEquals(Arrays.asList("EUR/GBP", "EUR/USD"), new ArrayList<>(page.keySet()));
+        assertEquals("eur/gbp", page.get("EUR/GBP"));
+        assertEquals(Arrays.asList("aud/usd", "eur/gbp"),
+                new ArrayList<>(strings.entriesBetween(null, true, "EUR/USD", false, 10).values()));
+
+        Map<String, TestMarshallable> tms = marshallables.entriesBetween("B", true, null, true, 10);
+        assertEquals(Arrays.asList("EUR/GBP", "EUR/USD"), new ArrayList<>(tms.keySet()));
+        assertEquals("EUR/USD", tms.get("EUR/USD").getName().toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsortedMapsCannotScan() {
+        Chassis.acquireMap("unsorted", String.class, String.class)
+                .entriesBetween("A", true, "B", false, 10);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.engine.TestMarshallable;
+import net.openhft.chronicle.engine.server.WireType;
+
+import java.util.function.BiFunction;
+
+/**
+ * Compares the cost of encoding and decoding a Marshallable value, and its size, for each storage codec.
+ */
+public class StorageCodecMain {
+    public static void main(String[] args) {
+        int runs = 1_000_000;
+        TestMarshallable value = StorageCodecTest.sample();
+        TestMarshallable using = new TestMarshallable();
+        for (int t = 0; t < 5; t++) {
+            for (WireType codec : WireType.values()) {
+                Bytes bytes = Bytes.elasticByteBuffer();
+                BiFunction<TestMarshallable, Bytes, Bytes> encoder =
+                        VanillaStringMarshallableKeyValueStore.toBytes(TestMarshallable.class, codec);
+                BiFunction<BytesStore, TestMarshallable, TestMarshallable> decoder =
+                        VanillaStringMarshallableKeyValueStore.fromBytes(TestMarshallable.class, codec);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    bytes.clear();
+                    encoder.apply(value, bytes);
+                }
+                long mid = System.nanoTime();
+                for (int i = 0; i < runs; i++)
+                    decoder.apply(bytes, using);
+                long end = System.nanoTime();
+
+                System.out.printf("%-8s %3d bytes, encode %,6.1f ns, decode %,6.1f ns%n",
+                        codec, bytes.readRemaining(),
+                        (mid - start) / (double) runs, (end - mid) / (double) runs);
+            }
+            System.out.println();
+        }
+    }
+}
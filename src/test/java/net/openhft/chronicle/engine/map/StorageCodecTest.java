@@ -0,0 +1,70 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.engine.TestMarshallable;
+import net.openhft.chronicle.engine.server.WireType;
+import org.junit.Test;
+
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StorageCodecTest {
+    static TestMarshallable sample() {
+        TestMarshallable tm = new TestMarshallable();
+        tm.setName(new StringBuilder("hello world"));
+        tm.setCount(42);
+        return tm;
+    }
+
+    @Test
+    public void readsValuesWrittenWithAnyCodec() {
+        for (WireType writer : WireType.values()) {
+            Bytes bytes = Bytes.elasticByteBuffer();
+            BiFunction<TestMarshallable, Bytes, Bytes> toBytes =
+                    VanillaStringMarshallableKeyValueStore.toBytes(TestMarshallable.class, writer);
+            toBytes.apply(sample(), bytes);
+            assertEquals(writer, WireType.typeOf(bytes));
+
+            for (WireType reader : WireType.values()) {
+                BiFunction<BytesStore, TestMarshallable, TestMarshallable> fromBytes =
+                        VanillaStringMarshallableKeyValueStore.fromBytes(TestMarshallable.class, reader);
+                TestMarshallable tm = fromBytes.apply(bytes, null);
+                assertEquals(writer + " read as " + reader, "hello world", tm.getName().toString());
+                assertEquals(42, tm.getCount());
+            }
+        }
+    }
+
+    @Test
+    public void binaryIsSmallerThanText() {
+        long[] sizes = new long[WireType.values().length];
+        for (WireType codec : WireType.values()) {
+            Bytes bytes = Bytes.elasticByteBuffer();
+            VanillaStringMarshallableKeyValueStore.<TestMarshallable>toBytes(TestMarshallable.class, codec)
+                    .apply(sample(), bytes);
+            sizes[codec.ordinal()] = bytes.readRemaining();
+        }
+        assertTrue(sizes[WireType.BINARY.ordinal()] < sizes[WireType.TEXT.ordinal()]);
+        assertTrue(sizes[WireType.COMPACT.ordinal()] < sizes[WireType.BINARY.ordinal()]);
+    }
+}
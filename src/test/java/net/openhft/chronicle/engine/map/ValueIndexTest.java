@@ -0,0 +1,71 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.map.ValueIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ValueIndexTest {
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+    }
+
+    @Test
+    public void indexFollowsUpdates() {
+        MapView<String, String, String> map = Chassis.acquireMap("test?valueIndex=true", String.class, String.class);
+        assertNotNull(map.asset().getView(ValueIndex.class));
+
+        map.put("a", "one");
+        map.put("b", "two");
+        map.put("c", "one");
+        assertTrue(map.containsValue("one"));
+        assertFalse(map.containsValue("three"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), map.keysForValue("one"));
+
+        map.put("a", "three");
+        assertEquals(Collections.singleton("c"), map.keysForValue("one"));
+        assertTrue(map.containsValue("three"));
+
+        map.remove("c");
+        assertFalse(map.containsValue("one"));
+
+        Map<String, String> metrics = new HashMap<>();
+        ((VanillaValueIndex) map.asset().getView(ValueIndex.class)).addMetrics(metrics);
+        assertEquals("2", metrics.get("valueIndexKeys"));
+    }
+
+    @Test
+    public void withoutAnIndex() {
+        MapView<String, String, String> map = Chassis.acquireMap("test2", String.class, String.class);
+        map.put("a", "one");
+        assertNull(map.asset().getView(ValueIndex.class));
+        assertTrue(map.containsValue("one"));
+        assertEquals(Collections.singleton("a"), map.keysForValue("one"));
+    }
+}
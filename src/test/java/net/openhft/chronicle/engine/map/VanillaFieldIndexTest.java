@@ -0,0 +1,119 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.wire.Marshallable;
+import net.openhft.chronicle.wire.WireIn;
+import net.openhft.chronicle.wire.WireOut;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VanillaFieldIndexTest {
+    private MapView<String, Order, Order> map;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        map = Chassis.acquireMap("orders?hashIndexes=status&sortedIndexes=price", String.class, Order.class);
+        map.put("o1", new Order(Status.OPEN, 10.5));
+        map.put("o2", new Order(Status.FILLED, 9.0));
+        map.put("o3", new Order(Status.OPEN, 11.0));
+        map.put("o4", new Order(Status.CANCELLED, 12.0));
+    }
+
+    @Test
+    public void entriesWhere() {
+        assertEquals(new HashSet<>(Arrays.asList("o1", "o3")), map.entriesWhere("status", Status.OPEN).keySet());
+        // enums can be looked up by name.
+        assertEquals(Collections.singleton("o2"), map.entriesWhere("status", "FILLED").keySet());
+        // a sorted index supports equality too.
+        assertEquals(Collections.singleton("o4"), map.entriesWhere("price", 12).keySet());
+    }
+
+    @Test
+    public void entriesWhereBetween() {
+        assertEquals(Arrays.asList("o2", "o1", "o3"),
+                new ArrayList<>(map.entriesWhereBetween("price", null, 12.0).keySet()));
+        assertEquals(Arrays.asList("o3", "o4"),
+                new ArrayList<>(map.entriesWhereBetween("price", 11, null).keySet()));
+    }
+
+    @Test
+    public void keptUpToDateWithChanges() {
+        map.put("o1", new Order(Status.FILLED, 10.5));
+        map.remove("o3");
+        map.put("o5", new Order(Status.OPEN, 1.0));
+        assertEquals(Collections.singleton("o5"), map.entriesWhere("status", Status.OPEN).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("o1", "o2")), map.entriesWhere("status", Status.FILLED).keySet());
+        assertEquals(Arrays.asList("o5", "o2", "o1"),
+                new ArrayList<>(map.entriesWhereBetween("price", 0, 11).keySet()));
+
+        Map<String, String> metrics = new HashMap<>();
+        ((VanillaFieldIndex) map.asset().getView(net.openhft.chronicle.engine.api.map.FieldIndex.class)).addMetrics(metrics);
+        assertEquals("2", metrics.get("fieldIndexes"));
+        assertEquals("8", metrics.get("fieldIndexKeys"));
+        assertTrue(Long.parseLong(metrics.get("fieldIndexUpdates")) >= 3);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void hashIndexesHaveNoRanges() {
+        map.entriesWhereBetween("status", "A", "Z");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unindexedField() {
+        map.entriesWhere("quantity", 1);
+    }
+
+    enum Status {
+        OPEN, FILLED, CANCELLED
+    }
+
+    static class Order implements Marshallable {
+        Status status;
+        double price;
+
+        Order() {
+        }
+
+        Order(Status status, double price) {
+            this.status = status;
+            this.price = price;
+        }
+
+        @Override
+        public void readMarshallable(@NotNull WireIn wire) throws IllegalStateException {
+            status = Status.valueOf(wire.read(() -> "status").text());
+            price = wire.read(() -> "price").float64();
+        }
+
+        @Override
+        public void writeMarshallable(@NotNull WireOut wire) {
+            wire.write(() -> "status").text(status.name());
+            wire.write(() -> "price").float64(price);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.pubsub.Subscriber;
+import net.openhft.chronicle.engine.api.tree.Asset;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class VanillaStringStringKeyValueStoreTest {
+    private VanillaStringStringKeyValueStore store;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        Asset asset = Chassis.acquireAsset(requestContext("strings"));
+        store = new VanillaStringStringKeyValueStore(
+                new VanillaKVSSubscription<>(requestContext(), asset), asset,
+                new VanillaSubscriptionKeyValueStore<>(requestContext(), asset, new VanillaKeyValueStore<>(asset)),
+                true);
+    }
+
+    @Test
+    public void getUsingDecodesIntoTheBuilder() {
+        store.put("key", "value");
+        StringBuilder sb = new StringBuilder("old contents");
+        assertEquals("value", store.getUsing("key", sb));
+        assertEquals("value", sb.toString());
+        assertNull(store.getUsing("missing", sb));
+    }
+
+    @Test
+    public void subscribersAreHandedViews() {
+        store.put("a", "bootstrapped");
+        List<String> seen = new ArrayList<>();
+        Subscriber<MapEvent<String, String>> subscriber = e -> {
+            // a view passed where a String is declared, so not read as one.
+            Object value = e.value();
+            assertTrue(value instanceof CharSequence);
+            assertFalse(value instanceof String);
+            seen.add(e.key() + "=" + value);
+        };
+        store.subscription(true).registerSubscriber(requestContext().type(MapEvent.class), subscriber);
+        store.put("b", "notified");
+        assertEquals("[a=bootstrapped, b=notified]", seen.toString());
+
+        // everything else still reads Strings.
+        Iterator<String> values = store.valuesIterator();
+        assertEquals("bootstrapped", values.next());
+        assertEquals("notified", store.query((k, v) -> v.startsWith("not"), v -> v, Integer.MAX_VALUE).get("b"));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.engine.map;
+
+import net.openhft.chronicle.engine.Chassis;
+import net.openhft.chronicle.engine.api.map.MapEvent;
+import net.openhft.chronicle.engine.api.map.MapView;
+import net.openhft.chronicle.engine.api.map.VersionedValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.openhft.chronicle.engine.api.tree.RequestContext.requestContext;
+import static org.junit.Assert.*;
+
+public class VersionedKeyValueStoreTest {
+    private MapView<String, String, String> map;
+
+    @Before
+    public void setUp() {
+        Chassis.resetChassis();
+        map = Chassis.acquireMap("versioned?versioned=true", String.class, String.class);
+    }
+
+    @Test
+    public void versionsIncreaseWithEachChange() {
+        assertNull(map.getVersioned("a"));
+        map.put("a", "1");
+        VersionedValue<String> v1 = map.getVersioned("a");
+        assertEquals("1", v1.value());
+        assertTrue(v1.version() > 0);
+
+        map.put("a", "2");
+        VersionedValue<String> v2 = map.getVersioned("a");
+        assertEquals("2", v2.value());
+        assertTrue(v2.version() > v1.version());
+    }
+
+    @Test
+    public void putIfVersion() {
+        long v1 = map.putIfVersion("a", "1", 0);
+        assertTrue(v1 > 0);
+        // already present
+        assertEquals(0, map.putIfVersion("a", "x", 0));
+
+        long v2 = map.putIfVersion("a", "2", v1);
+        assertTrue(v2 > v1);
+        // stale version
+        assertEquals(0, map.putIfVersion("a", "x", v1));
+        assertEquals("2", map.get("a"));
+        assertEquals(v2, map.getVersioned("a").version());
+    }
+
+    @Test
+    public void entriesAddedUnderneathHaveAVersion() {
+        VanillaKeyValueStore<String, String, String> underlying = new VanillaKeyValueStore<>(map.asset());
+        underlying.put("a", "1");
+        VersionedKeyValueStore<String, String, String> store =
+                new VersionedKeyValueStore<>(requestContext(), map.asset(), underlying);
+        assertEquals(0, store.putIfVersion("a", "x", 0));
+        VersionedValue<String> v1 = store.getVersioned("a");
+        assertEquals("1", v1.value());
+        assertTrue(v1.version() > 0);
+        assertTrue(store.putIfVersion("a", "2", v1.version()) > v1.version());
+    }
+
+    @Test
+    public void removeIfVersion() {
+        map.put("a", "1");
+        long version = map.getVersioned("a").version();
+        map.put("a", "2");
+        assertFalse(map.removeIfVersion("a", version));
+
+        version = map.getVersioned("a").version();
+        assertTrue(map.removeIfVersion("a", version));
+        assertNull(map.get("a"));
+        assertFalse(map.removeIfVersion("a", version));
+    }
+
+    @Test
+    public void eventsCarryTheVersion() {
+        List<MapEvent<String, String>> events = new ArrayList<>();
+        map.registerSubscriber(events::add);
+        map.put("a", "1");
+        long version = map.getVersioned("a").version();
+        long v2 = map.putIfVersion("a", "2", version);
+        assertTrue(map.removeIfVersion("a", v2));
+
+        assertEquals(3, events.size());
+        assertEquals(version, events.get(0).version());
+        assertEquals(v2, events.get(1).version());
+        assertEquals("1", events.get(1).oldValue());
+        assertTrue(events.get(2) instanceof RemovedEvent);
+        assertTrue(events.get(2).version() > v2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void notVersioned() {
+        MapView<String, String, String> plain = Chassis.acquireMap("plain", String.class, String.class);
+        plain.putIfVersion("a", "1", 0);
+    }
+}